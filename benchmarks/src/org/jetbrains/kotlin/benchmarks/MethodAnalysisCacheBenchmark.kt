@@ -0,0 +1,107 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import org.jetbrains.kotlin.codegen.optimization.DeadCodeEliminationMethodTransformer
+import org.jetbrains.kotlin.codegen.optimization.MethodVerifier
+import org.jetbrains.kotlin.codegen.optimization.RedundantCheckCastEliminationMethodTransformer
+import org.jetbrains.kotlin.codegen.optimization.common.MethodAnalysisCache
+import org.jetbrains.kotlin.codegen.optimization.transformer.CompositeMethodTransformer
+import org.jetbrains.org.objectweb.asm.Label
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures the transformers of the optimization pipeline which use the same basic frames, with and without sharing them
+ * through [MethodAnalysisCache], on a method shaped like a coroutine state machine: a table switch over [states] states,
+ * each of them inside a try-catch block, with checkcasts and calls between branches.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+open class MethodAnalysisCacheBenchmark {
+
+    @Param("false", "true")
+    private var shareAnalyses: Boolean = false
+
+    @Param("500")
+    private var states: Int = 0
+
+    private lateinit var original: MethodNode
+    private lateinit var methodNode: MethodNode
+
+    @Setup(Level.Trial)
+    fun createMethod() {
+        original = createStateMachine(states)
+    }
+
+    @Setup(Level.Invocation)
+    fun copyMethod() {
+        methodNode = MethodNode(original.access, original.name, original.desc, original.signature, null)
+        original.accept(methodNode)
+    }
+
+    @Benchmark
+    fun benchmark(bh: Blackhole) {
+        val analysisCache = if (shareAnalyses) MethodAnalysisCache() else null
+        val transformer = CompositeMethodTransformer(
+            listOf(
+                RedundantCheckCastEliminationMethodTransformer(analysisCache),
+                DeadCodeEliminationMethodTransformer(analysisCache),
+                MethodVerifier("benchmark"),
+                DeadCodeEliminationMethodTransformer(analysisCache)
+            ),
+            analysisCache
+        )
+        transformer.transform("StateMachine", methodNode)
+        bh.consume(methodNode)
+    }
+
+    private fun createStateMachine(states: Int): MethodNode {
+        val node = MethodNode(Opcodes.ACC_PUBLIC or Opcodes.ACC_STATIC, "invokeSuspend", "(Ljava/lang/Object;I)Ljava/lang/Object;", null, null)
+        val stateLabels = Array(states) { Label() }
+        val handler = Label()
+        val default = Label()
+        val localsCount = 16
+
+        with(node) {
+            visitCode()
+            visitVarInsn(Opcodes.ILOAD, 1)
+            visitTableSwitchInsn(0, states - 1, default, *stateLabels)
+
+            for (state in 0 until states) {
+                val end = Label()
+                val local = 2 + state % localsCount
+                visitLabel(stateLabels[state])
+                visitTryCatchBlock(stateLabels[state], end, handler, "java/lang/Exception")
+                visitVarInsn(Opcodes.ALOAD, 0)
+                visitTypeInsn(Opcodes.CHECKCAST, "java/lang/String")
+                visitVarInsn(Opcodes.ASTORE, local)
+                visitVarInsn(Opcodes.ALOAD, local)
+                visitTypeInsn(Opcodes.CHECKCAST, "java/lang/String")
+                visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "length", "()I", false)
+                visitVarInsn(Opcodes.ISTORE, 1)
+                visitLabel(end)
+                visitVarInsn(Opcodes.ILOAD, 1)
+                visitJumpInsn(Opcodes.IFEQ, if (state + 1 < states) stateLabels[state + 1] else default)
+                visitVarInsn(Opcodes.ALOAD, local)
+                visitInsn(Opcodes.ARETURN)
+            }
+
+            visitLabel(default)
+            visitInsn(Opcodes.ACONST_NULL)
+            visitInsn(Opcodes.ARETURN)
+            visitLabel(handler)
+            visitInsn(Opcodes.ATHROW)
+            visitMaxs(2, 2 + localsCount)
+            visitEnd()
+        }
+        return node
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import org.jetbrains.kotlin.storage.LockBasedStorageManager
+import org.jetbrains.kotlin.storage.MemoizedFunctionToNotNull
+import org.jetbrains.kotlin.storage.StorageManager
+import org.jetbrains.kotlin.storage.StripedLockStorageManager
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Measures memoized function computations performed concurrently from several threads,
+ * with the single-lock storage manager vs the striped one.
+ *
+ * Every invocation requests a key which hasn't been computed yet, so it always takes the slow (locked) path.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Threads(8)
+open class StorageManagerContentionBenchmark {
+
+    @Param("single", "striped")
+    private var storageManagerKind: String = ""
+
+    @Param("100")
+    private var workPerComputation: Int = 0
+
+    private lateinit var storageManager: StorageManager
+    private lateinit var outer: MemoizedFunctionToNotNull<Int, Long>
+    private lateinit var inner: MemoizedFunctionToNotNull<Int, Long>
+    private val nextKey = AtomicInteger()
+
+    @Setup(Level.Iteration)
+    fun setUp() {
+        storageManager = when (storageManagerKind) {
+            "single" -> LockBasedStorageManager("StorageManagerContentionBenchmark")
+            "striped" -> StripedLockStorageManager("StorageManagerContentionBenchmark")
+            else -> error("Unknown storage manager kind: $storageManagerKind")
+        }
+        inner = storageManager.createMemoizedFunction { key -> work(key) }
+        // Nested memoized calls are typical for descriptor resolution
+        outer = storageManager.createMemoizedFunction { key -> work(key) + inner(key / 2) }
+        nextKey.set(0)
+    }
+
+    private fun work(key: Int): Long {
+        var result = key.toLong()
+        for (i in 0 until workPerComputation) {
+            result = result * 31 + i
+        }
+        return result
+    }
+
+    @Benchmark
+    fun benchmark(bh: Blackhole) {
+        bh.consume(outer(nextKey.getAndIncrement()))
+    }
+}
@@ -30,19 +30,36 @@ import java.io.IOException
 import java.util.*
 
 
+/**
+ * Ids of deleted files are removed from lookups by garbage collection, which is started on [flush] when there are enough of them.
+ * Garbage collection isn't background work: it runs on the thread calling [flush], but in bounded batches. It processes lookups
+ * in the order of their keys, at most [gcLookupsPerFlush] of them on each flush, and continues from the last processed key
+ * on the next flush, even in the next build. The sorted keys and the ids of live files are collected once per garbage collection
+ * in a process, not on every flush. Its progress is reported to [reporter]. Ids of remaining files are only renumbered by [forceGC].
+ *
+ * @param useCompactLookups whether lookups are stored by [CompactLookupMap] rather than [LookupMap],
+ * lookups stored in the other format are migrated when the storage is opened
+ */
 open class LookupStorage(
     targetDataDir: File,
-    pathConverter: FileToPathConverter
+    pathConverter: FileToPathConverter,
+    useCompactLookups: Boolean = System.getProperty("kotlin.incremental.compact.lookups")?.toBoolean() ?: false,
+    private val reporter: ICReporter? = null,
+    private val gcLookupsPerFlush: Int = DEFAULT_GC_LOOKUPS_PER_FLUSH
 ) : BasicMapsOwner(targetDataDir) {
     companion object {
         private val DELETED_TO_SIZE_TRESHOLD = 0.5
         private val MINIMUM_GARBAGE_COLLECTIBLE_SIZE = 10000
+        private val DEFAULT_GC_LOOKUPS_PER_FLUSH =
+            System.getProperty("kotlin.incremental.lookups.gc.batch.size")?.toIntOrNull() ?: 200_000
     }
 
     private val countersFile = "counters".storageFile
     private val idToFile = registerMap(IdToFileMap("id-to-file".storageFile, pathConverter))
     private val fileToId = registerMap(FileToIdMap("file-to-id".storageFile, pathConverter))
-    private val lookupMap = registerMap(LookupMap("lookups".storageFile))
+    private val lookupMap = registerMap(
+        if (useCompactLookups) CompactLookupMap("lookup-postings".storageFile) else LookupMap("lookups".storageFile)
+    )
 
     @Volatile
     private var size: Int = 0
@@ -50,17 +67,67 @@ open class LookupStorage(
     @Volatile
     private var deletedCount: Int = 0
 
+    // Number of deleted ids which have already been removed from lookups, such ids are never reused
+    @Volatile
+    private var collectedCount: Int = 0
+
+    // Number of deleted ids which are being removed from lookups by the current garbage collection, 0 if there's none
+    @Volatile
+    private var collectingCount: Int = 0
+
+    // The last lookup processed by the current garbage collection
+    @Volatile
+    private var lastCollectedLookup: LookupSymbolKey? = null
+
+    // The state of the current garbage collection in this process, created on its first flush
+    private var garbageCollection: GarbageCollection? = null
+
+    private class GarbageCollection(
+        val lookups: List<LookupSymbolKey>,
+        var nextLookup: Int,
+        private val liveIds: BitSet,
+        private val firstNewId: Int
+    ) {
+        // Files added after the collection has started are live, files deleted after that are left for the next collection
+        fun isLive(id: Int): Boolean = id >= firstNewId || liveIds[id]
+    }
+
     init {
         try {
             if (countersFile.exists()) {
                 val lines = countersFile.readLines()
                 size = lines[0].toInt()
                 deletedCount = lines[1].toInt()
+                if (lines.size >= 4) {
+                    collectedCount = lines[2].toInt()
+                    collectingCount = lines[3].toInt()
+                    lastCollectedLookup = lines.getOrNull(4)?.takeIf { it.isNotEmpty() }?.split(' ')?.let { (nameHash, scopeHash) ->
+                        LookupSymbolKey(nameHash.toInt(), scopeHash.toInt())
+                    }
+                }
             }
         } catch (e: Exception) {
             throw IOException("Could not read $countersFile", e)
         }
 
+        val otherFormatLookupMap =
+            if (useCompactLookups) LookupMap("lookups".storageFile) else CompactLookupMap("lookup-postings".storageFile)
+        if (otherFormatLookupMap.storageFile.exists()) {
+            migrateLookups(otherFormatLookupMap)
+        }
+    }
+
+    private fun migrateLookups(from: LookupMap) {
+        try {
+            for (key in from.keys) {
+                lookupMap[key] = from[key]!!
+            }
+            lookupMap.flush(memoryCachesOnly = false)
+        } catch (e: Exception) {
+            throw IOException("Could not migrate lookups from ${from.storageFile}", e)
+        } finally {
+            from.clean()
+        }
     }
 
     @Synchronized
@@ -81,9 +148,7 @@ open class LookupStorage(
         for (lookupSymbol in lookups.keySet().sorted()) {
             val key = LookupSymbolKey(lookupSymbol.name, lookupSymbol.scope)
             val paths = lookups[lookupSymbol]
-            val fileIds = paths.mapTo(TreeSet()) { pathToId[it]!! }
-            fileIds.addAll(lookupMap[key] ?: emptySet())
-            lookupMap[key] = fileIds
+            lookupMap.addAll(key, paths.mapTo(TreeSet()) { pathToId[it]!! })
         }
     }
 
@@ -105,6 +170,10 @@ open class LookupStorage(
 
         size = 0
         deletedCount = 0
+        collectedCount = 0
+        collectingCount = 0
+        lastCollectedLookup = null
+        garbageCollection = null
 
         super.clean()
     }
@@ -120,7 +189,8 @@ open class LookupStorage(
                     countersFile.createNewFile()
                 }
 
-                countersFile.writeText("$size\n$deletedCount")
+                val lastCollected = lastCollectedLookup?.let { "${it.nameHash} ${it.scopeHash}" } ?: ""
+                countersFile.writeText("$size\n$deletedCount\n$collectedCount\n$collectingCount\n$lastCollected")
             }
         }
         finally {
@@ -139,36 +209,97 @@ open class LookupStorage(
     }
 
     private fun removeGarbageIfNeeded(force: Boolean = false) {
-        if (force || (size > MINIMUM_GARBAGE_COLLECTIBLE_SIZE && deletedCount.toDouble() / size > DELETED_TO_SIZE_TRESHOLD)) {
+        if (force) {
             doRemoveGarbage()
+            return
+        }
+
+        val liveAndDeletedCount = size - collectedCount
+        if (collectingCount == 0 &&
+            liveAndDeletedCount > MINIMUM_GARBAGE_COLLECTIBLE_SIZE &&
+            deletedCount.toDouble() / liveAndDeletedCount > DELETED_TO_SIZE_TRESHOLD
+        ) {
+            // Ids deleted after this point may still be referenced by the lookups processed before their deletion,
+            // so they are left for the next garbage collection
+            collectingCount = deletedCount
+            lastCollectedLookup = null
+            garbageCollection = null
+        }
+
+        if (collectingCount > 0) {
+            removeGarbageIncrementally()
         }
     }
 
-    private fun doRemoveGarbage() {
-        for (hash in lookupMap.keys) {
-            lookupMap[hash] = lookupMap[hash]!!.filter { it in idToFile }.toSet()
+    private fun removeGarbageIncrementally() {
+        val gc = garbageCollection ?: startGarbageCollection().also { garbageCollection = it }
+        val start = gc.nextLookup
+        val end = minOf(gc.lookups.size, start + gcLookupsPerFlush)
+
+        rewriteLookups(gc.lookups.subList(start, end)) { fileIds ->
+            if (fileIds.all(gc::isLive)) fileIds else fileIds.filterTo(TreeSet(), gc::isLive)
+        }
+        gc.nextLookup = end
+
+        if (end < gc.lookups.size) {
+            lastCollectedLookup = gc.lookups[end - 1]
+            reporter?.reportVerbose { "Removed ids of deleted files from $end of ${gc.lookups.size} lookups" }
+        } else {
+            reporter?.report { "Removed $collectingCount ids of deleted files from ${gc.lookups.size} lookups" }
+            deletedCount -= collectingCount
+            collectedCount += collectingCount
+            collectingCount = 0
+            lastCollectedLookup = null
+            garbageCollection = null
         }
+    }
+
+    // Lookups added after this point only reference files which are live at that time, so they don't need to be processed
+    private fun startGarbageCollection(): GarbageCollection {
+        val lookups = lookupMap.keys.sorted()
+        val start = lastCollectedLookup?.let { lookups.binarySearch(it).let { index -> if (index >= 0) index + 1 else -index - 1 } } ?: 0
+
+        val liveIds = BitSet(size)
+        for (id in fileToId.toMap().values) {
+            liveIds.set(id)
+        }
+        return GarbageCollection(lookups, start, liveIds, size)
+    }
 
+    private fun doRemoveGarbage() {
+        // Ids of removed files have no new ids, so they are dropped from the lookups along with renumbering the rest
         val oldFileToId = fileToId.toMap()
         val oldIdToNewId = HashMap<Int, Int>(oldFileToId.size)
         idToFile.clean()
         fileToId.clean()
         size = 0
         deletedCount = 0
+        collectedCount = 0
+        collectingCount = 0
+        lastCollectedLookup = null
+        garbageCollection = null
 
         for ((file, oldId) in oldFileToId.entries.sortedBy { it.key.path }) {
             val newId = addFileIfNeeded(file)
             oldIdToNewId[oldId] = newId
         }
 
-        for (lookup in lookupMap.keys) {
-            val fileIds = lookupMap[lookup]!!.mapNotNull { oldIdToNewId[it] }.toSet()
+        val allLookups = lookupMap.keys.toList()
+        rewriteLookups(allLookups) { fileIds -> fileIds.mapNotNullTo(TreeSet()) { oldIdToNewId[it] } }
+        reporter?.report { "Renumbered ids of ${oldFileToId.size} files in ${allLookups.size} lookups" }
+    }
 
-            if (fileIds.isEmpty()) {
-                lookupMap.remove(lookup)
-            }
-            else {
-                lookupMap[lookup] = fileIds
+    /**
+     * Replaces file ids of [lookups] with the result of [transform], which may return its argument if the ids don't change.
+     */
+    private fun rewriteLookups(lookups: List<LookupSymbolKey>, transform: (Collection<Int>) -> Collection<Int>) {
+        for (lookup in lookups) {
+            val fileIds = lookupMap[lookup] ?: continue
+            val newFileIds = transform(fileIds)
+
+            when {
+                newFileIds.isEmpty() -> lookupMap.remove(lookup)
+                newFileIds !== fileIds -> lookupMap[lookup] = newFileIds
             }
         }
     }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.DataInputOutputUtil
+import java.io.DataInput
+import java.io.DataInputStream
+import java.io.DataOutput
+import java.io.File
+
+/**
+ * [LookupMap] storing file ids as sorted delta-encoded postings, see [FileIdPostingsExternalizer].
+ *
+ * Ids which are new for a key are appended to its value as a separate segment instead of rewriting the whole value,
+ * so adding lookups of a recompiled file only writes ids of the keys the file hasn't looked up before.
+ * Segments of a key are merged into one when there are [MAX_SEGMENTS] of them, and on every rewrite of the value.
+ */
+internal class CompactLookupMap(storage: File) : LookupMap(storage, FileIdPostingsExternalizer) {
+    override fun addAll(key: LookupSymbolKey, fileIds: Collection<Int>) {
+        val existing = this[key] as FileIdPostings?
+        val newFileIds = if (existing == null) fileIds else fileIds.filter { it !in existing }
+        if (newFileIds.isEmpty()) return
+
+        when {
+            existing == null -> this[key] = newFileIds
+            existing.segmentCount >= MAX_SEGMENTS -> this[key] = existing + newFileIds
+            else -> storage.append(key, newFileIds)
+        }
+    }
+
+    companion object {
+        private const val MAX_SEGMENTS = 8
+    }
+}
+
+/**
+ * Sorted distinct file ids read by [FileIdPostingsExternalizer], [segmentCount] is the number of segments they were read from.
+ */
+internal class FileIdPostings(private val ids: IntArray, val segmentCount: Int) : AbstractList<Int>() {
+    override val size: Int
+        get() = ids.size
+
+    override fun get(index: Int): Int = ids[index]
+
+    override fun contains(element: Int): Boolean = ids.binarySearch(element) >= 0
+}
+
+/**
+ * Writes a collection of non-negative ints as a segment consisting of the number of distinct ints followed by
+ * the smallest one and the differences between the subsequent ones, all as variable-length ints.
+ * A value may consist of several appended segments, which are merged on reading.
+ */
+internal object FileIdPostingsExternalizer : DataExternalizer<Collection<Int>> {
+    override fun save(output: DataOutput, value: Collection<Int>) {
+        val ids = value.toIntArray().apply { sort() }
+        val distinctCount = ids.indices.count { it == 0 || ids[it] != ids[it - 1] }
+
+        DataInputOutputUtil.writeINT(output, distinctCount)
+        var previous = 0
+        for ((index, id) in ids.withIndex()) {
+            if (index > 0 && id == previous) continue
+            DataInputOutputUtil.writeINT(output, id - previous)
+            previous = id
+        }
+    }
+
+    override fun read(input: DataInput): Collection<Int> {
+        val stream = input as DataInputStream
+        val segments = ArrayList<IntArray>(1)
+
+        while (stream.available() > 0) {
+            val segment = IntArray(DataInputOutputUtil.readINT(stream))
+            var previous = 0
+            for (index in segment.indices) {
+                previous += DataInputOutputUtil.readINT(stream)
+                segment[index] = previous
+            }
+            segments.add(segment)
+        }
+
+        return FileIdPostings(mergeSegments(segments), segments.size)
+    }
+
+    private fun mergeSegments(segments: List<IntArray>): IntArray {
+        when (segments.size) {
+            0 -> return IntArray(0)
+            1 -> return segments.single()
+        }
+
+        val all = IntArray(segments.sumBy { it.size })
+        var size = 0
+        for (segment in segments) {
+            segment.copyInto(all, size)
+            size += segment.size
+        }
+        all.sort()
+
+        var distinctCount = 0
+        for (index in all.indices) {
+            if (index == 0 || all[index] != all[index - 1]) {
+                all[distinctCount++] = all[index]
+            }
+        }
+        return all.copyOf(distinctCount)
+    }
+}
@@ -16,9 +16,14 @@
 
 package org.jetbrains.kotlin.incremental.storage
 
+import com.intellij.util.io.DataExternalizer
 import java.io.File
+import java.util.*
 
-internal class LookupMap(storage: File) : BasicMap<LookupSymbolKey, Collection<Int>>(storage, LookupSymbolKeyDescriptor, IntCollectionExternalizer) {
+internal open class LookupMap(
+        storage: File,
+        valueExternalizer: DataExternalizer<Collection<Int>> = IntCollectionExternalizer
+) : BasicMap<LookupSymbolKey, Collection<Int>>(storage, LookupSymbolKeyDescriptor, valueExternalizer) {
     override fun dumpKey(key: LookupSymbolKey): String = key.toString()
 
     override fun dumpValue(value: Collection<Int>): String = value.toString()
@@ -29,7 +34,16 @@ internal class LookupMap(storage: File) : BasicMap<LookupSymbolKey, Collection<I
 
     operator fun get(key: LookupSymbolKey): Collection<Int>? = storage[key]
 
-    operator fun set(key: LookupSymbolKey, fileIds: Set<Int>) {
+    /**
+     * Adds [fileIds] to the ids of files containing lookups of [key]
+     */
+    open fun addAll(key: LookupSymbolKey, fileIds: Collection<Int>) {
+        val allFileIds = TreeSet(fileIds)
+        allFileIds.addAll(this[key] ?: emptySet())
+        this[key] = allFileIds
+    }
+
+    operator fun set(key: LookupSymbolKey, fileIds: Collection<Int>) {
         storage[key] = fileIds
     }
 
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import com.intellij.util.containers.MultiMap
+import org.jetbrains.kotlin.TestWithWorkingDir
+import org.jetbrains.kotlin.incremental.LookupStorage
+import org.jetbrains.kotlin.incremental.LookupSymbol
+import org.junit.Test
+import java.io.File
+
+class CompactLookupStorageTest : TestWithWorkingDir() {
+    private val symbolA = LookupSymbol(name = "A", scope = "a")
+    private val symbolB = LookupSymbol(name = "B", scope = "b")
+
+    @Test
+    fun testAddedLookupsAreMerged() {
+        val storage = createStorage(useCompactLookups = true)
+        storage.addAll(lookups(symbolA to "1.kt", symbolA to "2.kt", symbolB to "2.kt"), paths("1.kt", "2.kt"))
+        storage.addAll(lookups(symbolA to "2.kt", symbolA to "3.kt", symbolB to "1.kt"), paths("1.kt", "2.kt", "3.kt"))
+
+        assertEquals(paths("1.kt", "2.kt", "3.kt"), storage.get(symbolA).toSet())
+        assertEquals(paths("1.kt", "2.kt"), storage.get(symbolB).toSet())
+        storage.close()
+    }
+
+    @Test
+    fun testManySegments() {
+        val storage = createStorage(useCompactLookups = true)
+        val allPaths = (0 until 20).map { "$it.kt" }
+        for (path in allPaths) {
+            storage.addAll(lookups(symbolA to path), paths(path))
+        }
+        storage.flush(memoryCachesOnly = false)
+
+        assertEquals(paths(*allPaths.toTypedArray()), storage.get(symbolA).toSet())
+        storage.close()
+    }
+
+    @Test
+    fun testGarbageCollection() {
+        val storage = createStorage(useCompactLookups = true)
+        storage.addAll(lookups(symbolA to "1.kt", symbolA to "2.kt", symbolB to "1.kt"), paths("1.kt", "2.kt"))
+        storage.removeLookupsFrom(sequenceOf(File(workingDir, "1.kt").canonicalFile))
+        storage.forceGC()
+
+        assertEquals(paths("2.kt"), storage.get(symbolA).toSet())
+        assertTrue(storage.get(symbolB).isEmpty())
+        storage.close()
+    }
+
+    @Test
+    fun testGarbageCollectionOnFlush() {
+        val storage = createStorage(useCompactLookups = true)
+        val allPaths = (0 until 12000).map { "$it.kt" }
+        val lookups = lookups(symbolB to allPaths.first())
+        for (path in allPaths) {
+            lookups.putValue(symbolA, File(workingDir, path).canonicalFile.invariantSeparatorsPath)
+        }
+        storage.addAll(lookups, paths(*allPaths.toTypedArray()))
+        storage.removeLookupsFrom(allPaths.take(7000).asSequence().map { File(workingDir, it).canonicalFile })
+        storage.flush(memoryCachesOnly = false)
+
+        val dump = storage.dump(setOf(symbolA, symbolB))
+        assertFalse(dump, "b#B ->" in dump)
+        assertEquals(paths(*allPaths.drop(7000).toTypedArray()), storage.get(symbolA).toSet())
+        storage.close()
+    }
+
+    @Test
+    fun testGarbageCollectionResumesOnNextFlushes() {
+        val symbols = (0 until 50).map { LookupSymbol(name = "S$it", scope = "s") }
+        val allPaths = (0 until 12000).map { "$it.kt" }
+        val lookups = MultiMap.createOrderedSet<LookupSymbol, String>()
+        allPaths.forEachIndexed { index, path ->
+            lookups.putValue(symbols[index % symbols.size], File(workingDir, path).canonicalFile.invariantSeparatorsPath)
+        }
+
+        var storage = createStorage(useCompactLookups = true, gcLookupsPerFlush = 10)
+        storage.addAll(lookups, paths(*allPaths.toTypedArray()))
+        storage.removeLookupsFrom(allPaths.take(7000).asSequence().map { File(workingDir, it).canonicalFile })
+
+        // each flush processes 10 of 50 lookups, the progress is saved in the counters file
+        val progress = ArrayList<String>()
+        repeat(4) {
+            storage.flush(memoryCachesOnly = false)
+            val counters = readCounters()
+            assertEquals(listOf("12000", "7000", "0", "7000"), counters.take(4))
+            progress.add(counters[4])
+            // reopening the storage to check that collection resumes from the counters file
+            storage.close()
+            storage = createStorage(useCompactLookups = true, gcLookupsPerFlush = 10)
+        }
+        assertEquals(progress.toString(), progress.size, progress.toSet().size)
+        assertTrue(progress.toString(), progress.none { it.isEmpty() })
+
+        storage.flush(memoryCachesOnly = false)
+        assertEquals(listOf("12000", "0", "7000", "0", ""), readCounters())
+
+        // every file is referenced by one lookup, so only ids of the remaining files are left
+        val lookupIds = storage.dump(symbols.toSet()).lines().filter { "s#S" in it }.flatMap { line ->
+            line.substringAfter(" -> ").split(", ").filter { it.isNotEmpty() }
+        }
+        assertEquals(5000, lookupIds.size)
+        for ((index, symbol) in symbols.withIndex()) {
+            val expected = allPaths.drop(7000).filterIndexed { i, _ -> (i + 7000) % symbols.size == index }
+            assertEquals(paths(*expected.toTypedArray()), storage.get(symbol).toSet())
+        }
+        storage.close()
+    }
+
+    @Test
+    fun testGarbageCollectionKeepsFilesAddedDuringCollection() {
+        val symbols = (0 until 50).map { LookupSymbol(name = "S$it", scope = "s") }
+        val allPaths = (0 until 12000).map { "$it.kt" }
+        val lookups = MultiMap.createOrderedSet<LookupSymbol, String>()
+        allPaths.forEachIndexed { index, path ->
+            lookups.putValue(symbols[index % symbols.size], File(workingDir, path).canonicalFile.invariantSeparatorsPath)
+        }
+
+        val storage = createStorage(useCompactLookups = true, gcLookupsPerFlush = 10)
+        storage.addAll(lookups, paths(*allPaths.toTypedArray()))
+        storage.removeLookupsFrom(allPaths.take(7000).asSequence().map { File(workingDir, it).canonicalFile })
+        storage.flush(memoryCachesOnly = false)
+        assertEquals("7000", readCounters()[3])
+
+        // the new file gets an id which the collection in progress hasn't seen, it must not be removed from lookups
+        storage.addAll(lookups(symbols.last() to "new.kt", symbols.first() to "new.kt"), paths("new.kt"))
+        repeat(4) { storage.flush(memoryCachesOnly = false) }
+        assertEquals(listOf("12001", "0", "7000", "0", ""), readCounters())
+
+        assertTrue(paths("new.kt").single() in storage.get(symbols.first()))
+        assertTrue(paths("new.kt").single() in storage.get(symbols.last()))
+        assertEquals(5002, symbols.sumBy { storage.get(it).size })
+        storage.close()
+    }
+
+    @Test
+    fun testMigrationToCompactLookups() {
+        testMigration(fromCompactLookups = false)
+    }
+
+    @Test
+    fun testMigrationFromCompactLookups() {
+        testMigration(fromCompactLookups = true)
+    }
+
+    private fun testMigration(fromCompactLookups: Boolean) {
+        val lookups = lookups(symbolA to "1.kt", symbolA to "2.kt", symbolB to "2.kt")
+        val allPaths = paths("1.kt", "2.kt")
+
+        val expectedDump = createStorage(useCompactLookups = !fromCompactLookups, dirName = "expected").run {
+            addAll(lookups, allPaths)
+            dump(setOf(symbolA, symbolB)).also { close() }
+        }
+
+        createStorage(useCompactLookups = fromCompactLookups).apply {
+            addAll(lookups, allPaths)
+            flush(memoryCachesOnly = false)
+            close()
+        }
+        val storage = createStorage(useCompactLookups = !fromCompactLookups)
+
+        assertEquals(expectedDump, storage.dump(setOf(symbolA, symbolB)))
+        storage.close()
+        assertEquals(
+            listOf("counters.tab", "file-to-id.tab", "id-to-file.tab", if (fromCompactLookups) "lookups.tab" else "lookup-postings.tab"),
+            File(workingDir, "storage").list()!!.filter { it.endsWith(".tab") }.sorted()
+        )
+    }
+
+    private fun createStorage(useCompactLookups: Boolean, dirName: String = "storage", gcLookupsPerFlush: Int = 200_000): LookupStorage =
+        LookupStorage(
+            File(workingDir, dirName), RelativeFileToPathConverter(workingDir), useCompactLookups, gcLookupsPerFlush = gcLookupsPerFlush
+        )
+
+    private fun readCounters(): List<String> = File(workingDir, "storage/counters.tab").readText().split("\n")
+
+    private fun lookups(vararg lookups: Pair<LookupSymbol, String>): MultiMap<LookupSymbol, String> {
+        val result = MultiMap.createOrderedSet<LookupSymbol, String>()
+        for ((symbol, path) in lookups) {
+            result.putValue(symbol, File(workingDir, path).canonicalFile.invariantSeparatorsPath)
+        }
+        return result
+    }
+
+    private fun paths(vararg paths: String): Set<String> =
+        paths.mapTo(LinkedHashSet()) { File(workingDir, it).canonicalFile.invariantSeparatorsPath }
+}
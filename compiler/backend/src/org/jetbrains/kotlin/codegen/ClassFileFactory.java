@@ -52,13 +52,17 @@ import org.jetbrains.org.objectweb.asm.Type;
 import java.io.File;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.jetbrains.kotlin.codegen.JvmCodegenUtil.getMappingFileName;
 
 public class ClassFileFactory implements OutputFileCollection {
     private final GenerationState state;
     private final ClassBuilderFactory builderFactory;
-    private final Map<String, OutAndSourceFileList> generators = new LinkedHashMap<>();
+    // Classes may be generated by several threads at once, see setOutputOrder
+    private final Map<String, OutAndSourceFileList> generators = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, Integer> outputOrder = new ConcurrentHashMap<>();
+    private final ThreadLocal<Integer> currentOutputOrder = new ThreadLocal<>();
 
     private boolean isDone = false;
 
@@ -79,6 +83,17 @@ public class ClassFileFactory implements OutputFileCollection {
         return packagePartRegistry;
     }
 
+    /**
+     * Files created by the current thread after this call are placed in the output after files with a smaller {@code order}
+     * and before files with a larger one, regardless of the order in which they were created. Files with the same order
+     * keep the order of creation; files created without an order set are placed after all ordered ones.
+     *
+     * This is used to keep the output deterministic when classes are generated in parallel threads.
+     */
+    public void setOutputOrder(@Nullable Integer order) {
+        currentOutputOrder.set(order);
+    }
+
     @NotNull
     public ClassBuilder newVisitor(
             @NotNull JvmDeclarationOrigin origin,
@@ -94,7 +109,7 @@ public class ClassFileFactory implements OutputFileCollection {
             @NotNull Collection<? extends PsiFile> sourceFiles
     ) {
         ClassBuilder answer = builderFactory.newClassBuilder(origin);
-        generators.put(
+        putGenerator(
                 asmType.getInternalName() + ".class",
                 new ClassBuilderAndSourceFileList(answer, toIoFilesIgnoringNonPhysical(sourceFiles))
         );
@@ -108,13 +123,21 @@ public class ClassFileFactory implements OutputFileCollection {
             @NotNull List<File> sourceFiles
     ) {
         ClassBuilder answer = builderFactory.newClassBuilder(origin);
-        generators.put(
+        putGenerator(
                 asmType.getInternalName() + ".class",
                 new ClassBuilderAndSourceFileList(answer, sourceFiles)
         );
         return answer;
     }
 
+    private void putGenerator(@NotNull String relativePath, @NotNull OutAndSourceFileList generator) {
+        Integer order = currentOutputOrder.get();
+        if (order != null) {
+            outputOrder.put(relativePath, order);
+        }
+        generators.put(relativePath, generator);
+    }
+
     public void done() {
         if (!isDone) {
             isDone = true;
@@ -124,6 +147,7 @@ public class ClassFileFactory implements OutputFileCollection {
 
     public void releaseGeneratedOutput() {
         generators.clear();
+        outputOrder.clear();
     }
 
     private void writeModuleMappings() {
@@ -190,7 +214,15 @@ public class ClassFileFactory implements OutputFileCollection {
 
     @NotNull
     public List<OutputFile> getCurrentOutput() {
-        return CollectionsKt.map(generators.keySet(), OutputClassFile::new);
+        List<String> paths;
+        synchronized (generators) {
+            paths = new ArrayList<>(generators.keySet());
+        }
+        if (!outputOrder.isEmpty()) {
+            // The sort is stable, so files with the same order remain in the order of creation
+            paths.sort(Comparator.comparingInt(path -> outputOrder.getOrDefault(path, Integer.MAX_VALUE)));
+        }
+        return CollectionsKt.map(paths, OutputClassFile::new);
     }
 
     @Override
@@ -370,6 +402,7 @@ public class ClassFileFactory implements OutputFileCollection {
     public void removeClasses(Set<String> classNamesToRemove) {
         for (String classInternalName : classNamesToRemove) {
             generators.remove(classInternalName + ".class");
+            outputOrder.remove(classInternalName + ".class");
         }
     }
 
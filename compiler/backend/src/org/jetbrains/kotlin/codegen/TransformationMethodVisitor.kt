@@ -65,11 +65,39 @@ abstract class TransformationMethodVisitor(
 
         super.visitEnd()
 
+        transformAndEmit()
+    }
+
+    /**
+     * Transforms the method node and writes the result to the delegate.
+     * Can be overridden to postpone both steps, in which case [transform] and [emit] should be called later in this order.
+     */
+    protected open fun transformAndEmit() {
+        transform()
+        emit()
+    }
+
+    /**
+     * `false` if [performTransformations] of this method may access state which isn't thread-safe,
+     * so that it must be transformed on the thread which generated the method.
+     */
+    val canBeTransformedInParallel: Boolean
+        get() = canBeTransformedInParallel(methodNode)
+
+    protected open fun canBeTransformedInParallel(methodNode: MethodNode): Boolean = true
+
+    fun transform() {
         try {
             if (shouldBeTransformed(methodNode)) {
                 performTransformations(methodNode)
             }
+        } catch (t: Throwable) {
+            throw CompilationException("Couldn't transform method node:\n" + methodNode.nodeText, t, null)
+        }
+    }
 
+    fun emit() {
+        try {
             methodNode.accept(EndIgnoringMethodVisitorDecorator(Opcodes.API_VERSION, delegate))
 
 
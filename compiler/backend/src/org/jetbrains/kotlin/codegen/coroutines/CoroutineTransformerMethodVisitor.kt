@@ -630,7 +630,9 @@ class CoroutineTransformerMethodVisitor(
             maxVarsCountByType[type] = count
         }
 
-        val livenessFrames = analyzeLiveness(methodNode)
+        // Liveness is computed from the same control flow graph which is used to find variables to cleanup below
+        val analysisCache = MethodAnalysisCache()
+        val livenessFrames = analysisCache.getLiveness(methodNode)
 
         // References shall be cleaned up after uspill (during spill in next suspension point) to prevent memory leaks,
         val referencesToSpillBySuspensionPointIndex = arrayListOf<List<ReferenceToSpill>>()
@@ -709,7 +711,7 @@ class CoroutineTransformerMethodVisitor(
 
         // Use CFG to calculate amount of spilled variables in previous suspension point (P) and current one (C).
         // All fields from L$C to L$P should be cleaned. I.e. we should spill ACONST_NULL to them.
-        val cfg = ControlFlowGraph.build(methodNode)
+        val cfg = analysisCache.getControlFlowGraph(methodNode)
 
         // Collect all immediately preceding suspension points. I.e. suspension points, from which there is a path
         // into current one, that does not cross other suspension points.
@@ -16,24 +16,128 @@
 
 package org.jetbrains.kotlin.codegen.inline
 
-import com.intellij.util.containers.SLRUMap
+import com.intellij.openapi.vfs.StandardFileSystems
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.util.io.URLUtil
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.org.objectweb.asm.commons.Method
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import java.io.File
+import java.util.concurrent.atomic.LongAdder
 
 data class MethodId(val ownerInternalName: String, val method: Method)
 
-class InlineCache {
-    val classBytes: SLRUMap<ClassId, ByteArray> = SLRUMap(30, 20)
-    val methodNodeById: SLRUMap<MethodId, SMAPAndMethodNode> = SLRUMap(60, 50)
+class InlineCache(maxBytes: Long = DEFAULT_MAX_BYTES) {
+    val classBytes: WeightedLruCache<ClassId, ByteArray> = WeightedLruCache(maxBytes / 2, ::classBytesWeight)
+    val methodNodeById: WeightedLruCache<MethodId, SMAPAndMethodNode> = WeightedLruCache(maxBytes / 2, ::methodNodeWeight)
+
+    companion object {
+        private val DEFAULT_MAX_BYTES: Long = (System.getProperty("kotlin.jvm.inline.cache.size.mb")?.toLongOrNull() ?: 16) shl 20
+
+        /**
+         * Class files and method nodes loaded from them, shared by all compilations in this JVM (e.g. by modules of a chunk
+         * or by compilations in the daemon). Enabled with `-Dkotlin.jvm.inline.cache.shared=true`.
+         */
+        val shared: SharedInlineCache? =
+            if (System.getProperty("kotlin.jvm.inline.cache.shared")?.toBoolean() == true) SharedInlineCache(DEFAULT_MAX_BYTES) else null
+    }
+}
+
+/**
+ * Unlike [InlineCache], which is valid for a single compilation, entries are identified by the class file they're loaded from
+ * and are invalidated when the file changes.
+ */
+class SharedInlineCache(maxBytes: Long) {
+    val classBytes: WeightedLruCache<ClassFileStamp, ByteArray> = WeightedLruCache(maxBytes / 2, ::classBytesWeight)
+    val methodNodes: WeightedLruCache<Pair<ClassFileStamp, Method>, SMAPAndMethodNode> =
+        WeightedLruCache(maxBytes / 2, ::methodNodeWeight)
+
+    fun snapshot(): Snapshot = Snapshot(classBytes.hitCount, classBytes.missCount, methodNodes.hitCount, methodNodes.missCount)
+
+    /**
+     * Hit and miss counts of the caches at some point. The counts accumulate over all compilations using the cache,
+     * so the counts of a single compilation are the difference between the snapshots taken before and after it.
+     */
+    data class Snapshot(val classBytesHits: Long, val classBytesMisses: Long, val methodNodeHits: Long, val methodNodeMisses: Long)
+}
+
+data class ClassFileStamp(val path: String, val timeStamp: Long, val length: Long, val jarTimeStamp: Long) {
+    companion object {
+        /**
+         * Returns null for files which can't be reliably identified, e.g. in-memory ones
+         */
+        fun of(file: VirtualFile): ClassFileStamp? {
+            val jarTimeStamp = when (file.fileSystem.protocol) {
+                StandardFileSystems.FILE_PROTOCOL -> 0L
+                // Entries of a rebuilt jar may keep their time stamps (e.g. in reproducible builds), so the time stamp of the jar is used too
+                StandardFileSystems.JAR_PROTOCOL -> File(file.path.substringBefore(URLUtil.JAR_SEPARATOR)).lastModified()
+                else -> return null
+            }
+            return ClassFileStamp(file.path, file.timeStamp, file.length, jarTimeStamp)
+        }
+    }
 }
 
-inline fun <K, V : Any> SLRUMap<K, V>.getOrPut(key: K, defaultValue: () -> V): V {
-    val value = get(key)
-    return if (value == null) {
-        val answer = defaultValue()
-        put(key, answer)
-        answer
-    } else {
-        value
+private fun classBytesWeight(bytes: ByteArray): Long = bytes.size.toLong()
+
+// A rough estimation, instructions are the bulk of a method node
+private fun methodNodeWeight(node: SMAPAndMethodNode): Long = node.node.instructions.size() * 64L + 1024
+
+/**
+ * LRU cache which evicts least recently used entries when the total weight of values exceeds [maxWeight].
+ * Values are computed outside of the lock, so several threads may compute the same value simultaneously.
+ */
+class WeightedLruCache<K : Any, V : Any>(private val maxWeight: Long, private val weigher: (V) -> Long) {
+    private class Entry<V>(val value: V, val weight: Long)
+
+    private val map = LinkedHashMap<K, Entry<V>>(16, 0.75f, /* accessOrder = */ true)
+    private var totalWeight = 0L
+
+    private val hits = LongAdder()
+    private val misses = LongAdder()
+
+    val hitCount: Long get() = hits.sum()
+    val missCount: Long get() = misses.sum()
+
+    @Synchronized
+    operator fun get(key: K): V? = map[key]?.value
+
+    inline fun getOrPut(key: K, defaultValue: () -> V): V {
+        val value = get(key)
+        if (value != null) {
+            recordHit()
+            return value
+        }
+        recordMiss()
+        return putIfAbsent(key, defaultValue())
+    }
+
+    /**
+     * Returns the value already associated with [key], or associates [value] with it and returns it
+     */
+    @Synchronized
+    fun putIfAbsent(key: K, value: V): V {
+        map[key]?.let { return it.value }
+
+        val weight = weigher(value)
+        // Values heavier than the whole cache aren't stored at all
+        if (weight > maxWeight) return value
+
+        map[key] = Entry(value, weight)
+        totalWeight += weight
+        val iterator = map.values.iterator()
+        while (totalWeight > maxWeight) {
+            totalWeight -= iterator.next().weight
+            iterator.remove()
+        }
+        return value
+    }
+
+    fun recordHit() {
+        hits.increment()
+    }
+
+    fun recordMiss() {
+        misses.increment()
     }
 }
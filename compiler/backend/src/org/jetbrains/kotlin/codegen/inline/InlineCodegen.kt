@@ -580,7 +580,9 @@ abstract class InlineCodegen<out T : BaseExpressionCodegen>(
                 result ?: throw IllegalStateException("Couldn't obtain compiled function body for $functionDescriptor")
             }
 
-            return SMAPAndMethodNode(cloneMethodNode(resultInCache.node), resultInCache.classSMAP)
+            // Cloning changes labels of the original node, which may be shared with other threads through the cache
+            val node = synchronized(resultInCache.node) { cloneMethodNode(resultInCache.node) }
+            return SMAPAndMethodNode(node, resultInCache.classSMAP)
         }
 
         private fun createDefaultFakeSMAP() = SMAPParser.parseOrCreateDefault(null, null, "fake", -1, -1)
@@ -628,22 +630,46 @@ abstract class InlineCodegen<out T : BaseExpressionCodegen>(
 
             val containerId = containingClasses.implClassId
 
-            val bytes = state.inlineCache.classBytes.getOrPut(containerId) {
-                findVirtualFile(state, containerId)?.contentsToByteArray()
-                    ?: throw IllegalStateException("Couldn't find declaration file for $containerId")
-            }
+            val sharedCache = InlineCache.shared
+            val classFileStamp = if (sharedCache != null) findVirtualFile(state, containerId)?.let(ClassFileStamp.Companion::of) else null
 
-            val methodNode = getMethodNodeInner(containerId, bytes, asmMethod, callableDescriptor) ?: return null
+            var methodNode = if (sharedCache != null && classFileStamp != null) {
+                sharedCache.methodNodes.getOrPut(classFileStamp to asmMethod) {
+                    val bytes = getClassBytes(state, containerId)
+                    getMethodNodeInner(containerId, bytes, asmMethod, callableDescriptor) ?: return null
+                }
+            } else {
+                val bytes = getClassBytes(state, containerId)
+                getMethodNodeInner(containerId, bytes, asmMethod, callableDescriptor) ?: return null
+            }
 
             // KLUDGE: Inline suspend function built with compiler version less than 1.1.4/1.2-M1 did not contain proper
             // before/after suspension point marks, so we detect those functions here and insert the corresponding marks
             if (isLegacySuspendInlineFunction(callableDescriptor)) {
+                if (classFileStamp != null) {
+                    // The node from the shared cache must stay intact
+                    val node = methodNode.node
+                    methodNode = SMAPAndMethodNode(synchronized(node) { cloneMethodNode(node) }, methodNode.classSMAP)
+                }
                 insertLegacySuspendInlineMarks(methodNode.node)
             }
 
             return methodNode
         }
 
+        private fun getClassBytes(state: GenerationState, containerId: ClassId): ByteArray =
+            state.inlineCache.classBytes.getOrPut(containerId) {
+                val file = findVirtualFile(state, containerId)
+                    ?: throw IllegalStateException("Couldn't find declaration file for $containerId")
+                val sharedCache = InlineCache.shared
+                val classFileStamp = if (sharedCache != null) ClassFileStamp.of(file) else null
+                if (sharedCache != null && classFileStamp != null) {
+                    sharedCache.classBytes.getOrPut(classFileStamp) { file.contentsToByteArray() }
+                } else {
+                    file.contentsToByteArray()
+                }
+            }
+
         private fun getMethodNodeInner(
             containerId: ClassId,
             bytes: ByteArray,
@@ -34,10 +34,17 @@ class ConstantConditionEliminationMethodTransformer : MethodTransformer() {
     private val deadCodeElimination = DeadCodeEliminationMethodTransformer()
 
     override fun transform(internalClassName: String, methodNode: MethodNode) {
+        transformAndReportChanges(internalClassName, methodNode)
+    }
+
+    override fun transformAndReportChanges(internalClassName: String, methodNode: MethodNode): Boolean {
+        var changed = false
         do {
             val changes = ConstantConditionsOptimization(internalClassName, methodNode).run()
             if (changes) deadCodeElimination.transform(internalClassName, methodNode)
+            changed = changed || changes
         } while (changes)
+        return changed
     }
 
     private class ConstantConditionsOptimization(val internalClassName: String, val methodNode: MethodNode) {
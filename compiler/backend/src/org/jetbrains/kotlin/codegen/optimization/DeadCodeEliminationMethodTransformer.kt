@@ -17,6 +17,8 @@
 package org.jetbrains.kotlin.codegen.optimization
 
 import org.jetbrains.kotlin.codegen.inline.remove
+import org.jetbrains.kotlin.codegen.optimization.common.BasicBlockMethodAnalyzer
+import org.jetbrains.kotlin.codegen.optimization.common.MethodAnalysisCache
 import org.jetbrains.kotlin.codegen.optimization.common.OptimizationBasicInterpreter
 import org.jetbrains.kotlin.codegen.optimization.common.removeEmptyCatchBlocks
 import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
@@ -25,23 +27,53 @@ import org.jetbrains.org.objectweb.asm.tree.LabelNode
 import org.jetbrains.org.objectweb.asm.tree.LineNumberNode
 import org.jetbrains.org.objectweb.asm.tree.MethodNode
 
-class DeadCodeEliminationMethodTransformer : MethodTransformer() {
+/**
+ * If [useBasicBlockFrames] is set, reachability is computed by [BasicBlockMethodAnalyzer], which needs memory only for the frames
+ * at the beginnings of basic blocks, and [analysisCache] isn't used.
+ */
+class DeadCodeEliminationMethodTransformer(
+    private val analysisCache: MethodAnalysisCache? = null,
+    private val useBasicBlockFrames: Boolean = false
+) : MethodTransformer() {
     override fun transform(internalClassName: String, methodNode: MethodNode) {
         transformWithResult(internalClassName, methodNode)
     }
 
+    override fun transformAndReportChanges(internalClassName: String, methodNode: MethodNode): Boolean {
+        val tryCatchBlocksCount = methodNode.tryCatchBlocks.size
+        return transformWithResult(internalClassName, methodNode).hasRemovedAnything() ||
+                methodNode.tryCatchBlocks.size != tryCatchBlocksCount
+    }
+
     fun transformWithResult(internalClassName: String, methodNode: MethodNode): Result {
-        val frames = analyze(internalClassName, methodNode, OptimizationBasicInterpreter())
-        return removeDeadCodeByFrames(methodNode, frames)
+        val tryCatchBlocksCount = methodNode.tryCatchBlocks.size
+        val result =
+            if (useBasicBlockFrames) {
+                val frames = BasicBlockMethodAnalyzer(internalClassName, methodNode, OptimizationBasicInterpreter()).analyze()
+                removeDeadCode(methodNode) { frames.isReachable(it) }
+            } else {
+                val frames =
+                    analysisCache?.getBasicFrames(internalClassName, methodNode)
+                        ?: analyze(internalClassName, methodNode, OptimizationBasicInterpreter())
+                removeDeadCodeByFrames(methodNode, frames)
+            }
+        return result.also {
+            if (it.hasRemovedAnything() || methodNode.tryCatchBlocks.size != tryCatchBlocksCount) {
+                analysisCache?.invalidate()
+            }
+        }
     }
 
-    fun removeDeadCodeByFrames(methodNode: MethodNode, frames: Array<out Any?>): Result {
+    fun removeDeadCodeByFrames(methodNode: MethodNode, frames: Array<out Any?>): Result =
+        removeDeadCode(methodNode) { frames[it] != null }
+
+    private fun removeDeadCode(methodNode: MethodNode, isReachable: (Int) -> Boolean): Result {
         val insnsToRemove = ArrayList<AbstractInsnNode>()
 
         val insns = methodNode.instructions.toArray()
         for (i in insns.indices) {
             val insn = insns[i]
-            if (shouldRemove(insn, i, frames)) {
+            if (shouldRemove(insn, i, isReachable)) {
                 insnsToRemove.add(insn)
             }
         }
@@ -54,18 +86,18 @@ class DeadCodeEliminationMethodTransformer : MethodTransformer() {
         return Result(insnsToRemove.toSet())
     }
 
-    private fun shouldRemove(insn: AbstractInsnNode, index: Int, frames: Array<out Any?>): Boolean =
+    private fun shouldRemove(insn: AbstractInsnNode, index: Int, isReachable: (Int) -> Boolean): Boolean =
         when (insn) {
             is LabelNode ->
                 // Do not remove label nodes because they can be referred by try/catch blocks or local variables table
                 false
             is LineNumberNode ->
-                isDeadLineNumber(insn, index, frames)
+                isDeadLineNumber(insn, index, isReachable)
             else ->
-                frames[index] == null
+                !isReachable(index)
         }
 
-    private fun isDeadLineNumber(insn: LineNumberNode, index: Int, frames: Array<out Any?>): Boolean {
+    private fun isDeadLineNumber(insn: LineNumberNode, index: Int, isReachable: (Int) -> Boolean): Boolean {
         // Line number node is "dead" if the corresponding line number interval
         // contains at least one "dead" meaningful instruction and no "live" meaningful instructions.
         var finger: AbstractInsnNode = insn
@@ -80,7 +112,7 @@ class DeadCodeEliminationMethodTransformer : MethodTransformer() {
                 is LineNumberNode ->
                     if (finger.line != insn.line) return hasDeadInsn
                 else -> {
-                    if (frames[fingerIndex] != null) return false
+                    if (isReachable(fingerIndex)) return false
                     hasDeadInsn = true
                 }
             }
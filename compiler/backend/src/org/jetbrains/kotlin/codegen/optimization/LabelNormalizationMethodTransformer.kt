@@ -25,20 +25,24 @@ import java.lang.IllegalStateException
 
 class LabelNormalizationMethodTransformer : MethodTransformer() {
     override fun transform(internalClassName: String, methodNode: MethodNode) {
-        TransformerForMethod(methodNode).transform()
+        transformAndReportChanges(internalClassName, methodNode)
     }
 
+    override fun transformAndReportChanges(internalClassName: String, methodNode: MethodNode): Boolean =
+        TransformerForMethod(methodNode).transform()
+
     private class TransformerForMethod(val methodNode: MethodNode) {
         val instructions = methodNode.instructions
         val newLabelNodes = SmartIdentityTable<LabelNode, LabelNode>()
 
-        fun transform() {
-            if (rewriteLabelInstructions()) {
-                rewriteNonLabelInstructions()
-                rewriteTryCatchBlocks()
-                rewriteLocalVars()
-                methodNode.removeEmptyCatchBlocks()
-            }
+        fun transform(): Boolean {
+            if (!rewriteLabelInstructions()) return false
+
+            rewriteNonLabelInstructions()
+            rewriteTryCatchBlocks()
+            rewriteLocalVars()
+            methodNode.removeEmptyCatchBlocks()
+            return true
         }
 
         private fun rewriteLabelInstructions(): Boolean {
@@ -28,4 +28,9 @@ class MethodVerifier(private val checkPoint: String) : MethodTransformer() {
             throw AssertionError("$checkPoint: incorrect bytecode", e)
         }
     }
+
+    override fun transformAndReportChanges(internalClassName: String, methodNode: MethodNode): Boolean {
+        transform(internalClassName, methodNode)
+        return false
+    }
 }
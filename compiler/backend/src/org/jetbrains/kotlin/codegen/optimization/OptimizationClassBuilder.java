@@ -24,13 +24,26 @@ import org.jetbrains.kotlin.codegen.state.GenerationState;
 import org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOrigin;
 import org.jetbrains.org.objectweb.asm.MethodVisitor;
 
+import java.util.concurrent.ExecutorService;
+
 public class OptimizationClassBuilder extends DelegatingClassBuilder {
     private final ClassBuilder delegate;
     private final GenerationState generationState;
+    private final ParallelMethodTransformations parallelTransformations;
 
     public OptimizationClassBuilder(@NotNull ClassBuilder delegate, @NotNull GenerationState generationState) {
+        this(delegate, generationState, null);
+    }
+
+    public OptimizationClassBuilder(
+            @NotNull ClassBuilder delegate,
+            @NotNull GenerationState generationState,
+            @Nullable ExecutorService transformationExecutor
+    ) {
         this.delegate = delegate;
         this.generationState = generationState;
+        this.parallelTransformations =
+                transformationExecutor != null ? new ParallelMethodTransformations(transformationExecutor) : null;
     }
 
     @NotNull
@@ -51,7 +64,15 @@ public class OptimizationClassBuilder extends DelegatingClassBuilder {
     ) {
         return new OptimizationMethodVisitor(
                 super.newMethod(origin, access, name, desc, signature, exceptions),
-                generationState, access, name, desc, signature, exceptions
+                generationState, access, name, desc, signature, exceptions, parallelTransformations
         );
     }
+
+    @Override
+    public void done() {
+        if (parallelTransformations != null) {
+            parallelTransformations.transformAndEmitAll();
+        }
+        super.done();
+    }
 }
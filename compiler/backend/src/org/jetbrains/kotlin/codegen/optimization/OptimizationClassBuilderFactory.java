@@ -20,19 +20,31 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.kotlin.codegen.ClassBuilderFactory;
 import org.jetbrains.kotlin.codegen.DelegatingClassBuilderFactory;
 import org.jetbrains.kotlin.codegen.state.GenerationState;
+import org.jetbrains.kotlin.config.JVMConfigurationKeys;
 import org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOrigin;
 
+import java.util.concurrent.ExecutorService;
+
 public class OptimizationClassBuilderFactory extends DelegatingClassBuilderFactory {
     private final GenerationState generationState;
+    // Methods of a class are optimized in parallel in the old backend if several backend threads are requested.
+    // The IR backend generates whole files in parallel instead, see JVMConfigurationKeys.PARALLEL_BACKEND_THREADS
+    private final ExecutorService transformationExecutor;
 
     public OptimizationClassBuilderFactory(ClassBuilderFactory delegate, @NotNull GenerationState generationState) {
         super(delegate);
         this.generationState = generationState;
+
+        int threads = generationState.getConfiguration().get(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, 1);
+        if (threads == 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        this.transformationExecutor = threads > 1 && !generationState.isIrBackend() ? ParallelMethodTransformations.sharedExecutor(threads) : null;
     }
 
     @NotNull
     @Override
     public OptimizationClassBuilder newClassBuilder(@NotNull JvmDeclarationOrigin origin) {
-        return new OptimizationClassBuilder(getDelegate().newClassBuilder(origin), generationState);
+        return new OptimizationClassBuilder(getDelegate().newClassBuilder(origin), generationState, transformationExecutor);
     }
 }
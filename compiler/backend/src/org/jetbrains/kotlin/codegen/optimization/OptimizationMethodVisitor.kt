@@ -20,6 +20,9 @@ import org.jetbrains.kotlin.codegen.TransformationMethodVisitor
 import org.jetbrains.kotlin.codegen.optimization.boxing.PopBackwardPropagationTransformer
 import org.jetbrains.kotlin.codegen.optimization.boxing.RedundantBoxingMethodTransformer
 import org.jetbrains.kotlin.codegen.optimization.boxing.StackPeepholeOptimizationsTransformer
+import org.jetbrains.kotlin.codegen.optimization.boxing.hasInlineClassBoxingCalls
+import org.jetbrains.kotlin.codegen.optimization.common.BasicBlockMethodAnalyzer
+import org.jetbrains.kotlin.codegen.optimization.common.MethodAnalysisCache
 import org.jetbrains.kotlin.codegen.optimization.common.prepareForEmitting
 import org.jetbrains.kotlin.codegen.optimization.nullCheck.RedundantNullCheckMethodTransformer
 import org.jetbrains.kotlin.codegen.optimization.transformer.CompositeMethodTransformer
@@ -34,7 +37,8 @@ class OptimizationMethodVisitor(
     name: String,
     desc: String,
     signature: String?,
-    exceptions: Array<String>?
+    exceptions: Array<String>?,
+    private val parallelTransformations: ParallelMethodTransformations? = null
 ) : TransformationMethodVisitor(delegate, access, name, desc, signature, exceptions) {
     private val constructorCallNormalizationTransformer =
         UninitializedStoresMethodTransformer(generationState.constructorCallNormalizationMode)
@@ -44,29 +48,62 @@ class OptimizationMethodVisitor(
         MethodVerifier("AFTER mandatory stack transformations")
     )
 
+    // Shares frames between the transformers below using the same analysis, while the method isn't changed in between
+    private val analysisCache = MethodAnalysisCache()
+
     val optimizationTransformer = CompositeMethodTransformer(
+        analysisCache,
         CapturedVarsOptimizationMethodTransformer(),
         RedundantNullCheckMethodTransformer(generationState),
-        RedundantCheckCastEliminationMethodTransformer(),
+        RedundantCheckCastEliminationMethodTransformer(analysisCache),
         ConstantConditionEliminationMethodTransformer(),
         RedundantBoxingMethodTransformer(generationState),
         StackPeepholeOptimizationsTransformer(),
         PopBackwardPropagationTransformer(),
-        DeadCodeEliminationMethodTransformer(),
+        DeadCodeEliminationMethodTransformer(analysisCache),
         RedundantGotoMethodTransformer(),
         RedundantNopsCleanupMethodTransformer(),
         MethodVerifier("AFTER optimizations")
     )
 
+    // Optimizations which don't need frames for every instruction at once, used for methods too large for optimizationTransformer
+    val basicBlockOptimizationTransformer = CompositeMethodTransformer(
+        RedundantCheckCastEliminationMethodTransformer(useBasicBlockFrames = true),
+        StackPeepholeOptimizationsTransformer(),
+        DeadCodeEliminationMethodTransformer(useBasicBlockFrames = true),
+        RedundantGotoMethodTransformer(),
+        RedundantNopsCleanupMethodTransformer(),
+        MethodVerifier("AFTER basic block optimizations")
+    )
+
+    override fun transformAndEmit() {
+        if (parallelTransformations != null) {
+            parallelTransformations.add(this)
+        } else {
+            super.transformAndEmit()
+        }
+    }
+
+    // Boxing optimizations resolve inline classes through the generation state, which can only be done on the code generation thread
+    override fun canBeTransformedInParallel(methodNode: MethodNode): Boolean =
+        !hasInlineClassBoxingCalls(methodNode)
+
     override fun performTransformations(methodNode: MethodNode) {
         normalizationMethodTransformer.transform("fake", methodNode)
         constructorCallNormalizationTransformer.transform("fake", methodNode)
 
-        if (canBeOptimized(methodNode) && !generationState.disableOptimization) {
-            optimizationTransformer.transform("fake", methodNode)
+        analysisCache.invalidate()
+        val canBeOptimized = canBeOptimized(methodNode)
+        if (!generationState.disableOptimization) {
+            if (canBeOptimized) {
+                optimizationTransformer.transform("fake", methodNode)
+            } else if (canBeOptimizedUsingBasicBlockFrames(methodNode)) {
+                basicBlockOptimizationTransformer.transform("fake", methodNode)
+            }
         }
 
-        DeadCodeEliminationMethodTransformer().transform("fake", methodNode)
+        DeadCodeEliminationMethodTransformer(analysisCache, useBasicBlockFrames = !canBeOptimized).transform("fake", methodNode)
+        analysisCache.invalidate()
 
         methodNode.prepareForEmitting()
     }
@@ -79,6 +116,12 @@ class OptimizationMethodVisitor(
             return totalFramesSizeMb < MEMORY_LIMIT_BY_METHOD_MB
         }
 
+        fun canBeOptimizedUsingBasicBlockFrames(node: MethodNode): Boolean {
+            val blocksCount = BasicBlockMethodAnalyzer.countBasicBlocks(node).toLong()
+            val totalFramesSizeMb = blocksCount * (node.maxLocals + node.maxStack) / (1024 * 1024)
+            return totalFramesSizeMb < MEMORY_LIMIT_BY_METHOD_MB
+        }
+
         fun canBeOptimizedUsingSourceInterpreter(node: MethodNode): Boolean {
             val frameSize = node.maxLocals + node.maxStack
             val methodSize = node.instructions.size().toLong()
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization
+
+import org.jetbrains.kotlin.codegen.TransformationMethodVisitor
+import java.util.concurrent.*
+
+/**
+ * Transformations of the methods of a class, postponed until the whole class is generated and then performed on [executor].
+ *
+ * Code generation of the class is finished by the time the methods are transformed, so the transformations don't run concurrently
+ * with the code generation, which isn't thread-safe. Methods which can't be transformed in parallel
+ * (see [TransformationMethodVisitor.canBeTransformedInParallel]) are transformed on the calling thread meanwhile.
+ * Methods are written to the class in the order they were added, so the result doesn't depend on the scheduling of threads.
+ */
+class ParallelMethodTransformations(private val executor: ExecutorService) {
+    private val methods = ArrayList<TransformationMethodVisitor>()
+
+    fun add(method: TransformationMethodVisitor) {
+        methods.add(method)
+    }
+
+    fun transformAndEmitAll() {
+        val (parallel, sequential) = methods.partition { it.canBeTransformedInParallel }
+        if (parallel.size > 1) {
+            val futures = parallel.map { method -> executor.submit(Callable { method.transform() }) }
+            try {
+                sequential.forEach { it.transform() }
+            } finally {
+                for (future in futures) {
+                    try {
+                        future.get()
+                    } catch (e: ExecutionException) {
+                        throw e.cause ?: e
+                    }
+                }
+            }
+        } else {
+            methods.forEach { it.transform() }
+        }
+
+        methods.forEach { it.emit() }
+        methods.clear()
+    }
+
+    companion object {
+        private val sharedExecutors = ConcurrentHashMap<Int, ExecutorService>()
+
+        /**
+         * Returns a pool with the given parallelism shared by all compilations in this process, so that compilations which are not
+         * closed explicitly (e.g. in REPL or scripting) don't leave their pools behind. The pool is never shut down:
+         * its worker threads are daemon threads which are terminated when they are idle.
+         */
+        @JvmStatic
+        fun sharedExecutor(threads: Int): ExecutorService =
+            sharedExecutors.computeIfAbsent(threads) { ForkJoinPool(it) }
+    }
+}
@@ -17,6 +17,8 @@
 package org.jetbrains.kotlin.codegen.optimization
 
 import org.jetbrains.kotlin.codegen.inline.ReifiedTypeInliner
+import org.jetbrains.kotlin.codegen.optimization.common.BasicBlockMethodAnalyzer
+import org.jetbrains.kotlin.codegen.optimization.common.MethodAnalysisCache
 import org.jetbrains.kotlin.codegen.optimization.common.OptimizationBasicInterpreter
 import org.jetbrains.kotlin.codegen.optimization.fixStack.top
 import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
@@ -24,18 +26,32 @@ import org.jetbrains.org.objectweb.asm.Opcodes
 import org.jetbrains.org.objectweb.asm.Type
 import org.jetbrains.org.objectweb.asm.tree.MethodNode
 import org.jetbrains.org.objectweb.asm.tree.TypeInsnNode
+import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue
+import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
 
-class RedundantCheckCastEliminationMethodTransformer : MethodTransformer() {
+/**
+ * If [useBasicBlockFrames] is set, frames are computed by [BasicBlockMethodAnalyzer], which needs memory only for the frames
+ * at the beginnings of basic blocks, and [analysisCache] isn't used.
+ */
+class RedundantCheckCastEliminationMethodTransformer(
+    private val analysisCache: MethodAnalysisCache? = null,
+    private val useBasicBlockFrames: Boolean = false
+) : MethodTransformer() {
     override fun transform(internalClassName: String, methodNode: MethodNode) {
+        transformAndReportChanges(internalClassName, methodNode)
+    }
+
+    override fun transformAndReportChanges(internalClassName: String, methodNode: MethodNode): Boolean {
         val insns = methodNode.instructions.toArray()
-        if (!insns.any { it.opcode == Opcodes.CHECKCAST }) return
+        if (!insns.any { it.opcode == Opcodes.CHECKCAST }) return false
 
         val redundantCheckCasts = ArrayList<TypeInsnNode>()
 
-        val frames = analyze(internalClassName, methodNode, OptimizationBasicInterpreter())
+        val frameAt = getFrames(internalClassName, methodNode)
         for (i in insns.indices) {
-            val valueType = frames[i]?.top()?.type ?: continue
             val insn = insns[i]
+            if (insn.opcode != Opcodes.CHECKCAST) continue
+            val valueType = frameAt(i)?.top()?.type ?: continue
             if (ReifiedTypeInliner.isOperationReifiedMarker(insn.previous)) continue
 
             if (insn is TypeInsnNode) {
@@ -52,9 +68,25 @@ class RedundantCheckCastEliminationMethodTransformer : MethodTransformer() {
             }
         }
 
+        if (redundantCheckCasts.isEmpty()) return false
+
         redundantCheckCasts.forEach {
             methodNode.instructions.remove(it)
         }
+        analysisCache?.invalidate()
+        return true
+    }
+
+    private fun getFrames(internalClassName: String, methodNode: MethodNode): (Int) -> Frame<BasicValue>? {
+        if (useBasicBlockFrames) {
+            val frames = BasicBlockMethodAnalyzer(internalClassName, methodNode, OptimizationBasicInterpreter()).analyze()
+            return { frames.getFrame(it) }
+        }
+
+        val frames =
+            analysisCache?.getBasicFrames(internalClassName, methodNode)
+                ?: analyze(internalClassName, methodNode, OptimizationBasicInterpreter())
+        return { frames[it] }
     }
 
     private fun isTrivialSubtype(superType: Type, subType: Type) =
@@ -43,6 +43,10 @@ class RedundantGotoMethodTransformer : MethodTransformer() {
      *      ...
      */
     override fun transform(internalClassName: String, methodNode: MethodNode) {
+        transformAndReportChanges(internalClassName, methodNode)
+    }
+
+    override fun transformAndReportChanges(internalClassName: String, methodNode: MethodNode): Boolean {
         val insns = methodNode.instructions.toArray().apply { reverse() }
         val insnsToRemove = arrayListOf<AbstractInsnNode>()
         val currentLabels = hashSetOf<LabelNode>()
@@ -75,24 +79,33 @@ class RedundantGotoMethodTransformer : MethodTransformer() {
         }
 
         // Rewrite branch instructions.
+        var rewrittenAnyLabels = false
         if (!labelsToReplace.isEmpty()) {
-            insns.filterIsInstance<JumpInsnNode>().forEach { rewriteLabelIfNeeded(it, labelsToReplace) }
+            for (jumpInsn in insns.filterIsInstance<JumpInsnNode>()) {
+                if (rewriteLabelIfNeeded(jumpInsn, labelsToReplace)) {
+                    rewrittenAnyLabels = true
+                }
+            }
         }
 
         for (insnToRemove in insnsToRemove) {
             methodNode.instructions.remove(insnToRemove)
         }
+
+        return rewrittenAnyLabels || insnsToRemove.isNotEmpty()
     }
 
     private fun rewriteLabelIfNeeded(
         jumpInsn: JumpInsnNode,
         labelsToReplace: Map<LabelNode, JumpInsnNode>
-    ) {
+    ): Boolean {
         val lastJumpInsn = getLastTargetJumpInsn(jumpInsn, labelsToReplace, mutableListOf())
-        if (lastJumpInsn != null && lastJumpInsn != jumpInsn) {
+        if (lastJumpInsn != null && lastJumpInsn != jumpInsn && jumpInsn.label != lastJumpInsn.label) {
             // Do not remove the old label because it can be used to define a local variable range.
             jumpInsn.label = lastJumpInsn.label
+            return true
         }
+        return false
     }
 
     private fun getLastTargetJumpInsn(
@@ -30,7 +30,11 @@ import java.util.*
 
 class RedundantNopsCleanupMethodTransformer : MethodTransformer() {
     override fun transform(internalClassName: String, methodNode: MethodNode) {
-        LabelNormalizationMethodTransformer().transform(internalClassName, methodNode)
+        transformAndReportChanges(internalClassName, methodNode)
+    }
+
+    override fun transformAndReportChanges(internalClassName: String, methodNode: MethodNode): Boolean {
+        var changed = LabelNormalizationMethodTransformer().transformAndReportChanges(internalClassName, methodNode)
 
         val requiredNops = HashSet<AbstractInsnNode>()
 
@@ -46,10 +50,13 @@ class RedundantNopsCleanupMethodTransformer : MethodTransformer() {
                 val toRemove = current
                 current = current.next
                 methodNode.instructions.remove(toRemove)
+                changed = true
             } else {
                 current = current.next
             }
         }
+
+        return changed
     }
 
     private fun recordNopsRequiredForDebugger(methodNode: MethodNode, requiredNops: MutableSet<AbstractInsnNode>) {
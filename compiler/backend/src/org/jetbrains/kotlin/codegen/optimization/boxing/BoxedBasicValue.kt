@@ -19,10 +19,14 @@ package org.jetbrains.kotlin.codegen.optimization.boxing
 import com.intellij.openapi.util.Pair
 import org.jetbrains.kotlin.codegen.AsmUtil
 import org.jetbrains.kotlin.codegen.optimization.common.StrictBasicValue
+import org.jetbrains.kotlin.codegen.optimization.common.asSequence
 import org.jetbrains.kotlin.codegen.state.GenerationState
+import org.jetbrains.kotlin.codegen.state.KotlinTypeMapper
 import org.jetbrains.kotlin.resolve.jvm.AsmTypes
 import org.jetbrains.org.objectweb.asm.Type
 import org.jetbrains.org.objectweb.asm.tree.AbstractInsnNode
+import org.jetbrains.org.objectweb.asm.tree.MethodInsnNode
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
 import java.util.*
 
 abstract class BoxedBasicValue(type: Type) : StrictBasicValue(type) {
@@ -123,6 +127,15 @@ fun unboxedTypeOfInlineClass(boxedType: Type, state: GenerationState): Type? {
     return state.mapInlineClass(descriptor)
 }
 
+/**
+ * Returns `true` if [node] boxes or unboxes values of inline classes, which are resolved by [unboxedTypeOfInlineClass]
+ * when the boxing is analyzed. Other methods are analyzed without access to the generation state.
+ */
+fun hasInlineClassBoxingCalls(node: MethodNode): Boolean =
+    node.instructions.asSequence().any {
+        it is MethodInsnNode && (it.name == KotlinTypeMapper.BOX_JVM_METHOD_NAME || it.name == KotlinTypeMapper.UNBOX_JVM_METHOD_NAME)
+    }
+
 private fun isInlineClassValue(boxedType: Type): Boolean {
     return !AsmUtil.isBoxedPrimitiveType(boxedType) && boxedType != AsmTypes.K_CLASS_TYPE
 }
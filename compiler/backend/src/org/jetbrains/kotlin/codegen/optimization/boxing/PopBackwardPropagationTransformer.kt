@@ -34,8 +34,12 @@ import java.util.*
 
 class PopBackwardPropagationTransformer : MethodTransformer() {
     override fun transform(internalClassName: String, methodNode: MethodNode) {
-        if (!OptimizationMethodVisitor.canBeOptimizedUsingSourceInterpreter(methodNode)) return
-        Transformer(methodNode).transform()
+        transformAndReportChanges(internalClassName, methodNode)
+    }
+
+    override fun transformAndReportChanges(internalClassName: String, methodNode: MethodNode): Boolean {
+        if (!OptimizationMethodVisitor.canBeOptimizedUsingSourceInterpreter(methodNode)) return false
+        return Transformer(methodNode).transform()
     }
 
     private class Transformer(val methodNode: MethodNode) {
@@ -66,14 +70,17 @@ class PopBackwardPropagationTransformer : MethodTransformer() {
 
         private val frames by lazy { analyzeMethodBody() }
 
-        fun transform() {
-            if (insns.none { it.isPop() || it.isPurePush() }) return
+        fun transform(): Boolean {
+            if (insns.none { it.isPop() || it.isPurePush() }) return false
 
             computeTransformations()
+            if (transformations.isEmpty()) return false
+
             for ((insn, transformation) in transformations.entries) {
                 transformation.apply(insn)
             }
             postprocessNops()
+            return true
         }
 
         private fun analyzeMethodBody(): Array<out Frame<SourceValue>?> {
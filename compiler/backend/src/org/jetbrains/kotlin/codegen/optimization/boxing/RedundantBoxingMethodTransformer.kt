@@ -38,6 +38,10 @@ import java.util.*
 class RedundantBoxingMethodTransformer(private val generationState: GenerationState) : MethodTransformer() {
 
     override fun transform(internalClassName: String, node: MethodNode) {
+        transformAndReportChanges(internalClassName, node)
+    }
+
+    override fun transformAndReportChanges(internalClassName: String, node: MethodNode): Boolean {
         val interpreter = RedundantBoxingInterpreter(node.instructions, generationState)
         val frames = MethodTransformer.analyze(internalClassName, node, interpreter)
 
@@ -54,7 +58,9 @@ class RedundantBoxingMethodTransformer(private val generationState: GenerationSt
             node.remapLocalVariables(buildVariablesRemapping(valuesToOptimize, node))
 
             adaptInstructionsForBoxedValues(node, valuesToOptimize)
+            return true
         }
+        return false
     }
 
     private fun interpretPopInstructionsForBoxedValues(
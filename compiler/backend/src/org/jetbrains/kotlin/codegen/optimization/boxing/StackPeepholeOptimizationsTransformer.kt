@@ -26,8 +26,15 @@ import org.jetbrains.org.objectweb.asm.tree.MethodNode
 
 class StackPeepholeOptimizationsTransformer : MethodTransformer() {
     override fun transform(internalClassName: String, methodNode: MethodNode) {
+        transformAndReportChanges(internalClassName, methodNode)
+    }
+
+    override fun transformAndReportChanges(internalClassName: String, methodNode: MethodNode): Boolean {
+        var changed = false
         while (transformOnce(methodNode)) {
+            changed = true
         }
+        return changed
     }
 
     private fun transformOnce(methodNode: MethodNode): Boolean {
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.common
+
+import org.jetbrains.kotlin.codegen.inline.insnText
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.Type
+import org.jetbrains.org.objectweb.asm.tree.*
+import org.jetbrains.org.objectweb.asm.tree.analysis.AnalyzerException
+import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
+import org.jetbrains.org.objectweb.asm.tree.analysis.Interpreter
+import org.jetbrains.org.objectweb.asm.tree.analysis.Value
+
+/**
+ * Data flow analysis equivalent to [MethodAnalyzer], which keeps frames only at the beginnings of basic blocks rather than
+ * at every instruction, so the memory it needs is proportional to the number of basic blocks.
+ *
+ * Frames of other instructions are recomputed from the frame at the beginning of their block by [BasicBlockFrames.getFrame],
+ * so [interpreter] must not have side effects and must produce equal values when it interprets the same instructions again.
+ */
+class BasicBlockMethodAnalyzer<V : Value>(
+    private val owner: String,
+    private val method: MethodNode,
+    private val interpreter: Interpreter<V>
+) {
+    private val instructions = method.instructions
+    private val insns: Array<AbstractInsnNode> = instructions.toArray()
+    private val nInsns = insns.size
+
+    private val handlers: Array<MutableList<TryCatchBlockNode>?> = arrayOfNulls(nInsns)
+
+    fun analyze(): BasicBlockFrames<V> {
+        if (nInsns == 0) return BasicBlockFrames(insns, IntArray(0), IntArray(1), arrayOfNulls(0), interpreter)
+
+        if (insns.any { it.opcode == Opcodes.JSR || it.opcode == Opcodes.RET })
+            throw AssertionError("Subroutines are deprecated since Java 6")
+
+        computeExceptionHandlersForEachInsn()
+        val blockStarts = computeBlockStarts(method, insns)
+        val blockOfInsn = IntArray(nInsns)
+        for (block in 0 until blockStarts.size - 1) {
+            blockOfInsn.fill(block, blockStarts[block], blockStarts[block + 1])
+        }
+
+        val blockCount = blockStarts.size - 1
+        val entryFrames = arrayOfNulls<Frame<V>>(blockCount)
+        val queued = BooleanArray(blockCount)
+        val queue = IntArray(blockCount)
+        var top = 0
+
+        fun mergeControlFlowEdge(insn: Int, frame: Frame<V>) {
+            val block = blockOfInsn[insn]
+            val oldFrame = entryFrames[block]
+            val changes =
+                if (oldFrame != null)
+                    oldFrame.merge(frame, interpreter)
+                else {
+                    entryFrames[block] = Frame(frame)
+                    true
+                }
+            if (changes && !queued[block]) {
+                queued[block] = true
+                queue[top++] = block
+            }
+        }
+
+        mergeControlFlowEdge(0, createInitialFrame())
+
+        val current = Frame<V>(method.maxLocals, method.maxStack)
+        val handler = Frame<V>(method.maxLocals, method.maxStack)
+        while (top > 0) {
+            val block = queue[--top]
+            queued[block] = false
+            current.init(entryFrames[block]!!)
+
+            val end = blockStarts[block + 1]
+            for (insn in blockStarts[block] until end) {
+                val insnNode = insns[insn]
+                try {
+                    handlers[insn]?.forEach { tcb ->
+                        handler.init(current)
+                        handler.clearStack()
+                        handler.push(interpreter.newValue(Type.getObjectType(tcb.type ?: "java/lang/Throwable")))
+                        mergeControlFlowEdge(instructions.indexOf(tcb.handler), handler)
+                    }
+
+                    if (insnNode.isMeaningful) {
+                        current.execute(insnNode, interpreter)
+                    }
+                } catch (e: AnalyzerException) {
+                    throw AnalyzerException(e.node, "Error at instruction #$insn ${insnNode.insnText}: ${e.message}", e)
+                } catch (e: Exception) {
+                    throw AnalyzerException(insnNode, "Error at instruction #$insn ${insnNode.insnText}: ${e.message}", e)
+                }
+            }
+
+            val last = insns[end - 1]
+            for (successor in successors(last, end)) {
+                mergeControlFlowEdge(successor, current)
+            }
+        }
+
+        return BasicBlockFrames(insns, blockStarts, blockOfInsn, entryFrames, interpreter)
+    }
+
+    private fun createInitialFrame(): Frame<V> {
+        val frame = Frame<V>(method.maxLocals, method.maxStack)
+        frame.setReturn(interpreter.newValue(Type.getReturnType(method.desc)))
+        var local = 0
+        if ((method.access and Opcodes.ACC_STATIC) == 0) {
+            frame.setLocal(local++, interpreter.newValue(Type.getObjectType(owner)))
+        }
+        for (arg in Type.getArgumentTypes(method.desc)) {
+            frame.setLocal(local++, interpreter.newValue(arg))
+            if (arg.size == 2) {
+                frame.setLocal(local++, interpreter.newValue(null))
+            }
+        }
+        while (local < method.maxLocals) {
+            frame.setLocal(local++, interpreter.newValue(null))
+        }
+        return frame
+    }
+
+    private fun successors(last: AbstractInsnNode, next: Int): List<Int> {
+        val fallThrough = if (next < nInsns) listOf(next) else emptyList()
+        return when {
+            last is JumpInsnNode ->
+                (if (last.opcode != Opcodes.GOTO) fallThrough else emptyList()) + instructions.indexOf(last.label)
+            last is TableSwitchInsnNode ->
+                last.labels.map { instructions.indexOf(it) } + instructions.indexOf(last.dflt)
+            last is LookupSwitchInsnNode ->
+                last.labels.map { instructions.indexOf(it) } + instructions.indexOf(last.dflt)
+            last.isTerminal() ->
+                emptyList()
+            else ->
+                fallThrough
+        }
+    }
+
+    private fun computeExceptionHandlersForEachInsn() {
+        for (tcb in method.tryCatchBlocks) {
+            val begin = instructions.indexOf(tcb.start)
+            val end = instructions.indexOf(tcb.end)
+            for (j in begin until end) {
+                val insnHandlers = handlers[j] ?: ArrayList<TryCatchBlockNode>().also { handlers[j] = it }
+                insnHandlers.add(tcb)
+            }
+        }
+    }
+
+    companion object {
+        /**
+         * Number of frames kept by [BasicBlockMethodAnalyzer] for [method], that is the number of its basic blocks
+         */
+        fun countBasicBlocks(method: MethodNode): Int {
+            val insns = method.instructions.toArray()
+            return if (insns.isEmpty()) 0 else computeBlockStarts(method, insns).size - 1
+        }
+
+        // A basic block starts at the first instruction, at every jump target and exception handler, and after every instruction
+        // which doesn't just fall through to the next one. Returns the starts of all blocks followed by the number of instructions.
+        private fun computeBlockStarts(method: MethodNode, insns: Array<AbstractInsnNode>): IntArray {
+            val instructions = method.instructions
+            val isBlockStart = BooleanArray(insns.size + 1)
+            isBlockStart[0] = true
+            isBlockStart[insns.size] = true
+
+            for (tcb in method.tryCatchBlocks) {
+                isBlockStart[instructions.indexOf(tcb.handler)] = true
+            }
+
+            for ((index, insn) in insns.withIndex()) {
+                when (insn) {
+                    is JumpInsnNode -> isBlockStart[instructions.indexOf(insn.label)] = true
+                    is TableSwitchInsnNode -> (insn.labels + insn.dflt).forEach { isBlockStart[instructions.indexOf(it)] = true }
+                    is LookupSwitchInsnNode -> (insn.labels + insn.dflt).forEach { isBlockStart[instructions.indexOf(it)] = true }
+                    else -> if (!insn.isTerminal()) continue
+                }
+                isBlockStart[index + 1] = true
+            }
+
+            return isBlockStart.indices.filter { isBlockStart[it] }.toIntArray()
+        }
+    }
+}
+
+/**
+ * Result of [BasicBlockMethodAnalyzer].
+ *
+ * Only the frame of the last requested instruction is kept, and the frame of a following instruction in the same block
+ * is computed from it, so requesting frames in the order of instructions interprets every instruction once.
+ *
+ * NOT THREADSAFE
+ */
+class BasicBlockFrames<V : Value> internal constructor(
+    private val insns: Array<AbstractInsnNode>,
+    private val blockStarts: IntArray,
+    private val blockOfInsn: IntArray,
+    private val entryFrames: Array<Frame<V>?>,
+    private val interpreter: Interpreter<V>
+) {
+    private var currentInsn = -1
+    private var currentFrame: Frame<V>? = null
+
+    val size: Int
+        get() = insns.size
+
+    fun isReachable(insn: Int): Boolean = entryFrames[blockOfInsn[insn]] != null
+
+    /**
+     * Frame before the execution of the instruction with index [insn], or null if the instruction is unreachable.
+     * The returned frame is a copy, which isn't changed by further requests.
+     */
+    fun getFrame(insn: Int): Frame<V>? {
+        val block = blockOfInsn[insn]
+        val entryFrame = entryFrames[block] ?: return null
+        val start = blockStarts[block]
+
+        var frame = currentFrame
+        if (frame == null || currentInsn !in start..insn) {
+            frame = Frame(entryFrame)
+            currentInsn = start
+        }
+        while (currentInsn < insn) {
+            val previousInsn = insns[currentInsn++]
+            if (previousInsn.isMeaningful) frame.execute(previousInsn, interpreter)
+        }
+        currentFrame = frame
+
+        return Frame(frame)
+    }
+}
+
+private fun AbstractInsnNode.isTerminal(): Boolean =
+    opcode == Opcodes.ATHROW || opcode in Opcodes.IRETURN..Opcodes.RETURN
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.common
+
+import org.jetbrains.kotlin.codegen.optimization.transformer.CompositeMethodTransformer
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue
+import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
+
+/**
+ * Analyses of a method shared between transformations of the method, so that a transformer doesn't repeat an analysis
+ * performed by a previous one if the method hasn't changed in between.
+ *
+ * Cached results describe the method as it was when they were computed, so [invalidate] must be called whenever the method changes.
+ * [CompositeMethodTransformer] does it after every transformer which reports changes, see [MethodTransformer.transformAndReportChanges].
+ * Cached frames are shared, so they must not be modified.
+ *
+ * NOT THREADSAFE, should be used for a single method at a time.
+ */
+class MethodAnalysisCache {
+    private var methodNode: MethodNode? = null
+    private var basicFramesOwner: String? = null
+    private var basicFrames: Array<out Frame<BasicValue>?>? = null
+    private var controlFlowGraph: ControlFlowGraph? = null
+    private var livenessFrames: List<VariableLivenessFrame>? = null
+
+    /**
+     * Frames computed by [MethodTransformer.analyze] with [OptimizationBasicInterpreter].
+     */
+    fun getBasicFrames(internalClassName: String, node: MethodNode): Array<out Frame<BasicValue>?> {
+        useMethod(node)
+        basicFrames?.takeIf { basicFramesOwner == internalClassName }?.let { return it }
+
+        return MethodTransformer.analyze(internalClassName, node, OptimizationBasicInterpreter()).also {
+            basicFrames = it
+            basicFramesOwner = internalClassName
+        }
+    }
+
+    /**
+     * Control flow graph built by [ControlFlowGraph.build] including exception edges.
+     */
+    fun getControlFlowGraph(node: MethodNode): ControlFlowGraph {
+        useMethod(node)
+        controlFlowGraph?.let { return it }
+
+        return ControlFlowGraph.build(node).also { controlFlowGraph = it }
+    }
+
+    /**
+     * Frames computed by [analyzeLiveness].
+     */
+    fun getLiveness(node: MethodNode): List<VariableLivenessFrame> {
+        useMethod(node)
+        livenessFrames?.let { return it }
+
+        val graph = getControlFlowGraph(node)
+        return analyzeLiveness(node, graph).also { livenessFrames = it }
+    }
+
+    fun invalidate() {
+        basicFrames = null
+        basicFramesOwner = null
+        controlFlowGraph = null
+        livenessFrames = null
+    }
+
+    private fun useMethod(node: MethodNode) {
+        if (node !== methodNode) {
+            invalidate()
+            methodNode = node
+        }
+    }
+}
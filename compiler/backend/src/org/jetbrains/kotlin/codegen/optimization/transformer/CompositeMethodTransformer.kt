@@ -16,13 +16,31 @@
 
 package org.jetbrains.kotlin.codegen.optimization.transformer
 
+import org.jetbrains.kotlin.codegen.optimization.common.MethodAnalysisCache
 import org.jetbrains.org.objectweb.asm.tree.MethodNode
 
-open class CompositeMethodTransformer(private val transformers: List<MethodTransformer>) : MethodTransformer() {
+open class CompositeMethodTransformer(
+    private val transformers: List<MethodTransformer>,
+    private val analysisCache: MethodAnalysisCache? = null
+) : MethodTransformer() {
     constructor(vararg transformers: MethodTransformer?) : this(transformers.filterNotNull())
 
+    constructor(analysisCache: MethodAnalysisCache, vararg transformers: MethodTransformer?) :
+            this(transformers.filterNotNull(), analysisCache)
+
     override fun transform(internalClassName: String, methodNode: MethodNode) {
-        transformers.forEach { it.transform(internalClassName, methodNode) }
+        transformAndReportChanges(internalClassName, methodNode)
+    }
+
+    override fun transformAndReportChanges(internalClassName: String, methodNode: MethodNode): Boolean {
+        var changed = false
+        for (transformer in transformers) {
+            if (transformer.transformAndReportChanges(internalClassName, methodNode)) {
+                changed = true
+                analysisCache?.invalidate()
+            }
+        }
+        return changed
     }
 
     companion object {
@@ -45,4 +45,14 @@ public abstract class MethodTransformer {
     }
 
     public abstract void transform(@NotNull String internalClassName, @NotNull MethodNode methodNode);
+
+    /**
+     * Transforms the method in the same way as {@link #transform} and returns false if it is left unchanged.
+     * Transformers which can tell that override this, so that analyses of the method cached by
+     * {@link org.jetbrains.kotlin.codegen.optimization.common.MethodAnalysisCache} stay valid for the next transformers.
+     */
+    public boolean transformAndReportChanges(@NotNull String internalClassName, @NotNull MethodNode methodNode) {
+        transform(internalClassName, methodNode);
+        return true;
+    }
 }
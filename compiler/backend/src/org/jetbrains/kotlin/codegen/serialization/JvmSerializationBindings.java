@@ -53,12 +53,12 @@ public final class JvmSerializationBindings {
 
     private final MutableSlicedMap map = new SlicedMapImpl(false);
 
-    public <K, V> void put(@NotNull SerializationMappingSlice<K, V> slice, @NotNull K key, @NotNull V value) {
+    public synchronized <K, V> void put(@NotNull SerializationMappingSlice<K, V> slice, @NotNull K key, @NotNull V value) {
         map.put(slice, key, value);
     }
 
     @Nullable
-    public <K, V> V get(@NotNull SerializationMappingSlice<K, V> slice, @NotNull K key) {
+    public synchronized <K, V> V get(@NotNull SerializationMappingSlice<K, V> slice, @NotNull K key) {
         return map.get(slice, key);
     }
 }
@@ -182,7 +182,14 @@ class GenerationState private constructor(
     private val interceptedBuilderFactory: ClassBuilderFactory
     private var used = false
 
-    val diagnostics: DiagnosticSink get() = extraJvmDiagnosticsTrace
+    // The IR backend may generate classes in several threads, see JVMConfigurationKeys.PARALLEL_BACKEND_THREADS
+    val diagnostics: DiagnosticSink = object : DiagnosticSink {
+        override fun report(diagnostic: Diagnostic) = synchronized(extraJvmDiagnosticsTrace) {
+            extraJvmDiagnosticsTrace.report(diagnostic)
+        }
+
+        override fun wantsDiagnostics(): Boolean = extraJvmDiagnosticsTrace.wantsDiagnostics()
+    }
     val collectedExtraJvmDiagnostics: Diagnostics = LazyJvmDiagnostics {
         duplicateSignatureFactory?.reportDiagnostics()
         extraJvmDiagnosticsTrace.bindingContext.diagnostics
@@ -222,7 +229,9 @@ class GenerationState private constructor(
         languageVersionSettings.apiVersion >= ApiVersion.KOTLIN_1_4 &&
                 !configuration.getBoolean(JVMConfigurationKeys.NO_KOTLIN_NOTHING_VALUE_EXCEPTION)
     val samWrapperClasses: SamWrapperClasses = SamWrapperClasses(this)
-    val globalInlineContext: GlobalInlineContext = GlobalInlineContext(diagnostics)
+    // Tracks the stack of inline calls being generated, so it's kept separately for every thread generating classes
+    private val globalInlineContexts = ThreadLocal.withInitial { GlobalInlineContext(diagnostics) }
+    val globalInlineContext: GlobalInlineContext get() = globalInlineContexts.get()
     val mappingsClassesForWhenByEnum: MappingsClassesForWhenByEnum = MappingsClassesForWhenByEnum(this)
     val jvmRuntimeTypes: JvmRuntimeTypes = JvmRuntimeTypes(
         module, configuration.languageVersionSettings, generateOptimizedCallableReferenceSuperClasses
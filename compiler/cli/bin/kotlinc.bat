@@ -55,9 +55,21 @@ if "%_KOTLIN_RUNNER%"=="1" (
     set _ADDITIONAL_CLASSPATH=;%_KOTLIN_HOME%\lib\%_KOTLIN_TOOL%
   )
 
-  "%_JAVACMD%" %JAVA_OPTS% -noverify -cp "%_KOTLIN_HOME%\lib\kotlin-preloader.jar" ^
-    org.jetbrains.kotlin.preloading.Preloader -cp "%_KOTLIN_HOME%\lib\kotlin-compiler.jar%_ADDITIONAL_CLASSPATH%" ^
-    %_KOTLIN_COMPILER% %KOTLIN_OPTS%
+  if not "%KOTLIN_CDS_ARCHIVE%"=="" (
+    rem Class data sharing only applies to the classes loaded by the built-in class loaders, so the preloader is not used.
+    rem The archive is created in two steps, where ARGUMENTS are the ones of a typical compilation,
+    rem and the class path of the second step should be the same as the one used below:
+    rem   java -cp "%KOTLIN_HOME%\lib\kotlin-preloader.jar" org.jetbrains.kotlin.preloading.Preloader -dump-class-list kotlinc.classlist
+    rem       -cp "%KOTLIN_HOME%\lib\kotlin-compiler.jar" org.jetbrains.kotlin.cli.jvm.K2JVMCompiler ARGUMENTS
+    rem   java -Xshare:dump -XX:SharedClassListFile=kotlinc.classlist "-XX:SharedArchiveFile=%KOTLIN_CDS_ARCHIVE%"
+    rem       -cp "%KOTLIN_HOME%\lib\kotlin-compiler.jar"
+    "%_JAVACMD%" %JAVA_OPTS% -noverify "-XX:SharedArchiveFile=%KOTLIN_CDS_ARCHIVE%" -Xshare:auto ^
+      -cp "%_KOTLIN_HOME%\lib\kotlin-compiler.jar%_ADDITIONAL_CLASSPATH%" %_KOTLIN_COMPILER% %KOTLIN_OPTS%
+  ) else (
+    "%_JAVACMD%" %JAVA_OPTS% -noverify -cp "%_KOTLIN_HOME%\lib\kotlin-preloader.jar" ^
+      org.jetbrains.kotlin.preloading.Preloader -cp "%_KOTLIN_HOME%\lib\kotlin-compiler.jar%_ADDITIONAL_CLASSPATH%" ^
+      %_KOTLIN_COMPILER% %KOTLIN_OPTS%
+  )
 )
 
 exit /b %ERRORLEVEL%
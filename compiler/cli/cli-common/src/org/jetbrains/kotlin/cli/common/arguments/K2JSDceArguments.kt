@@ -47,6 +47,14 @@ class K2JSDceArguments : CommonToolArguments() {
         description = "Overwriting strategy during copy dependencies in development mode"
     )
     var devModeOverwritingStrategy: String? by NullableStringFreezableVar(null)
+
+    @Argument(
+        value = "-Xthreads",
+        valueDescription = "<N>",
+        description = "Parse input files and write output files in N parallel threads. 0 means use a thread per processor core.\n" +
+                "Warning: this feature is experimental"
+    )
+    var threads: String? by NullableStringFreezableVar(null)
 }
 
 object DevModeOverwritingStrategies {
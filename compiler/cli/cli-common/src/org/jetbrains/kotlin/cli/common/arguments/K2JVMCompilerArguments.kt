@@ -108,6 +108,24 @@ class K2JVMCompilerArguments : CommonCompilerArguments() {
     )
     var isIrWithStableAbi: Boolean by FreezableVar(false)
 
+    @Argument(
+        value = "-Xbackend-threads",
+        valueDescription = "<N>",
+        description = "When using the IR backend, generate class files in N parallel threads, otherwise optimize methods of each class in N parallel threads.\n" +
+                "0 means use a thread per processor core.\n" +
+                "Warning: this feature is experimental"
+    )
+    var backendThreads: String? by NullableStringFreezableVar(null)
+
+    @Argument(
+        value = "-Xfir-threads",
+        valueDescription = "<N>",
+        description = "Build raw Front-end IR of files in N parallel threads, resolution always processes files sequentially.\n" +
+                "0 means use a thread per processor core.\n" +
+                "Warning: this feature is far from being production-ready"
+    )
+    var firThreads: String? by NullableStringFreezableVar(null)
+
     @Argument(value = "-Xmodule-path", valueDescription = "<path>", description = "Paths where to find Java 9+ modules")
     var javaModulePath: String? by NullableStringFreezableVar(null)
 
@@ -168,6 +186,14 @@ class K2JVMCompilerArguments : CommonCompilerArguments() {
     )
     var buildFile: String? by NullableStringFreezableVar(null)
 
+    @Argument(
+        value = "-Xclasspath-package-index",
+        valueDescription = "<path>",
+        description = "Path to the file storing packages and classes of classpath jars between compilations.\n" +
+                "Allows to skip jars which don't contain the requested classes without opening them"
+    )
+    var classpathPackageIndex: String? by NullableStringFreezableVar(null)
+
     @Argument(value = "-Xmultifile-parts-inherit", description = "Compile multifile classes as a hierarchy of parts and facade")
     var inheritMultifileParts: Boolean by FreezableVar(false)
 
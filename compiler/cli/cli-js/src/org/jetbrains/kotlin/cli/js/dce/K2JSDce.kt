@@ -66,6 +66,12 @@ class K2JSDce : CLITool<K2JSDceArguments>() {
 
     private fun performDce(files: List<InputFile>, arguments: K2JSDceArguments, messageCollector: MessageCollector): ExitCode {
         val includedDeclarations = arguments.declarationsToKeep.orEmpty().toSet()
+        val threads = arguments.threads?.let { value ->
+            value.toIntOrNull()?.takeIf { it >= 0 } ?: run {
+                messageCollector.report(CompilerMessageSeverity.ERROR, "invalid number of threads: '$value'")
+                return ExitCode.COMPILATION_ERROR
+            }
+        } ?: 1
 
         val logConsumer = { level: DCELogLevel, message: String ->
             val severity = when (level) {
@@ -76,8 +82,9 @@ class K2JSDce : CLITool<K2JSDceArguments>() {
             messageCollector.report(severity, message)
         }
 
-        val dceResult = DeadCodeElimination.run(files, includedDeclarations, logConsumer)
+        val dceResult = DeadCodeElimination.run(files, includedDeclarations, threads, logConsumer)
         if (dceResult.status == DeadCodeEliminationStatus.FAILED) return ExitCode.COMPILATION_ERROR
+        messageCollector.report(CompilerMessageSeverity.LOGGING, "DCE timings: ${dceResult.timings}")
         val nodes = dceResult.reachableNodes.filterTo(mutableSetOf()) { it.reachable }
 
         val reachabilitySeverity = if (arguments.printReachabilityInfo) CompilerMessageSeverity.INFO else CompilerMessageSeverity.LOGGING
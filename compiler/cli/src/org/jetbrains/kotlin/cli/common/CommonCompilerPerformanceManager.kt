@@ -16,6 +16,7 @@ abstract class CommonCompilerPerformanceManager(private val presentableName: Str
     protected val measurements: MutableList<PerformanceMeasurement> = mutableListOf()
     protected var isEnabled: Boolean = false
     private var initStartNanos = PerformanceCounter.currentTime()
+    private val jvmUptimeAtInitStart = ManagementFactory.getRuntimeMXBean().uptime
     private var analysisStart: Long = 0
     private var generationStart: Long = 0
 
@@ -24,6 +25,8 @@ abstract class CommonCompilerPerformanceManager(private val presentableName: Str
     private var irTranslationStart: Long = 0
     private var irGenerationStart: Long = 0
 
+    private val cacheStatistics = mutableListOf<Pair<String, () -> Pair<Long, Long>>>()
+
     private var targetDescription: String? = null
     protected var files: Int? = null
     protected var lines: Int? = null
@@ -55,6 +58,14 @@ abstract class CommonCompilerPerformanceManager(private val presentableName: Str
         recordGcTime()
         recordJitCompilationTime()
         recordPerfCountersMeasurements()
+        recordCacheStatistics()
+    }
+
+    /**
+     * Registers a cache, the numbers of its hits and misses returned by [statistics] are recorded when the compilation is finished
+     */
+    fun registerCacheStatistics(name: String, statistics: () -> Pair<Long, Long>) {
+        cacheStatistics += name to statistics
     }
 
     open fun notifyAnalysisStarted() {
@@ -130,12 +141,27 @@ abstract class CommonCompilerPerformanceManager(private val presentableName: Str
     private fun recordInitializationTime() {
         val time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - initStartNanos)
         measurements += CompilerInitializationMeasurement(time)
+
+        // The property is set only when the JVM is started through the preloader for this compilation. Otherwise the JVM
+        // may have been running long before it (e.g. in the daemon), and its uptime says nothing about the startup
+        val preloadingTime = System.getProperty(PRELOADING_TIME_PROPERTY)?.toLongOrNull()
+        if (preloadingTime != null) {
+            measurements += JvmStartupMeasurement(jvmUptimeAtInitStart)
+            measurements += ClassPreloadingMeasurement(preloadingTime)
+        }
     }
 
     private fun recordPerfCountersMeasurements() {
         PerformanceCounter.report { s -> measurements += PerformanceCounterMeasurement(s) }
     }
 
+    private fun recordCacheStatistics() {
+        for ((name, statistics) in cacheStatistics) {
+            val (hits, misses) = statistics()
+            measurements += CacheMeasurement(name, hits, misses)
+        }
+    }
+
     private fun createPerformanceReport(): ByteArray = buildString {
         append("$presentableName performance report\n")
         measurements.map { it.render() }.sorted().forEach { append("$it\n") }
@@ -143,6 +169,11 @@ abstract class CommonCompilerPerformanceManager(private val presentableName: Str
 
     open fun notifyRepeat(total: Int, number: Int) {}
 
+    private companion object {
+        // Copy of org.jetbrains.kotlin.preloading.Preloader.PRELOADING_TIME_PROPERTY, the compiler doesn't depend on the preloader
+        const val PRELOADING_TIME_PROPERTY = "kotlin.preloader.preloading.time.ms"
+    }
+
     private data class GCData(val name: String, val collectionTime: Long, val collectionCount: Long) {
         constructor(bean: GarbageCollectorMXBean) : this(bean.name, bean.collectionTime, bean.collectionCount)
     }
@@ -45,6 +45,21 @@ fun <A : CommonCompilerArguments> CompilerConfiguration.setupCommonArguments(
     setupLanguageVersionSettings(arguments)
 }
 
+/**
+ * Stores the number of threads given by [value] of [argument], reports an error if it's not a non-negative number
+ */
+fun CompilerConfiguration.putThreadCount(key: CompilerConfigurationKey<Int>, argument: String, value: String?) {
+    if (value == null) return
+    val threads = value.toIntOrNull()
+    if (threads == null || threads < 0) {
+        getNotNull(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY).report(
+            CompilerMessageSeverity.ERROR, "invalid number of threads for $argument: $value", null
+        )
+    } else {
+        put(key, threads)
+    }
+}
+
 fun <A : CommonCompilerArguments> CompilerConfiguration.setupLanguageVersionSettings(arguments: A) {
     languageVersionSettings = arguments.toLanguageVersionSettings(getNotNull(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY))
 }
@@ -17,6 +17,14 @@ class CompilerInitializationMeasurement(private val milliseconds: Long) : Perfor
     override fun render(): String = "INIT: Compiler initialized in $milliseconds ms"
 }
 
+class JvmStartupMeasurement(private val milliseconds: Long) : PerformanceMeasurement {
+    override fun render(): String = "STARTUP: JVM started and compiler classes loaded in $milliseconds ms"
+}
+
+class ClassPreloadingMeasurement(private val milliseconds: Long) : PerformanceMeasurement {
+    override fun render(): String = "PRELOAD: Compiler classes preloaded in $milliseconds ms"
+}
+
 class CodeAnalysisMeasurement(private val lines: Int?, val milliseconds: Long) : PerformanceMeasurement {
     override fun render(): String = formatMeasurement("ANALYZE", milliseconds, lines)
 }
@@ -33,6 +41,10 @@ class PerformanceCounterMeasurement(private val counterReport: String) : Perform
     override fun render(): String = counterReport
 }
 
+class CacheMeasurement(val cacheName: String, val hits: Long, val misses: Long) : PerformanceMeasurement {
+    override fun render(): String = "CACHE: $cacheName: $hits hits, $misses misses"
+}
+
 class IRMeasurement(val lines: Int?, val milliseconds: Long, val kind: Kind) : PerformanceMeasurement {
     override fun render(): String = formatMeasurement("IR $kind", milliseconds, lines)
 
@@ -38,8 +38,11 @@ class CliVirtualFileFinder(
     override fun findMetadata(classId: ClassId): InputStream? {
         assert(!classId.isNestedClass) { "Nested classes are not supported here: $classId" }
 
+        // JvmDependenciesIndex caches results per ClassId, so a made-up name is used to not mix them up with the class file search
+        val metadataClassId = ClassId(classId.packageFqName, Name.special("<metadata:${classId.shortClassName.asString()}>"))
+
         return findBinaryClass(
-            classId,
+            metadataClassId,
             classId.shortClassName.asString() + MetadataPackageFragment.DOT_METADATA_FILE_EXTENSION
         )?.inputStream
     }
@@ -55,7 +58,7 @@ class CliVirtualFileFinder(
 
     override fun findBuiltInsData(packageFqName: FqName): InputStream? {
         // "<builtins-metadata>" is just a made-up name
-        // JvmDependenciesIndex requires the ClassId of the class which we're searching for, to cache the last request+result
+        // JvmDependenciesIndex requires the ClassId of the class which we're searching for, to cache the request+result
         val classId = ClassId(packageFqName, Name.special("<builtins-metadata>"))
 
         return findBinaryClass(classId, BuiltInSerializerProtocol.getBuiltInsFileName(packageFqName))?.inputStream
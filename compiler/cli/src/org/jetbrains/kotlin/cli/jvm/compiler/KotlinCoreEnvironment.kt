@@ -222,9 +222,20 @@ class KotlinCoreEnvironment private constructor(
         val (roots, singleJavaFileRoots) =
             initialRoots.partition { (file) -> file.isDirectory || file.extension != JavaFileType.DEFAULT_EXTENSION }
 
+        val packageIndex = configuration.get(JVMConfigurationKeys.CLASSPATH_PACKAGE_INDEX)?.let(ClasspathPackageIndex.Companion::load)
+        if (packageIndex != null) {
+            Disposer.register(project, Disposable { packageIndex.save() })
+        }
+
+        val initialRootsIndex = JvmDependenciesIndexImpl(roots, packageIndex)
+        configuration.get(CLIConfigurationKeys.PERF_MANAGER)?.registerCacheStatistics("Class search in classpath") {
+            initialRootsIndex.classSearchStatistics
+        }
+        registerBinaryClassCacheStatistics(configuration)
+
         // REPL and kapt2 update classpath dynamically
         rootsIndex = JvmDependenciesDynamicCompoundIndex().apply {
-            addIndex(JvmDependenciesIndexImpl(roots))
+            addIndex(initialRootsIndex)
             updateClasspathFromRootsIndex(this)
         }
 
@@ -249,6 +260,18 @@ class KotlinCoreEnvironment private constructor(
         })
     }
 
+    private fun registerBinaryClassCacheStatistics(configuration: CompilerConfiguration) {
+        val performanceManager = configuration.get(CLIConfigurationKeys.PERF_MANAGER) ?: return
+        // The cache is an application service, which outlives this environment in the daemon,
+        // so only the requests made after this point are reported
+        val binaryClassCache = ServiceManager.getService(KotlinBinaryClassCache::class.java)
+        val initialHits = binaryClassCache.hitCount
+        val initialMisses = binaryClassCache.missCount
+        performanceManager.registerCacheStatistics("Binary class headers") {
+            binaryClassCache.hitCount - initialHits to binaryClassCache.missCount - initialMisses
+        }
+    }
+
     private fun collectAdditionalSources(project: MockProject) {
         var unprocessedSources: Collection<KtFile> = sourceFiles
         val processedSources = HashSet<KtFile>()
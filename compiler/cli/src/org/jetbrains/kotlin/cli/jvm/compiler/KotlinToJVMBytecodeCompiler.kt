@@ -34,6 +34,7 @@ import org.jetbrains.kotlin.backend.common.phaser.PhaseConfig
 import org.jetbrains.kotlin.backend.jvm.JvmIrCodegenFactory
 import org.jetbrains.kotlin.backend.jvm.jvmPhases
 import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
+import org.jetbrains.kotlin.cli.common.CommonCompilerPerformanceManager
 import org.jetbrains.kotlin.cli.common.checkKotlinPackageUsage
 import org.jetbrains.kotlin.cli.common.config.addKotlinSourceRoot
 import org.jetbrains.kotlin.cli.common.messages.AnalyzerWithCompilerReport
@@ -47,6 +48,8 @@ import org.jetbrains.kotlin.codegen.ClassBuilderFactories
 import org.jetbrains.kotlin.codegen.CodegenFactory
 import org.jetbrains.kotlin.codegen.DefaultCodegenFactory
 import org.jetbrains.kotlin.codegen.KotlinCodegenFacade
+import org.jetbrains.kotlin.codegen.inline.InlineCache
+import org.jetbrains.kotlin.codegen.inline.SharedInlineCache
 import org.jetbrains.kotlin.codegen.state.GenerationState
 import org.jetbrains.kotlin.codegen.state.GenerationStateEventCallback
 import org.jetbrains.kotlin.config.*
@@ -351,7 +354,11 @@ object KotlinToJVMBytecodeCompiler {
                 )
             }
 
-            val firAnalyzerFacade = FirAnalyzerFacade(session, moduleConfiguration.languageVersionSettings, ktFiles)
+            val firAnalyzerFacade = FirAnalyzerFacade(
+                session, moduleConfiguration.languageVersionSettings, ktFiles,
+                rawFirBuildingThreads = moduleConfiguration.get(JVMConfigurationKeys.FIR_THREADS, 1)
+                    .let { if (it == 0) Runtime.getRuntime().availableProcessors() else it }
+            )
 
             firAnalyzerFacade.runResolution()
             val firDiagnostics = firAnalyzerFacade.runCheckers()
@@ -396,6 +403,7 @@ object KotlinToJVMBytecodeCompiler {
             ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
 
             performanceManager?.notifyIRGenerationStarted()
+            val sharedInlineCacheSnapshot = InlineCache.shared?.snapshot()
             generationState.beforeCompile()
             codegenFactory.generateModuleInFrontendIRMode(
                 generationState, moduleFragment, symbolTable, sourceManager
@@ -421,6 +429,7 @@ object KotlinToJVMBytecodeCompiler {
 
             performanceManager?.notifyIRGenerationFinished()
             performanceManager?.notifyGenerationFinished()
+            performanceManager?.registerInlineCacheStatistics(generationState.inlineCache, sharedInlineCacheSnapshot)
             ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
             outputs[module] = generationState
         }
@@ -644,10 +653,12 @@ object KotlinToJVMBytecodeCompiler {
 
         val performanceManager = environment.configuration.get(CLIConfigurationKeys.PERF_MANAGER)
         performanceManager?.notifyGenerationStarted()
+        val sharedInlineCacheSnapshot = InlineCache.shared?.snapshot()
 
         KotlinCodegenFacade.compileCorrectFiles(generationState)
 
         performanceManager?.notifyGenerationFinished()
+        performanceManager?.registerInlineCacheStatistics(generationState.inlineCache, sharedInlineCacheSnapshot)
 
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
 
@@ -667,6 +678,34 @@ object KotlinToJVMBytecodeCompiler {
         return generationState
     }
 
+    private fun CommonCompilerPerformanceManager.registerInlineCacheStatistics(
+        inlineCache: InlineCache,
+        sharedCacheSnapshot: SharedInlineCache.Snapshot?
+    ) {
+        // Only the numbers are retained, not the caches
+        fun register(name: String, hits: Long, misses: Long) {
+            val statistics = hits to misses
+            registerCacheStatistics(name) { statistics }
+        }
+
+        register("Inline class bytes", inlineCache.classBytes.hitCount, inlineCache.classBytes.missCount)
+        register("Inline method nodes", inlineCache.methodNodeById.hitCount, inlineCache.methodNodeById.missCount)
+        val sharedCache = InlineCache.shared
+        if (sharedCache != null && sharedCacheSnapshot != null) {
+            val current = sharedCache.snapshot()
+            register(
+                "Shared inline class bytes",
+                current.classBytesHits - sharedCacheSnapshot.classBytesHits,
+                current.classBytesMisses - sharedCacheSnapshot.classBytesMisses
+            )
+            register(
+                "Shared inline method nodes",
+                current.methodNodeHits - sharedCacheSnapshot.methodNodeHits,
+                current.methodNodeMisses - sharedCacheSnapshot.methodNodeMisses
+            )
+        }
+    }
+
     private val KotlinCoreEnvironment.messageCollector: MessageCollector
         get() = configuration.getNotNull(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY)
 }
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.index
+
+import com.intellij.openapi.util.io.FileUtil
+import java.io.*
+import java.nio.file.AtomicMoveNotSupportedException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.zip.ZipFile
+
+/**
+ * Persistent index of packages and class files in classpath jars, which allows [JvmDependenciesIndexImpl] to skip jars
+ * not containing a requested package or class without opening them.
+ *
+ * Jars are identified by their path and validated by their size and modification time, a jar which isn't indexed yet or has changed
+ * since it was indexed is (re-)indexed by reading its central directory. Updates are written to [storage] on [save].
+ *
+ * NOT THREADSAFE, same as [JvmDependenciesIndexImpl]
+ */
+class ClasspathPackageIndex private constructor(private val storage: File, private val jars: MutableMap<String, JarContent>) {
+    class JarContent(
+        val length: Long,
+        val lastModified: Long,
+        // package paths ("org/jetbrains") to names of files in the package without extensions, which are the top-level class names
+        // for class (and .kotlin_metadata) files. Names containing '$' are added along with all their '$'-separated prefixes,
+        // so that both nested and top-level classes with '$' in the name are found
+        private val packages: Map<String, Set<String>>
+    ) {
+        fun hasPackage(packagePath: String): Boolean = packagePath in packages
+
+        fun mayHaveClass(packagePath: String, topLevelClassName: String): Boolean =
+            packages[packagePath]?.contains(topLevelClassName) == true
+
+        internal fun write(output: DataOutput) {
+            output.writeLong(length)
+            output.writeLong(lastModified)
+            output.writeInt(packages.size)
+            for ((packagePath, classNames) in packages) {
+                output.writeUTF(packagePath)
+                output.writeInt(classNames.size)
+                for (className in classNames) {
+                    output.writeUTF(className)
+                }
+            }
+        }
+
+        companion object {
+            internal fun read(input: DataInput): JarContent {
+                val length = input.readLong()
+                val lastModified = input.readLong()
+                val packages = HashMap<String, Set<String>>()
+                repeat(input.readInt()) {
+                    val packagePath = input.readUTF()
+                    val classNames = HashSet<String>()
+                    repeat(input.readInt()) {
+                        classNames.add(input.readUTF())
+                    }
+                    packages[packagePath] = classNames
+                }
+                return JarContent(length, lastModified, packages)
+            }
+        }
+    }
+
+    private var isChanged = false
+
+    /**
+     * Returns the content of the jar at [jarPath], or null if the jar can't be read.
+     */
+    fun getJarContent(jarPath: String): JarContent? {
+        val jar = File(jarPath)
+        if (!jar.isFile) return null
+        val length = jar.length()
+        val lastModified = jar.lastModified()
+
+        val known = jars[jarPath]
+        if (known != null && known.length == length && known.lastModified == lastModified) return known
+
+        val content = try {
+            indexJar(jar, length, lastModified)
+        } catch (e: IOException) {
+            return null
+        }
+        jars[jarPath] = content
+        isChanged = true
+        return content
+    }
+
+    /**
+     * Writes the index to the storage if it has changed. Failures are ignored, since the index is only an optimization.
+     */
+    fun save() {
+        if (!isChanged) return
+
+        // Several compilations may use the same index, so it's written to a temporary file which then replaces the old one
+        try {
+            FileUtil.createParentDirs(storage)
+            val temporary = File.createTempFile(storage.name, ".tmp", storage.parentFile)
+            try {
+                DataOutputStream(BufferedOutputStream(FileOutputStream(temporary))).use { output ->
+                    output.writeInt(VERSION)
+                    output.writeInt(jars.size)
+                    for ((jarPath, content) in jars) {
+                        output.writeUTF(jarPath)
+                        content.write(output)
+                    }
+                }
+                try {
+                    Files.move(temporary.toPath(), storage.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+                } catch (e: AtomicMoveNotSupportedException) {
+                    Files.move(temporary.toPath(), storage.toPath(), StandardCopyOption.REPLACE_EXISTING)
+                }
+                isChanged = false
+            } finally {
+                temporary.delete()
+            }
+        } catch (e: IOException) {
+            // The changes will be saved by the next compilation
+        }
+    }
+
+    companion object {
+        private const val VERSION = 2
+
+        /**
+         * Loads the index from [storage], an index which doesn't exist or can't be read is considered empty.
+         */
+        fun load(storage: File): ClasspathPackageIndex {
+            val jars = HashMap<String, JarContent>()
+            if (storage.isFile) {
+                try {
+                    DataInputStream(BufferedInputStream(FileInputStream(storage))).use { input ->
+                        if (input.readInt() == VERSION) {
+                            repeat(input.readInt()) {
+                                val jarPath = input.readUTF()
+                                jars[jarPath] = JarContent.read(input)
+                            }
+                        }
+                    }
+                } catch (e: IOException) {
+                    jars.clear()
+                }
+            }
+            return ClasspathPackageIndex(storage, jars)
+        }
+
+        private fun indexJar(jar: File, length: Long, lastModified: Long): JarContent {
+            val packages = HashMap<String, MutableSet<String>>()
+            packages[""] = HashSet()
+
+            ZipFile(jar).use { zip ->
+                for (entry in zip.entries()) {
+                    val name = entry.name
+                    val lastSlash = name.lastIndexOf('/')
+
+                    // Every directory on the path is a package which exists in this jar, even if it contains no classes
+                    var slash = name.indexOf('/')
+                    while (slash in 0..lastSlash) {
+                        packages.getOrPut(name.substring(0, slash)) { HashSet() }
+                        slash = name.indexOf('/', slash + 1)
+                    }
+
+                    if (entry.isDirectory) continue
+
+                    val classNames = packages.getOrPut(if (lastSlash < 0) "" else name.substring(0, lastSlash)) { HashSet() }
+                    val className = name.substring(lastSlash + 1).substringBeforeLast('.')
+                    var dollar = className.indexOf('$')
+                    while (dollar > 0) {
+                        classNames.add(className.substring(0, dollar))
+                        dollar = className.indexOf('$', dollar + 1)
+                    }
+                    classNames.add(className)
+                }
+            }
+
+            return JarContent(length, lastModified, packages)
+        }
+    }
+}
@@ -18,18 +18,26 @@ package org.jetbrains.kotlin.cli.jvm.index
 
 import com.intellij.ide.highlighter.JavaClassFileType
 import com.intellij.ide.highlighter.JavaFileType
+import com.intellij.openapi.vfs.StandardFileSystems
 import com.intellij.openapi.vfs.VfsUtilCore
 import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.util.containers.IntArrayList
+import com.intellij.util.io.URLUtil
 import gnu.trove.THashMap
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.FqName
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
 
 // speeds up finding files/classes in classpath/java source roots
-// NOT THREADSAFE, needs to be adapted/removed if we want compiler to be multithreaded
+// traversal of roots is serialized, only results of class searches which are already cached can be obtained concurrently
 // the main idea of this class is for each package to store roots which contains it to avoid excessive file system traversal
-class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
+// packageIndex, if provided, is consulted first to skip jars which don't contain the requested package or class without opening them
+class JvmDependenciesIndexImpl(
+    _roots: List<JavaRoot>,
+    private val packageIndex: ClasspathPackageIndex? = null
+) : JvmDependenciesIndex {
     //these fields are computed based on _roots passed to constructor which are filled in later
     private val roots: List<JavaRoot> by lazy { _roots.toList() }
 
@@ -58,9 +66,18 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
         }
     }
 
-    // holds the request and the result last time we searched for class
+    // holds the results of recent class searches, both successful and not
     // helps improve several scenarios, LazyJavaResolverContext.findClassInJava being the most important
-    private var lastClassSearch: Pair<FindClassRequest, SearchResult>? = null
+    private val classSearchCache = ConcurrentHashMap<FindClassRequest, SearchResult>()
+
+    private val classSearchCacheHits = LongAdder()
+    private val classSearchCacheMisses = LongAdder()
+
+    /**
+     * Number of [findClass] requests answered with the help of the cache and without it
+     */
+    val classSearchStatistics: Pair<Long, Long>
+        get() = classSearchCacheHits.sum() to classSearchCacheMisses.sum()
 
     override val indexedRoots by lazy { roots.asSequence() }
 
@@ -68,6 +85,11 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
         Array(roots.size) { THashMap<String, VirtualFile?>() }
     }
 
+    // content of each root according to packageIndex, null if the root is not a binary jar or there's no index
+    private val jarContents: Array<ClasspathPackageIndex.JarContent?> by lazy {
+        Array(roots.size) { rootIndex -> packageIndex?.getJarContent(roots[rootIndex]) }
+    }
+
     override fun traverseDirectoriesInPackage(
         packageFqName: FqName,
         acceptedRootTypes: Set<JavaRoot.RootType>,
@@ -79,36 +101,41 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
     }
 
     // findClassGivenDirectory MUST check whether the class with this classId exists in given package
+    // and look for the same file whenever it's called with the same classId, since results are cached
     override fun <T : Any> findClass(
         classId: ClassId,
         acceptedRootTypes: Set<JavaRoot.RootType>,
         findClassGivenDirectory: (VirtualFile, JavaRoot.RootType) -> T?
     ): T? {
-        // make a decision based on information saved from last class search
-        if (lastClassSearch?.first?.classId != classId) {
-            return search(FindClassRequest(classId, acceptedRootTypes), findClassGivenDirectory)
-        }
-
-        val (cachedRequest, cachedResult) = lastClassSearch!!
-        return when (cachedResult) {
+        val request = FindClassRequest(classId, acceptedRootTypes)
+        // make a decision based on information saved from previous class searches
+        when (val cachedResult = classSearchCache[request]) {
             is SearchResult.NotFound -> {
-                val limitedRootTypes = acceptedRootTypes - cachedRequest.acceptedRootTypes
-                if (limitedRootTypes.isEmpty()) {
-                    null
-                } else {
-                    search(FindClassRequest(classId, limitedRootTypes), findClassGivenDirectory)
-                }
+                classSearchCacheHits.increment()
+                return null
             }
             is SearchResult.Found -> {
-                if (cachedRequest.acceptedRootTypes == acceptedRootTypes) {
-                    findClassGivenDirectory(cachedResult.packageDirectory, cachedResult.root.type)
-                } else {
-                    search(FindClassRequest(classId, acceptedRootTypes), findClassGivenDirectory)
+                // a different handler may look for another file in the same directory, so continue if it's not there
+                val result = findClassGivenDirectory(cachedResult.packageDirectory, cachedResult.root.type)
+                if (result != null) {
+                    classSearchCacheHits.increment()
+                    return result
                 }
             }
         }
+
+        classSearchCacheMisses.increment()
+        return search(request, findClassGivenDirectory)
+    }
+
+    private fun cacheClassSearch(request: FindClassRequest, result: SearchResult) {
+        if (classSearchCache.size >= CLASS_SEARCH_CACHE_SIZE) {
+            classSearchCache.clear()
+        }
+        classSearchCache[request] = result
     }
 
+    @Synchronized
     private fun <T : Any> search(request: SearchRequest, handler: (VirtualFile, JavaRoot.RootType) -> T?): T? {
         // a list of package sub names, ["org", "jb", "kotlin"]
         val packagesPath = request.packageFqName.pathSegments().map { it.identifier }
@@ -124,6 +151,7 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
             for (i in 0..cacheRootIndices.size() - 1) {
                 val rootIndex = cacheRootIndices[i]
                 if (rootIndex <= processedRootsUpTo) continue // roots with those indices have been processed by now
+                if (request is FindClassRequest && !mayContainClass(rootIndex, request.classId)) continue
 
                 val directoryInRoot = travelPath(rootIndex, request.packageFqName, packagesPath, cacheIndex, caches) ?: continue
                 val root = roots[rootIndex]
@@ -131,7 +159,7 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
                     val result = handler(directoryInRoot, root.type)
                     if (result != null) {
                         if (request is FindClassRequest) {
-                            lastClassSearch = Pair(request, SearchResult.Found(directoryInRoot, root))
+                            cacheClassSearch(request, SearchResult.Found(directoryInRoot, root))
                         }
                         return result
                     }
@@ -141,7 +169,7 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
         }
 
         if (request is FindClassRequest) {
-            lastClassSearch = Pair(request, SearchResult.NotFound)
+            cacheClassSearch(request, SearchResult.NotFound)
         }
         return null
     }
@@ -174,6 +202,8 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
         val prefixPathSegments = pathRoot.prefixFqName?.pathSegments()
 
         var currentFile = pathRoot.file
+        val jarContent = jarContents[rootIndex]
+        var packagePath = ""
 
         for (pathIndex in packagesPath.indices) {
             val subPackageName = packagesPath[pathIndex]
@@ -183,6 +213,10 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
                     return null
                 }
             } else {
+                if (jarContent != null) {
+                    packagePath = if (pathIndex == 0) subPackageName else "$packagePath/$subPackageName"
+                    if (!jarContent.hasPackage(packagePath)) return null
+                }
                 currentFile = currentFile.findChildPackage(subPackageName, pathRoot.type) ?: return null
             }
 
@@ -196,6 +230,28 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
         return currentFile
     }
 
+    private fun mayContainClass(rootIndex: Int, classId: ClassId): Boolean {
+        if (rootIndex >= maxIndex) return true
+        val jarContent = jarContents[rootIndex] ?: return true
+
+        val topLevelClassName = classId.relativeClassName.pathSegments().first()
+        // e.g. "<builtins-metadata>", which is used to find files other than classes
+        if (topLevelClassName.isSpecial) return true
+
+        return jarContent.mayHaveClass(classId.packageFqName.asString().replace('.', '/'), topLevelClassName.asString())
+    }
+
+    private fun ClasspathPackageIndex.getJarContent(root: JavaRoot): ClasspathPackageIndex.JarContent? {
+        if (root.type != JavaRoot.RootType.BINARY || root.prefixFqName != null) return null
+        if (root.file.fileSystem.protocol != StandardFileSystems.JAR_PROTOCOL) return null
+
+        // only roots of jars are indexed, not directories inside them
+        val path = root.file.path
+        if (!path.endsWith(URLUtil.JAR_SEPARATOR)) return null
+
+        return getJarContent(path.removeSuffix(URLUtil.JAR_SEPARATOR))
+    }
+
     private fun VirtualFile.findChildPackage(subPackageName: String, rootType: JavaRoot.RootType): VirtualFile? {
         val childDirectory = findChild(subPackageName) ?: return null
 
@@ -246,4 +302,8 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
 
         object NotFound : SearchResult()
     }
+
+    companion object {
+        private val CLASS_SEARCH_CACHE_SIZE = System.getProperty("kotlin.jvm.class.search.cache.size")?.toIntOrNull() ?: 100_000
+    }
 }
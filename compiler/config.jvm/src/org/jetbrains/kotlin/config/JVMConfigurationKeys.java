@@ -87,6 +87,9 @@ public class JVMConfigurationKeys {
     public static final CompilerConfigurationKey<String> DECLARATIONS_JSON_PATH =
             CompilerConfigurationKey.create("path to declarations output");
 
+    public static final CompilerConfigurationKey<File> CLASSPATH_PACKAGE_INDEX =
+            CompilerConfigurationKey.create("classpath package index file");
+
     public static final CompilerConfigurationKey<List<Module>> MODULES =
             CompilerConfigurationKey.create("module data");
 
@@ -117,6 +120,12 @@ public class JVMConfigurationKeys {
     public static final CompilerConfigurationKey<Boolean> IS_IR_WITH_STABLE_ABI =
             CompilerConfigurationKey.create("Is IR with stable ABI");
 
+    public static final CompilerConfigurationKey<Integer> PARALLEL_BACKEND_THREADS =
+            CompilerConfigurationKey.create("Number of threads generating class files in the IR backend or optimizing methods in the old backend");
+
+    public static final CompilerConfigurationKey<Integer> FIR_THREADS =
+            CompilerConfigurationKey.create("Number of threads building raw FIR");
+
     public static final CompilerConfigurationKey<Boolean> NO_OPTIMIZED_CALLABLE_REFERENCES =
             CompilerConfigurationKey.create("Do not use optimized callable reference superclasses available from 1.4");
 
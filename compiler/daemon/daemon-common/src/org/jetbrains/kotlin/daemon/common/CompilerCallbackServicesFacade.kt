@@ -91,6 +91,13 @@ interface CompilerCallbackServicesFacade : Remote {
     @Throws(RemoteException::class)
     fun lookupTracker_isDoNothing(): Boolean
 
+    /**
+     * Records lookups encoded with [LookupBatchWriter], which is much more compact than a collection of [LookupInfo].
+     * Allows the daemon to send lookups in bounded batches during compilation, instead of all of them at the end.
+     */
+    @Throws(RemoteException::class)
+    fun lookupTracker_recordBatch(batch: ByteArray)
+
     // ----------------------------------------------------
     // CompilationCanceledStatus
     @Throws(RemoteException::class, RmiFriendlyCompilationCanceledException::class)
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon.common
+
+import org.jetbrains.kotlin.incremental.components.LookupInfo
+import org.jetbrains.kotlin.incremental.components.Position
+import org.jetbrains.kotlin.incremental.components.ScopeKind
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+
+private const val LOOKUP_BATCH_VERSION = 1
+
+/**
+ * Compact binary encoding of a batch of lookups, used to send lookups from the daemon to the client while compiling,
+ * see [CompilerCallbackServicesFacade.lookupTracker_recordBatch] and [readLookupBatch].
+ *
+ * Every string is written once per batch and is referred to by its index afterwards. Scope kinds and positions are written
+ * only if [withPositions] is set, otherwise lookups are read with [ScopeKind.CLASSIFIER] and [Position.NO_POSITION],
+ * and repeated lookups in a batch are skipped.
+ */
+class LookupBatchWriter(private val withPositions: Boolean) {
+    private val bytes = ByteArrayOutputStream()
+    private val output = DataOutputStream(bytes)
+    private val stringIndices = HashMap<String, Int>()
+    private var writtenStringCount = 0
+    private val writtenLookups = HashSet<Long>()
+
+    var lookupCount: Int = 0
+        private set
+
+    val size: Int
+        get() = bytes.size()
+
+    init {
+        reset()
+    }
+
+    fun add(filePath: String, position: Position, scopeFqName: String, scopeKind: ScopeKind, name: String) {
+        val filePathIndex = stringIndex(filePath)
+        val scopeFqNameIndex = stringIndex(scopeFqName)
+        val nameIndex = stringIndex(name)
+
+        if (!withPositions && maxOf(filePathIndex, scopeFqNameIndex, nameIndex) < MAX_DEDUPLICATED_INDEX) {
+            val key = (filePathIndex.toLong() shl 42) or (scopeFqNameIndex.toLong() shl 21) or nameIndex.toLong()
+            if (!writtenLookups.add(key)) return
+        }
+
+        writeString(filePath, filePathIndex)
+        writeString(scopeFqName, scopeFqNameIndex)
+        writeString(name, nameIndex)
+        if (withPositions) {
+            output.writeByte(scopeKind.ordinal)
+            output.writeVarInt(position.line + 1)
+            output.writeVarInt(position.column + 1)
+        }
+        lookupCount++
+    }
+
+    fun toByteArray(): ByteArray = bytes.toByteArray()
+
+    fun reset() {
+        bytes.reset()
+        stringIndices.clear()
+        writtenStringCount = 0
+        writtenLookups.clear()
+        lookupCount = 0
+        output.writeByte(LOOKUP_BATCH_VERSION)
+        output.writeBoolean(withPositions)
+    }
+
+    // Strings are numbered in the order of their first occurrence, which is also the order in which the reader sees them
+    private fun stringIndex(string: String): Int = stringIndices.getOrPut(string) { stringIndices.size }
+
+    private fun writeString(string: String, index: Int) {
+        if (index == writtenStringCount) {
+            writtenStringCount++
+            output.writeVarInt(0)
+            output.writeUTF(string)
+        } else {
+            output.writeVarInt(index + 1)
+        }
+    }
+
+    private companion object {
+        const val MAX_DEDUPLICATED_INDEX = 1 shl 21
+    }
+}
+
+/**
+ * Reads lookups written by [LookupBatchWriter] and passes them to [record] in the order they were written.
+ */
+fun readLookupBatch(
+    batch: ByteArray,
+    record: (filePath: String, position: Position, scopeFqName: String, scopeKind: ScopeKind, name: String) -> Unit
+) {
+    val input = DataInputStream(ByteArrayInputStream(batch))
+    val version = input.readUnsignedByte()
+    check(version == LOOKUP_BATCH_VERSION) { "Unsupported lookup batch version: $version" }
+    val withPositions = input.readBoolean()
+    val strings = ArrayList<String>()
+    val scopeKinds = ScopeKind.values()
+
+    fun readString(): String {
+        val index = input.readVarInt()
+        return if (index == 0) input.readUTF().also { strings.add(it) } else strings[index - 1]
+    }
+
+    while (input.available() > 0) {
+        val filePath = readString()
+        val scopeFqName = readString()
+        val name = readString()
+        if (withPositions) {
+            val scopeKind = scopeKinds[input.readUnsignedByte()]
+            val line = input.readVarInt() - 1
+            val column = input.readVarInt() - 1
+            record(filePath, Position(line, column), scopeFqName, scopeKind, name)
+        } else {
+            record(filePath, Position.NO_POSITION, scopeFqName, ScopeKind.CLASSIFIER, name)
+        }
+    }
+}
+
+fun readLookupBatch(batch: ByteArray): List<LookupInfo> {
+    val result = ArrayList<LookupInfo>()
+    readLookupBatch(batch) { filePath, position, scopeFqName, scopeKind, name ->
+        result.add(LookupInfo(filePath, position, scopeFqName, scopeKind, name))
+    }
+    return result
+}
+
+private fun DataOutputStream.writeVarInt(value: Int) {
+    var rest = value
+    while (rest and 0x7F.inv() != 0) {
+        writeByte((rest and 0x7F) or 0x80)
+        rest = rest ushr 7
+    }
+    writeByte(rest)
+}
+
+private fun DataInputStream.readVarInt(): Int {
+    var result = 0
+    var shift = 0
+    while (true) {
+        val byte = readUnsignedByte()
+        result = result or ((byte and 0x7F) shl shift)
+        if (byte and 0x80 == 0) return result
+        shift += 7
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+class LazyClasspathWatcherTest : TestCaseWithTmpdir() {
+    fun testUnchangedClasspath() {
+        val classpath = createClasspath()
+        val watcher = LazyClasspathWatcher(listOf(classpath.path), checkPeriod = 0)
+
+        assertFalse(watcher.isChanged)
+        Thread.sleep(EVENT_WAIT_MS)
+        assertFalse(watcher.isChanged)
+    }
+
+    fun testChangeInNotNormalizedClasspathEntry() {
+        val classpath = createClasspath()
+        File(tmpdir, "other").mkdirs()
+        val entry = File(tmpdir, "other/../${classpath.name}/.")
+        val watcher = LazyClasspathWatcher(listOf(entry.path), checkPeriod = 0)
+        // waits for the watcher to start
+        assertFalse(watcher.isChanged)
+
+        modify(File(classpath, "b.class"))
+        assertChangeDetected(watcher)
+    }
+
+    fun testChangeDuringInitialDigest() {
+        val classpath = createClasspath()
+        val files = classpath.listFiles()!!.toList()
+        var modified = false
+        // modifies every file exactly once while the initial digests are computed, either before or after it is digested
+        for (file in files) {
+            val watcher = LazyClasspathWatcher(listOf(classpath.path), checkPeriod = 0, digest = { digested ->
+                if (!modified && digested == file) {
+                    modify(file)
+                    modified = true
+                }
+                digested.md5Digest()
+            })
+            assertChangeDetected(watcher)
+            assertTrue(modified)
+            modified = false
+        }
+        for (file in files) {
+            val other = files.first { it != file }
+            val watcher = LazyClasspathWatcher(listOf(classpath.path), checkPeriod = 0, digest = { digested ->
+                if (!modified && digested == other) {
+                    modify(file)
+                    modified = true
+                }
+                digested.md5Digest()
+            })
+            assertChangeDetected(watcher)
+            assertTrue(modified)
+            modified = false
+        }
+    }
+
+    private fun createClasspath(): File {
+        val classpath = File(tmpdir, "classpath").apply { mkdirs() }
+        File(classpath, "a.class").writeText("a")
+        File(classpath, "b.class").writeText("b")
+        File(classpath, "c.jar").writeText("c")
+        return classpath
+    }
+
+    private fun modify(file: File) {
+        val lastModified = file.lastModified()
+        file.appendText("changed")
+        // making sure that the change is visible regardless of the file system timestamp granularity
+        file.setLastModified(lastModified + 10_000)
+    }
+
+    private fun assertChangeDetected(watcher: LazyClasspathWatcher) {
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30)
+        while (!watcher.isChanged) {
+            assertTrue("Change is not detected", System.nanoTime() < deadline)
+            Thread.sleep(100)
+        }
+    }
+
+    companion object {
+        private const val EVENT_WAIT_MS = 500L
+    }
+}
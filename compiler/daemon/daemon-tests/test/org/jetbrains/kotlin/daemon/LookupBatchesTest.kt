@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.daemon.common.LookupBatchWriter
+import org.jetbrains.kotlin.daemon.common.readLookupBatch
+import org.jetbrains.kotlin.incremental.components.LookupInfo
+import org.jetbrains.kotlin.incremental.components.Position
+import org.jetbrains.kotlin.incremental.components.ScopeKind
+
+class LookupBatchesTest : TestCase() {
+    fun testEmptyBatch() {
+        for (withPositions in listOf(false, true)) {
+            val writer = LookupBatchWriter(withPositions)
+            assertEquals(0, writer.lookupCount)
+            assertEquals(emptyList<LookupInfo>(), readLookupBatch(writer.toByteArray()))
+        }
+    }
+
+    fun testEmptyBatchAfterReset() {
+        val writer = LookupBatchWriter(withPositions = true)
+        writer.add(lookup("/a.kt", 1, 2, "a", ScopeKind.PACKAGE, "b"))
+        writer.reset()
+        assertEquals(0, writer.lookupCount)
+        assertEquals(emptyList<LookupInfo>(), readLookupBatch(writer.toByteArray()))
+    }
+
+    fun testWithPositions() {
+        val lookups = listOf(
+            lookup("/src/a.kt", 0, 0, "foo", ScopeKind.PACKAGE, "bar"),
+            lookup("/src/a.kt", 10, 200, "foo.Bar", ScopeKind.CLASSIFIER, "bar"),
+            lookup("/src/b.kt", -1, -1, "", ScopeKind.PACKAGE, "baz"),
+            // repeated lookups are kept when positions are tracked
+            lookup("/src/a.kt", 0, 0, "foo", ScopeKind.PACKAGE, "bar"),
+            lookup("/src/a.kt", Int.MAX_VALUE - 1, 100000, "foo", ScopeKind.PACKAGE, "bar")
+        )
+        assertEquals(lookups, roundTrip(lookups, withPositions = true))
+    }
+
+    fun testWithoutPositions() {
+        val lookups = listOf(
+            lookup("/src/a.kt", 1, 2, "foo", ScopeKind.PACKAGE, "bar"),
+            lookup("/src/a.kt", 3, 4, "foo", ScopeKind.CLASSIFIER, "bar"),
+            lookup("/src/b.kt", 5, 6, "foo", ScopeKind.PACKAGE, "bar"),
+            lookup("/src/a.kt", 7, 8, "foo", ScopeKind.PACKAGE, "baz")
+        )
+        val expected = lookups.map { it.withoutPosition() }.distinct()
+        assertEquals(expected, roundTrip(lookups, withPositions = false))
+    }
+
+    fun testUnicodeNames() {
+        val lookups = listOf(
+            lookup("/проект/файл.kt", 1, 1, "пакет.Класс", ScopeKind.CLASSIFIER, "функция"),
+            lookup("/项目/文件.kt", 2, 2, "包", ScopeKind.PACKAGE, "名字"),
+            lookup("/emoji/😀.kt", 3, 3, "a.👍", ScopeKind.PACKAGE, "`with spaces and \u0000`"),
+            lookup("/ä/ö.kt", 4, 4, "ü", ScopeKind.CLASSIFIER, "ß")
+        )
+        assertEquals(lookups, roundTrip(lookups, withPositions = true))
+        assertEquals(lookups.map { it.withoutPosition() }, roundTrip(lookups, withPositions = false))
+    }
+
+    fun testLargeBatch() {
+        // string indices and positions don't fit in one or two bytes of a var int
+        val count = 200000
+        val lookups = (0 until count).map {
+            lookup("/src/file${it % 100}.kt", it, it % 80, "pkg${it % 7}.Class$it", ScopeKind.values()[it % 2], "name$it")
+        }
+        assertEquals(lookups, roundTrip(lookups, withPositions = true))
+
+        // repeated lookups are skipped
+        assertEquals(lookups.map { it.withoutPosition() }, roundTrip(lookups + lookups.take(1000), withPositions = false))
+    }
+
+    private fun roundTrip(lookups: List<LookupInfo>, withPositions: Boolean): List<LookupInfo> {
+        val writer = LookupBatchWriter(withPositions)
+        lookups.forEach { writer.add(it) }
+        val bytes = writer.toByteArray()
+        assertEquals(bytes.size, writer.size)
+        return readLookupBatch(bytes).also { assertEquals(writer.lookupCount, it.size) }
+    }
+
+    private fun LookupBatchWriter.add(lookup: LookupInfo) {
+        add(lookup.filePath, lookup.position, lookup.scopeFqName, lookup.scopeKind, lookup.name)
+    }
+
+    private fun LookupInfo.withoutPosition() = copy(position = Position.NO_POSITION, scopeKind = ScopeKind.CLASSIFIER)
+
+    private fun lookup(filePath: String, line: Int, column: Int, scopeFqName: String, scopeKind: ScopeKind, name: String) =
+        LookupInfo(filePath, if (line < 0) Position.NO_POSITION else Position(line, column), scopeFqName, scopeKind, name)
+}
@@ -18,6 +18,7 @@ package org.jetbrains.kotlin.daemon
 
 import java.io.File
 import java.io.IOException
+import java.nio.file.*
 import java.security.DigestInputStream
 import java.security.MessageDigest
 import java.util.*
@@ -37,17 +38,27 @@ val DEFAULT_CLASSPATH_DIGEST_WATCH_PERIOD_MS = 300000L // 5 min
 
 /**
  * Class for lazy (on demand) check if any relevant file in the classpath is changed
- * poor-man watcher in the absence of NIO
- * TODO: replace with NIO watching when switching to java 7+
+ *
+ * Directories containing the classpath files are watched with a [WatchService], and only files which received events since
+ * the last check are compared by digest. Events are not processed until the next check, so repeated changes of a file between
+ * two checks are coalesced into one. If watching is unavailable (or [useWatchService] is false), all files are polled instead:
+ * checked by the modification time on every check and by digest every [digestCheckPeriod].
+ *
+ * Watches are registered before the initial digests are computed, and a file whose modification time changes while
+ * the watcher starts is considered changed, so changes made during the initial digest are not lost.
  */
 class LazyClasspathWatcher(classpath: Iterable<String>,
                            val checkPeriod: Long = DEFAULT_CLASSPATH_WATCH_PERIOD_MS,
-                           val digestCheckPeriod: Long = DEFAULT_CLASSPATH_DIGEST_WATCH_PERIOD_MS) {
+                           val digestCheckPeriod: Long = DEFAULT_CLASSPATH_DIGEST_WATCH_PERIOD_MS,
+                           useWatchService: Boolean = true,
+                           private val digest: (File) -> ByteArray = File::md5Digest) {
 
     private data class FileId(val file: File, val lastModified: Long, val digest: ByteArray)
 
     private val fileIdsLock = Semaphore(1) // a barrier for ensuring ids are initialized, using semaphore to allow modifications from another thread
     private var fileIds: List<FileId>? = null
+    private var fileIdsByPath: Map<Path, FileId> = emptyMap()
+    private var watchService: WatchService? = null
     private val lastChangedStatus = AtomicBoolean(false)
     private val lastUpdate = AtomicLong(0)
     private val lastDigestUpdate = AtomicLong(0)
@@ -58,12 +69,30 @@ class LazyClasspathWatcher(classpath: Iterable<String>,
         fileIdsLock.acquire()
         thread(isDaemon = true, start = true) {
             try {
-                fileIds = classpath
+                val files = classpath
                         .map(::File)
                         .asSequence()
                         .flatMap { it.walk().filter(::isClasspathFile) }
-                        .map { FileId(it, it.lastModified(), it.md5Digest()) }
-                        .toList()
+                        .associateWith { it.lastModified() }
+                // registering watches before the digests are computed, so changes made after that are reported by events,
+                // and changes made before the file is digested are detected by its modification time
+                if (useWatchService) {
+                    watchService = startWatching(files.keys)
+                }
+                var changedOnStart = false
+                val ids = files.map { (file, lastModified) ->
+                    val id = FileId(file, lastModified, digest(file))
+                    if (file.lastModified() != lastModified) {
+                        log.info("cp changed: $file is modified while the watcher starts")
+                        changedOnStart = true
+                    }
+                    id
+                }
+                fileIds = ids
+                if (watchService != null) {
+                    fileIdsByPath = ids.associateBy { it.file.normalizedPath() }
+                }
+                if (changedOnStart) lastChangedStatus.set(true)
                 val nowMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime())
                 lastUpdate.set(nowMs)
                 lastDigestUpdate.set(nowMs)
@@ -83,37 +112,112 @@ class LazyClasspathWatcher(classpath: Iterable<String>,
         val nowMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime())
         if (nowMs - lastUpdate.get() < checkPeriod) return false
 
-        val checkDigest = nowMs - lastDigestUpdate.get() > digestCheckPeriod
         // making sure that fieldIds are initialized
         fileIdsLock.acquire()
         fileIdsLock.release()
+        val watchService = watchService
         val changed =
-            fileIds?.find {
-                try {
-                    if (!it.file.exists()) {
-                        log.info("cp changed: ${it.file} doesn't exist any more")
-                        true
-                    }
-                    // if last modified changed or if enforced by param - checking the digest
-                    else if ((it.file.lastModified() != it.lastModified || checkDigest) && !Arrays.equals(it.digest, it.file.md5Digest())) {
-                        log.info("cp changed: ${it.file} digests differ")
-                        true
-                    }
-                    else false
-                }
-                catch (e: IOException) {
-                    log.log(Level.INFO, "cp changed: ${it.file} access throws the exception", e)
-                    true // io error considered as change
-                }
-            } != null
+            if (watchService != null) {
+                checkWatchedFiles(watchService)
+            }
+            else {
+                val checkDigest = nowMs - lastDigestUpdate.get() > digestCheckPeriod
+                val changed = pollFiles(checkDigest)
+                if (checkDigest) lastDigestUpdate.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime()))
+                changed
+            }
         lastUpdate.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime()))
-        if (checkDigest) lastDigestUpdate.set(lastUpdate.get())
+        // events are consumed by the check, so the change has to be remembered
+        if (changed) lastChangedStatus.set(true)
 
         return changed
     }
+
+    private fun startWatching(files: Collection<File>): WatchService? {
+        val watchService = try {
+            FileSystems.getDefault().newWatchService()
+        }
+        catch (e: Exception) {
+            log.log(Level.INFO, "Cannot watch classpath, falling back to polling", e)
+            return null
+        }
+        try {
+            // event paths are resolved against the registered directories, so they have to be normalized the same way as the ids
+            for (dir in files.mapTo(LinkedHashSet()) { it.normalizedPath().parent }) {
+                dir.register(
+                        watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE
+                )
+            }
+        }
+        catch (e: Exception) {
+            // e.g. the limit of watches is exceeded
+            log.log(Level.INFO, "Cannot watch classpath, falling back to polling", e)
+            watchService.close()
+            return null
+        }
+        return watchService
+    }
+
+    private fun checkWatchedFiles(watchService: WatchService): Boolean {
+        val changedPaths = HashSet<Path>()
+        var eventsLost = false
+        while (true) {
+            val key = try {
+                watchService.poll()
+            }
+            catch (e: ClosedWatchServiceException) {
+                null
+            } ?: break
+            val dir = key.watchable() as Path
+            for (event in key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    eventsLost = true
+                }
+                else {
+                    changedPaths.add(dir.resolve(event.context() as Path))
+                }
+            }
+            if (!key.reset()) {
+                // the directory is deleted or inaccessible, the files are checked by polling below
+                eventsLost = true
+            }
+        }
+        if (eventsLost) {
+            log.info("cp watching events are lost, polling all files")
+            return pollFiles(checkDigest = false)
+        }
+        return changedPaths.any { path ->
+            val id = fileIdsByPath[path]
+            id != null && isFileChanged(id, checkDigest = true)
+        }
+    }
+
+    private fun pollFiles(checkDigest: Boolean): Boolean =
+        fileIds?.find { isFileChanged(it, checkDigest) } != null
+
+    private fun isFileChanged(id: FileId, checkDigest: Boolean): Boolean =
+        try {
+            if (!id.file.exists()) {
+                log.info("cp changed: ${id.file} doesn't exist any more")
+                true
+            }
+            // if last modified changed or if enforced by param - checking the digest
+            else if ((id.file.lastModified() != id.lastModified || checkDigest) && !Arrays.equals(id.digest, digest(id.file))) {
+                log.info("cp changed: ${id.file} digests differ")
+                true
+            }
+            else false
+        }
+        catch (e: IOException) {
+            log.log(Level.INFO, "cp changed: ${id.file} access throws the exception", e)
+            true // io error considered as change
+        }
 }
 
 
+private fun File.normalizedPath(): Path = toPath().toAbsolutePath().normalize()
+
 fun isClasspathFile(file: File): Boolean = file.isFile && listOf("class", "jar").contains(file.extension.toLowerCase())
 
 fun File.md5Digest(): ByteArray {
@@ -16,16 +16,12 @@
 
 package org.jetbrains.kotlin.daemon
 
-import com.intellij.util.containers.StringInterner
-import gnu.trove.THashMap
-import gnu.trove.THashSet
-import org.jetbrains.kotlin.daemon.common.DummyProfiler
-import org.jetbrains.kotlin.daemon.common.Profiler
-import org.jetbrains.kotlin.daemon.common.withMeasure
-import org.jetbrains.kotlin.incremental.components.LookupInfo
+import org.jetbrains.kotlin.daemon.common.*
 import org.jetbrains.kotlin.incremental.components.LookupTracker
 import org.jetbrains.kotlin.incremental.components.Position
 import org.jetbrains.kotlin.incremental.components.ScopeKind
+import java.rmi.RemoteException
+import java.rmi.UnmarshalException
 
 class RemoteLookupTrackerClient(
     @Suppress("DEPRECATION") val facade: org.jetbrains.kotlin.daemon.common.CompilerCallbackServicesFacade,
@@ -34,25 +30,21 @@ class RemoteLookupTrackerClient(
 ) : LookupTracker {
     private val isDoNothing = profiler.withMeasure(this) { facade.lookupTracker_isDoNothing() }
 
-    // Map: FileName -> (ScopeFqName -> Set<Name[String] | LookupInfo>)
-    private val lookups = THashMap<String, MutableMap<String, MutableSet<Any>>>()
-    private val interner = StringInterner()
-
     override val requiresPosition: Boolean = profiler.withMeasure(this) { facade.lookupTracker_requiresPosition() }
 
-    override fun record(filePath: String, position: Position, scopeFqName: String, scopeKind: ScopeKind, name: String) {
-        if (isDoNothing) return
+    // Lookups are sent to the client in bounded batches as they are recorded, so they are never all kept in memory
+    private val batch = LookupBatchWriter(withPositions = requiresPosition)
 
-        val internedSymbolFqName = interner.intern(scopeFqName)
-        val internedName = interner.intern(name)
+    // Clients built before lookupTracker_recordBatch was added only accept collections of LookupInfo
+    private var isBatchSupported = true
 
-        val objectToPut: Any =
-            if (requiresPosition)
-                LookupInfo(filePath, position, scopeFqName, scopeKind, name)
-            else
-                internedName
+    override fun record(filePath: String, position: Position, scopeFqName: String, scopeKind: ScopeKind, name: String) {
+        if (isDoNothing) return
 
-        lookups.getOrPut(filePath, ::THashMap).getOrPut(internedSymbolFqName, ::THashSet).add(objectToPut)
+        batch.add(filePath, position, scopeFqName, scopeKind, name)
+        if (batch.size >= MAX_BATCH_SIZE_BYTES) {
+            flush()
+        }
     }
 
     init {
@@ -60,26 +52,27 @@ class RemoteLookupTrackerClient(
     }
 
     private fun flush() {
-        if (isDoNothing || lookups.isEmpty) return
+        if (isDoNothing || batch.lookupCount == 0) return
+
+        val bytes = batch.toByteArray()
+        batch.reset()
 
         profiler.withMeasure(this) {
-            facade.lookupTracker_record(
-                lookups.flatMap { (filePath, lookupsByFile) ->
-                    lookupsByFile.flatMap { (scopeFqName, lookupsByScopeFqName) ->
-                        lookupsByScopeFqName.map { lookupInfoOrString ->
-                            if (requiresPosition)
-                                lookupInfoOrString as LookupInfo
-                            else
-                                LookupInfo(
-                                    filePath, Position.NO_POSITION, scopeFqName, ScopeKind.CLASSIFIER,
-                                    lookupInfoOrString as String
-                                )
-                        }
-                    }
+            if (isBatchSupported) {
+                try {
+                    facade.lookupTracker_recordBatch(bytes)
+                    return@withMeasure
+                } catch (e: RemoteException) {
+                    // an unknown method is reported by the server as UnmarshalException, wrapped into ServerException
+                    if (e !is UnmarshalException && e.cause !is UnmarshalException) throw e
+                    isBatchSupported = false
                 }
-            )
+            }
+            facade.lookupTracker_record(readLookupBatch(bytes))
         }
+    }
 
-        lookups.clear()
+    private companion object {
+        const val MAX_BATCH_SIZE_BYTES = 1 shl 20
     }
 }
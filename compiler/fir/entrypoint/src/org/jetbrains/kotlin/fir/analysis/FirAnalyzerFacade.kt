@@ -17,15 +17,32 @@ import org.jetbrains.kotlin.fir.backend.jvm.FirJvmKotlinMangler
 import org.jetbrains.kotlin.fir.backend.jvm.FirJvmVisibilityConverter
 import org.jetbrains.kotlin.fir.builder.RawFirBuilder
 import org.jetbrains.kotlin.fir.declarations.FirFile
+import org.jetbrains.kotlin.fir.resolve.ConcurrentScopeSession
+import org.jetbrains.kotlin.fir.resolve.ScopeEvictionPolicy
 import org.jetbrains.kotlin.fir.resolve.ScopeSession
 import org.jetbrains.kotlin.fir.resolve.firProvider
 import org.jetbrains.kotlin.fir.resolve.providers.impl.FirProviderImpl
 import org.jetbrains.kotlin.fir.resolve.transformers.FirTotalResolveProcessor
+import org.jetbrains.kotlin.fir.scopes.isFileScopeSessionKey
 import org.jetbrains.kotlin.ir.backend.jvm.serialization.JvmManglerDesc
 import org.jetbrains.kotlin.ir.declarations.impl.IrFactoryImpl
 import org.jetbrains.kotlin.psi.KtFile
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
 
-class FirAnalyzerFacade(val session: FirSession, val languageVersionSettings: LanguageVersionSettings, val ktFiles: List<KtFile>) {
+/**
+ * @param rawFirBuildingThreads number of threads used to build raw FIR, `1` means it is done sequentially on the calling thread.
+ *   Built files are in the order of [ktFiles] regardless of the number of threads. Only raw FIR building is parallel:
+ *   resolution and checkers always process files sequentially, since the symbol providers of the [session] and their caches
+ *   aren't thread-safe
+ */
+class FirAnalyzerFacade(
+    val session: FirSession,
+    val languageVersionSettings: LanguageVersionSettings,
+    val ktFiles: List<KtFile>,
+    val rawFirBuildingThreads: Int = 1
+) {
     private var firFiles: List<FirFile>? = null
     private var scopeSession: ScopeSession? = null
     private var collectedDiagnostics: List<FirDiagnostic<*>>? = null
@@ -33,18 +50,21 @@ class FirAnalyzerFacade(val session: FirSession, val languageVersionSettings: La
     private fun buildRawFir() {
         if (firFiles != null) return
         val firProvider = (session.firProvider as FirProviderImpl)
-        val builder = RawFirBuilder(session, firProvider.kotlinScopeProvider, stubMode = false)
-        firFiles = ktFiles.map {
-            val firFile = builder.buildFirFile(it)
+        // Builders keep the context of the file being built, so every thread gets its own one
+        val files = mapInParallel(ktFiles, { RawFirBuilder(session, firProvider.kotlinScopeProvider, stubMode = false) }) {
+            buildFirFile(it)
+        }
+        // The provider isn't thread-safe, so the files are recorded after all of them are built
+        for (firFile in files) {
             firProvider.recordFile(firFile)
-            firFile
         }
+        firFiles = files
     }
 
     fun runResolution(): List<FirFile> {
         if (firFiles == null) buildRawFir()
         if (scopeSession != null) return firFiles!!
-        val resolveProcessor = FirTotalResolveProcessor(session)
+        val resolveProcessor = FirTotalResolveProcessor(session, createScopeSession())
         resolveProcessor.process(firFiles!!)
         scopeSession = resolveProcessor.scopeSession
         return firFiles!!
@@ -63,6 +83,39 @@ class FirAnalyzerFacade(val session: FirSession, val languageVersionSettings: La
         return collectedDiagnostics!!
     }
 
+    /**
+     * Applies [process] to every file on [rawFirBuildingThreads] threads, each thread using its own worker created by [createWorker].
+     * The results are in the order of [files].
+     */
+    private fun <F, W, R> mapInParallel(files: List<F>, createWorker: () -> W, process: W.(F) -> R): List<R> {
+        if (rawFirBuildingThreads <= 1 || files.size <= 1) {
+            val worker = createWorker()
+            return files.map { worker.process(it) }
+        }
+
+        val workers = ThreadLocal.withInitial { createWorker() }
+        val pool = ForkJoinPool(rawFirBuildingThreads)
+        try {
+            val tasks = files.map { file ->
+                Callable { workers.get().process(file) }
+            }
+            return pool.invokeAll(tasks).map { future ->
+                try {
+                    future.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    private fun createScopeSession(): ScopeSession {
+        val maxFileScopes = MAX_CACHED_FILE_SCOPES ?: return ScopeSession()
+        return ConcurrentScopeSession(evictionPolicy = ScopeEvictionPolicy(maxFileScopes, ::isFileScopeSessionKey))
+    }
+
     fun convertToIr(generateFacades: Boolean = true): Fir2IrResult {
         if (scopeSession == null) runResolution()
         val signaturer = IdSignatureDescriptor(JvmManglerDesc())
@@ -75,3 +128,9 @@ class FirAnalyzerFacade(val session: FirSession, val languageVersionSettings: La
         )
     }
 }
+
+/**
+ * If set, limits the number of file importing and package member scopes kept by the scope session of a module,
+ * see [isFileScopeSessionKey]
+ */
+private val MAX_CACHED_FILE_SCOPES = System.getProperty("kotlin.fir.max.cached.file.scopes")?.toIntOrNull()
@@ -83,7 +83,7 @@ class Fir2IrLazyProperty(
     }
 
     @OptIn(ObsoleteDescriptorBasedAPI::class)
-    override var backingField: IrField? by lazyVar {
+    override var backingField: IrField? by lazyVar(lock) {
         // TODO: this checks are very preliminary, FIR resolve should determine backing field presence itself
         val parent = parent
         when {
@@ -122,7 +122,7 @@ class Fir2IrLazyProperty(
         }
     }
 
-    override var getter: IrSimpleFunction? by lazyVar {
+    override var getter: IrSimpleFunction? by lazyVar(lock) {
         declarationStorage.createIrPropertyAccessor(
             fir.getter, fir, this, type, parent, parent as? IrClass, false,
             when {
@@ -135,7 +135,7 @@ class Fir2IrLazyProperty(
         )
     }
 
-    override var setter: IrSimpleFunction? by lazyVar {
+    override var setter: IrSimpleFunction? by lazyVar(lock) {
         if (!fir.isVar) return@lazyVar null
         declarationStorage.createIrPropertyAccessor(
             fir.setter, fir, this, type, parent, parent as? IrClass, true,
@@ -84,11 +84,11 @@ class Fir2IrLazySimpleFunction(
 
     override var attributeOwnerId: IrAttributeContainer = this
 
-    override var returnType: IrType by lazyVar {
+    override var returnType: IrType by lazyVar(lock) {
         fir.returnTypeRef.toIrType(typeConverter)
     }
 
-    override var dispatchReceiverParameter: IrValueParameter? by lazyVar {
+    override var dispatchReceiverParameter: IrValueParameter? by lazyVar(lock) {
         val containingClass = parent as? IrClass
         if (!fir.isStatic && containingClass != null) {
             declarationStorage.enterScope(this)
@@ -102,7 +102,7 @@ class Fir2IrLazySimpleFunction(
         } else null
     }
 
-    override var extensionReceiverParameter: IrValueParameter? by lazyVar {
+    override var extensionReceiverParameter: IrValueParameter? by lazyVar(lock) {
         fir.receiverTypeRef?.let {
             declarationStorage.enterScope(this)
             declareThisReceiverParameter(
@@ -115,7 +115,7 @@ class Fir2IrLazySimpleFunction(
         }
     }
 
-    override var valueParameters: List<IrValueParameter> by lazyVar {
+    override var valueParameters: List<IrValueParameter> by lazyVar(lock) {
         declarationStorage.enterScope(this)
         fir.valueParameters.mapIndexed { index, valueParameter ->
             declarationStorage.createIrParameter(
@@ -128,7 +128,7 @@ class Fir2IrLazySimpleFunction(
         }
     }
 
-    override var overriddenSymbols: List<IrSimpleFunctionSymbol> by lazyVar {
+    override var overriddenSymbols: List<IrSimpleFunctionSymbol> by lazyVar(lock) {
         fir.generateOverriddenFunctionSymbols(firParent, session, scopeSession, declarationStorage)
     }
 
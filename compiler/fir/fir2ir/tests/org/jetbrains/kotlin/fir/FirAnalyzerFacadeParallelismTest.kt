@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.fir
+
+import com.intellij.psi.search.GlobalSearchScope
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.cli.jvm.compiler.TopDownAnalyzerFacadeForJVM
+import org.jetbrains.kotlin.config.languageVersionSettings
+import org.jetbrains.kotlin.fir.analysis.FirAnalyzerFacade
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.KotlinTestUtils
+
+/**
+ * Checks that FIR and diagnostics don't depend on the number of threads building raw FIR in [FirAnalyzerFacade]
+ */
+class FirAnalyzerFacadeParallelismTest : AbstractFirResolveWithSessionTestCase() {
+    override fun createEnvironment(): KotlinCoreEnvironment = createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY)
+
+    fun testResultsDoNotDependOnRawFirBuildingThreads() {
+        val files = (0 until FILE_COUNT).map { KotlinTestUtils.createFile("file$it.kt", fileText(it), project) }
+
+        val sequential = analyze(files, rawFirBuildingThreads = 1)
+        repeat(3) {
+            val parallel = analyze(files, rawFirBuildingThreads = 4)
+            assertEquals(sequential.firDump, parallel.firDump)
+            assertEquals(sequential.diagnostics, parallel.diagnostics)
+        }
+        assertTrue("Test files should have errors", sequential.diagnostics.isNotEmpty())
+    }
+
+    private class AnalysisResult(val firDump: List<String>, val diagnostics: List<String>)
+
+    private fun analyze(files: List<KtFile>, rawFirBuildingThreads: Int): AnalysisResult {
+        val scope = GlobalSearchScope.filesScope(project, files.map { it.virtualFile })
+            .uniteWith(TopDownAnalyzerFacadeForJVM.AllJavaSourcesInProjectScope(project))
+        val session = createSession(environment, scope)
+        val facade = FirAnalyzerFacade(session, environment.configuration.languageVersionSettings, files, rawFirBuildingThreads)
+
+        val firFiles = facade.runResolution()
+        val diagnostics = facade.runCheckers().map {
+            "${it.factory.name} at ${it.element.startOffset}..${it.element.endOffset}"
+        }
+        return AnalysisResult(firFiles.map { it.render() }, diagnostics)
+    }
+
+    private fun fileText(index: Int): String {
+        val previous = (index + FILE_COUNT - 1) % FILE_COUNT
+        return """
+            package test$index
+
+            import test$previous.Base$previous
+
+            interface Api$index<T> {
+                fun get(): T
+                val size: Int get() = 0
+            }
+
+            open class Base$index(val value: Int) : Api$index<String> {
+                override fun get(): String = "${'$'}value"
+                open fun <R> map(f: (Int) -> R): List<R> = listOf(f(value))
+            }
+
+            class Derived$index : Base$previous($index) {
+                fun check(api: Api$index<String>): String {
+                    val mapped = map { it * 2 }.first()
+                    return api.get() + mapped + unresolved$index
+                }
+            }
+
+            fun top$index(x: Base$index): Int {
+                val s: String = x.value
+                return x.map { it.toString() }.size
+            }
+        """.trimIndent()
+    }
+
+    companion object {
+        private const val FILE_COUNT = 16
+    }
+}
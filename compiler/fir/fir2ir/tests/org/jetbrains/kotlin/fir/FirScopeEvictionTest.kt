@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.fir
+
+import com.intellij.psi.search.GlobalSearchScope
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.cli.jvm.compiler.TopDownAnalyzerFacadeForJVM
+import org.jetbrains.kotlin.fir.builder.RawFirBuilder
+import org.jetbrains.kotlin.fir.declarations.FirCallableDeclaration
+import org.jetbrains.kotlin.fir.declarations.FirFile
+import org.jetbrains.kotlin.fir.references.FirResolvedNamedReference
+import org.jetbrains.kotlin.fir.resolve.ConcurrentScopeSession
+import org.jetbrains.kotlin.fir.resolve.ScopeEvictionPolicy
+import org.jetbrains.kotlin.fir.resolve.ScopeSession
+import org.jetbrains.kotlin.fir.resolve.firProvider
+import org.jetbrains.kotlin.fir.resolve.providers.impl.FirProviderImpl
+import org.jetbrains.kotlin.fir.resolve.transformers.FirTotalResolveProcessor
+import org.jetbrains.kotlin.fir.scopes.createImportingScopes
+import org.jetbrains.kotlin.fir.scopes.isFileScopeSessionKey
+import org.jetbrains.kotlin.fir.visitors.FirVisitorVoid
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.KotlinTestUtils
+
+/**
+ * Checks that scopes accepted by [isFileScopeSessionKey] can be evicted from a [ConcurrentScopeSession]
+ * without changing resolution results or the symbols referenced from the resolved tree
+ */
+class FirScopeEvictionTest : AbstractFirResolveWithSessionTestCase() {
+    override fun createEnvironment(): KotlinCoreEnvironment = createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY)
+
+    fun testEvictedFileScopesAreRebuiltWithSameSymbols() {
+        val files = (0 until FILE_COUNT).map { KotlinTestUtils.createFile("file$it.kt", fileText(it), project) }
+
+        val (expectedFiles, _) = resolve(files, ScopeSession())
+        // Every evictable scope is dropped right after it's built, so each request builds it again
+        val scopeSession = ConcurrentScopeSession(evictionPolicy = ScopeEvictionPolicy(0, ::isFileScopeSessionKey))
+        val (firFiles, session) = resolve(files, scopeSession)
+
+        assertEquals(expectedFiles.map { it.render() }, firFiles.map { it.render() })
+
+        val topLevelSymbols = firFiles.flatMap { it.declarations }.filterIsInstance<FirCallableDeclaration<*>>().map { it.symbol }.toSet()
+        for (firFile in firFiles) {
+            assertNotSame(createImportingScopes(firFile, session, scopeSession), createImportingScopes(firFile, session, scopeSession))
+
+            val references = mutableListOf<FirResolvedNamedReference>()
+            firFile.accept(object : FirVisitorVoid() {
+                override fun visitElement(element: FirElement) {
+                    element.acceptChildren(this)
+                }
+
+                override fun visitResolvedNamedReference(resolvedNamedReference: FirResolvedNamedReference) {
+                    if (resolvedNamedReference.resolvedSymbol in topLevelSymbols) {
+                        references += resolvedNamedReference
+                    }
+                }
+            })
+            assertTrue("${firFile.name} should refer to top-level declarations", references.isNotEmpty())
+
+            for (reference in references) {
+                val found = mutableListOf<Any>()
+                for (scope in createImportingScopes(firFile, session, scopeSession)) {
+                    scope.processFunctionsByName(reference.name) { found += it }
+                    scope.processPropertiesByName(reference.name) { found += it }
+                }
+                assertTrue(
+                    "${reference.name} from ${firFile.name} should be found again by rebuilt scopes",
+                    found.any { it === reference.resolvedSymbol }
+                )
+            }
+        }
+    }
+
+    private fun resolve(files: List<KtFile>, scopeSession: ScopeSession): Pair<List<FirFile>, FirSession> {
+        val scope = GlobalSearchScope.filesScope(project, files.map { it.virtualFile })
+            .uniteWith(TopDownAnalyzerFacadeForJVM.AllJavaSourcesInProjectScope(project))
+        val session = createSession(environment, scope)
+        val firProvider = session.firProvider as FirProviderImpl
+        val builder = RawFirBuilder(session, firProvider.kotlinScopeProvider, stubMode = false)
+
+        val firFiles = files.map { builder.buildFirFile(it).also(firProvider::recordFile) }
+        FirTotalResolveProcessor(session, scopeSession).process(firFiles)
+        return firFiles to session
+    }
+
+    private fun fileText(index: Int): String {
+        val previous = (index + FILE_COUNT - 1) % FILE_COUNT
+        return """
+            package test${index % 2}
+
+            import test${previous % 2}.function$previous
+            import test${previous % 2}.property$previous
+
+            val property$index: Int = $index
+
+            fun function$index(x: Int): Int = x + property$index
+
+            fun user$index(): Int = function$previous(property$previous) + function$index(property$index)
+        """.trimIndent()
+    }
+
+    companion object {
+        private const val FILE_COUNT = 8
+    }
+}
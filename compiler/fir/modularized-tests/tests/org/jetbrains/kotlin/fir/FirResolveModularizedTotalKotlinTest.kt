@@ -21,11 +21,14 @@ import org.jetbrains.kotlin.fir.builder.RawFirBuilder
 import org.jetbrains.kotlin.fir.declarations.FirFile
 import org.jetbrains.kotlin.fir.dump.MultiModuleHtmlFirDump
 import org.jetbrains.kotlin.fir.lightTree.LightTree2Fir
+import org.jetbrains.kotlin.fir.resolve.ConcurrentScopeSession
+import org.jetbrains.kotlin.fir.resolve.ScopeEvictionPolicy
 import org.jetbrains.kotlin.fir.resolve.ScopeSession
 import org.jetbrains.kotlin.fir.resolve.firProvider
 import org.jetbrains.kotlin.fir.resolve.providers.impl.FirProviderImpl
 import org.jetbrains.kotlin.fir.resolve.transformers.createAllCompilerResolveProcessors
 import org.jetbrains.kotlin.fir.scopes.ProcessorAction
+import org.jetbrains.kotlin.fir.scopes.isFileScopeSessionKey
 import java.io.File
 import java.io.FileOutputStream
 import java.io.PrintStream
@@ -46,6 +49,7 @@ private val APPEND_ERROR_REPORTS = System.getProperty("fir.bench.report.errors.a
 private val RUN_CHECKERS = System.getProperty("fir.bench.run.checkers", "false").toBooleanLenient()!!
 private val USE_LIGHT_TREE = System.getProperty("fir.bench.use.light.tree", "false").toBooleanLenient()!!
 private val DUMP_MEMORY = System.getProperty("fir.bench.dump.memory", "false").toBooleanLenient()!!
+private val MAX_FILE_SCOPES = System.getProperty("fir.bench.max.file.scopes")?.toIntOrNull()
 
 private val ASYNC_PROFILER_LIB = System.getProperty("fir.bench.use.async.profiler.lib")
 private val ASYNC_PROFILER_START_CMD = System.getProperty("fir.bench.use.async.profiler.cmd.start")
@@ -97,7 +101,7 @@ class FirResolveModularizedTotalKotlinTest : AbstractModularizedTest() {
             .uniteWith(TopDownAnalyzerFacadeForJVM.AllJavaSourcesInProjectScope(project))
         val librariesScope = ProjectScope.getLibrariesScope(project)
         val session = createSession(environment, scope, librariesScope, moduleData.qualifiedName)
-        val scopeSession = ScopeSession()
+        val scopeSession = createScopeSession()
         val processors = createAllCompilerResolveProcessors(session, scopeSession).let {
             if (RUN_CHECKERS) {
                 it + FirCheckersResolveProcessor(session, scopeSession)
@@ -135,6 +139,11 @@ class FirResolveModularizedTotalKotlinTest : AbstractModularizedTest() {
         dumpFirHtml(disambiguatedName, moduleData, firFiles)
     }
 
+    private fun createScopeSession(): ScopeSession {
+        if (MAX_FILE_SCOPES == null) return ScopeSession()
+        return ConcurrentScopeSession(evictionPolicy = ScopeEvictionPolicy(MAX_FILE_SCOPES, ::isFileScopeSessionKey))
+    }
+
     private fun dumpFir(disambiguatedName: String, moduleData: ModuleData, firFiles: List<FirFile>) {
         if (!DUMP_FIR) return
         val dumpRoot = File(FIR_DUMP_PATH).resolve(disambiguatedName)
@@ -10,9 +10,11 @@ import org.jetbrains.kotlin.fir.declarations.FirFile
 import org.jetbrains.kotlin.fir.declarations.FirResolvePhase
 import org.jetbrains.kotlin.fir.resolve.ScopeSession
 
-class FirTotalResolveProcessor(session: FirSession) {
-    val scopeSession: ScopeSession = ScopeSession()
-
+/**
+ * Files are always processed sequentially: resolution goes through symbol providers and scopes of the session,
+ * which aren't thread-safe.
+ */
+class FirTotalResolveProcessor(session: FirSession, val scopeSession: ScopeSession = ScopeSession()) {
     private val processors: List<FirResolveProcessor> = createAllCompilerResolveProcessors(session, scopeSession)
 
     fun process(files: List<FirFile>) {
@@ -58,8 +60,11 @@ private inline fun <T : FirResolveProcessor> createAllResolveProcessors(
 ): List<T> {
     @Suppress("NAME_SHADOWING")
     val scopeSession = scopeSession ?: ScopeSession()
-    val phases = FirResolvePhase.values().filter {
+    return phasesWithProcessors(pluginPhasesEnabled).map { it.creator(scopeSession) }
+}
+
+private fun phasesWithProcessors(pluginPhasesEnabled: Boolean): List<FirResolvePhase> {
+    return FirResolvePhase.values().filter {
         !it.noProcessor && if (!pluginPhasesEnabled) !it.pluginPhase else true
     }
-    return phases.map { it.creator(scopeSession) }
 }
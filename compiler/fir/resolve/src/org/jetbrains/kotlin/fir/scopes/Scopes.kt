@@ -66,6 +66,16 @@ private fun doCreateImportingScopes(
 
 private val PACKAGE_MEMBER = scopeSessionKey<FqName, FirPackageMemberScope>()
 
+/**
+ * Keys of file importing scopes and package member scopes, which may be dropped from a session and rebuilt on demand,
+ * see [org.jetbrains.kotlin.fir.resolve.ScopeEvictionPolicy].
+ * These scopes only look symbols up in symbol providers, so a rebuilt scope finds the same symbols
+ * (unlike member scopes, which create fake overrides referenced from the resolved tree)
+ */
+fun isFileScopeSessionKey(key: ScopeSessionKey<*, *>): Boolean {
+    return key === FileImportingScopeKey || key === PACKAGE_MEMBER
+}
+
 fun ConeClassLikeLookupTag.getNestedClassifierScope(session: FirSession, scopeSession: ScopeSession): FirScope? {
     val klass = when (this) {
         is ConeClassLookupTagWithFixedSymbol -> symbol.fir
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.fir.resolve
+
+import org.jetbrains.kotlin.fir.PrivateForInline
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Thread-safe [ScopeSession], which can also limit the number of stored scopes.
+ *
+ * Scopes are built outside of any lock (building a scope often requests other scopes from the same session),
+ * so two threads may build the same scope simultaneously; the first published one is used by both.
+ *
+ * @param evictionPolicy if not null, limits the number of stored scopes with keys accepted by the policy
+ */
+class ConcurrentScopeSession(private val evictionPolicy: ScopeEvictionPolicy? = null) : ScopeSession() {
+    private val scopes = ConcurrentHashMap<Any, ConcurrentHashMap<ScopeSessionKey<*, *>, Any>>()
+
+    // Evictable scopes in the order of publication, the oldest ones are evicted first
+    private val evictionQueue = ConcurrentLinkedQueue<Pair<Any, ScopeSessionKey<*, *>>>()
+    private val evictableScopeCount = AtomicInteger()
+
+    @Volatile
+    override var returnTypeCalculator: Any? = null
+
+    @PrivateForInline
+    override fun getScope(id: Any, key: ScopeSessionKey<*, *>): Any? = scopes[id]?.get(key)
+
+    @PrivateForInline
+    override fun publishScope(id: Any, key: ScopeSessionKey<*, *>, scope: Any): Any {
+        var existing: Any? = null
+        // Done under the lock of the id's entry, so the map can't be removed by a concurrent eviction before the scope is stored
+        scopes.compute(id) { _, scopesForId ->
+            (scopesForId ?: ConcurrentHashMap()).also { existing = it.putIfAbsent(key, scope) }
+        }
+        existing?.let { return it }
+
+        if (evictionPolicy != null && evictionPolicy.isEvictable(key)) {
+            evictionQueue.add(id to key)
+            if (evictableScopeCount.incrementAndGet() > evictionPolicy.maxEvictableScopes) {
+                evictOldest()
+            }
+        }
+        return scope
+    }
+
+    private fun evictOldest() {
+        while (evictableScopeCount.get() > evictionPolicy!!.maxEvictableScopes) {
+            val (id, key) = evictionQueue.poll() ?: return
+            evictableScopeCount.decrementAndGet()
+            // Maps of ids without scopes are removed as well, otherwise they would retain their ids
+            scopes.computeIfPresent(id) { _, scopesForId ->
+                scopesForId.remove(key)
+                scopesForId.takeIf { it.isNotEmpty() }
+            }
+        }
+    }
+}
+
+/**
+ * Scopes with keys accepted by [isEvictable] are dropped from the session in the order of their creation
+ * when there are more than [maxEvictableScopes] of them, and are rebuilt on the next request.
+ *
+ * Note that a rebuilt scope may create new fake override symbols, so only scopes which aren't referenced
+ * from the resolved tree by identity should be made evictable.
+ */
+class ScopeEvictionPolicy(
+    val maxEvictableScopes: Int,
+    private val isEvictableKey: (ScopeSessionKey<*, *>) -> Boolean
+) {
+    fun isEvictable(key: ScopeSessionKey<*, *>): Boolean = isEvictableKey(key)
+}
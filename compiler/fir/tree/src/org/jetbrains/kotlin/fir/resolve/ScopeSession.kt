@@ -7,23 +7,33 @@ package org.jetbrains.kotlin.fir.resolve
 
 import org.jetbrains.kotlin.fir.PrivateForInline
 
-class ScopeSession {
+open class ScopeSession {
     private val scopes = hashMapOf<Any, HashMap<ScopeSessionKey<*, *>, Any>>()
 
-    var returnTypeCalculator: Any? = null
+    open var returnTypeCalculator: Any? = null
 
     @PrivateForInline
-    fun scopes() = scopes
+    open fun getScope(id: Any, key: ScopeSessionKey<*, *>): Any? {
+        return scopes[id]?.get(key)
+    }
 
-    @OptIn(PrivateForInline::class)
-    inline fun <reified ID : Any, reified FS : Any> getOrBuild(id: ID, key: ScopeSessionKey<ID, FS>, build: () -> FS): FS {
-        return scopes().getOrPut(id) {
+    /**
+     * Stores [scope] unless some scope was already stored for [id] and [key] (e.g. by a recursive [getOrBuild] call),
+     * returns the stored scope
+     */
+    @PrivateForInline
+    open fun publishScope(id: Any, key: ScopeSessionKey<*, *>, scope: Any): Any {
+        return scopes.getOrPut(id) {
             hashMapOf()
         }.getOrPut(key) {
-            build()
-        } as FS
+            scope
+        }
+    }
+
+    @OptIn(PrivateForInline::class)
+    inline fun <reified ID : Any, reified FS : Any> getOrBuild(id: ID, key: ScopeSessionKey<ID, FS>, build: () -> FS): FS {
+        return (getScope(id, key) ?: publishScope(id, key, build())) as FS
     }
 }
 
 abstract class ScopeSessionKey<ID : Any, FS : Any>
-
@@ -23,39 +23,44 @@ import com.intellij.openapi.components.ServiceManager
 import com.intellij.openapi.util.Computable
 import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.psi.PsiJavaModule
+import java.util.concurrent.atomic.LongAdder
 
 class KotlinBinaryClassCache : Disposable {
-    private class RequestCache {
-        internal var virtualFile: VirtualFile? = null
-        internal var modificationStamp: Long = 0
-        internal var result: KotlinClassFinder.Result? = null
-
-        fun cache(
-            file: VirtualFile,
-            result: KotlinClassFinder.Result?
-        ): KotlinClassFinder.Result? {
-            virtualFile = file
-            this.result = result
-            modificationStamp = file.modificationStamp
+    private class CachedResult(val modificationStamp: Long, val result: KotlinClassFinder.Result?)
 
-            return result
-        }
+    // Several class files are typically read in an interleaved manner (e.g. a class and its outer or super classes),
+    // so a few recently requested files are kept instead of only the last one
+    private class RequestCache : LinkedHashMap<VirtualFile, CachedResult>(16, 0.75f, /* accessOrder = */ true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<VirtualFile, CachedResult>): Boolean =
+            size > REQUEST_CACHE_SIZE
     }
 
-    private val cache = object : ThreadLocal<RequestCache>() {
-        override fun initialValue(): RequestCache {
-            return RequestCache()
-        }
-    }
+    // The cache is shared by all threads, so the retained results (which may hold the whole content of a class file)
+    // are bounded by its size regardless of the number of threads. Files are read outside of the lock
+    private val cache = RequestCache()
+
+    private val hits = LongAdder()
+    private val misses = LongAdder()
+
+    /**
+     * Number of requests answered from the cache since the service was created, summed over all threads
+     */
+    val hitCount: Long get() = hits.sum()
+
+    /**
+     * Number of requests which required reading the class file since the service was created, summed over all threads
+     */
+    val missCount: Long get() = misses.sum()
 
     override fun dispose() {
-        // This is only relevant for tests. We create a new instance of Application for each test, and so a new instance of this service is
-        // also created for each test. However all tests share the same event dispatch thread, which would collect all instances of this
-        // thread-local if they're not removed properly. Each instance would transitively retain VFS resulting in OutOfMemoryError
-        cache.remove()
+        synchronized(cache) {
+            cache.clear()
+        }
     }
 
     companion object {
+        private val REQUEST_CACHE_SIZE = System.getProperty("kotlin.binary.class.cache.size")?.toIntOrNull() ?: 32
+
         fun getKotlinBinaryClassOrClassFileContent(
             file: VirtualFile, fileContent: ByteArray? = null
         ): KotlinClassFinder.Result? {
@@ -64,18 +69,25 @@ class KotlinBinaryClassCache : Disposable {
             if (file.name == PsiJavaModule.MODULE_INFO_CLS_FILE) return null
 
             val service = ServiceManager.getService(KotlinBinaryClassCache::class.java)
-            val requestCache = service.cache.get()
+            val requestCache = service.cache
 
-            if (file.modificationStamp == requestCache.modificationStamp && file == requestCache.virtualFile) {
-                return requestCache.result
+            val modificationStamp = file.modificationStamp
+            val cached = synchronized(requestCache) { requestCache[file] }
+            if (cached != null && cached.modificationStamp == modificationStamp) {
+                service.hits.increment()
+                return cached.result
             }
+            service.misses.increment()
 
             val aClass = ApplicationManager.getApplication().runReadAction(Computable {
                 @Suppress("DEPRECATION")
                 VirtualFileKotlinClass.create(file, fileContent)
             })
 
-            return requestCache.cache(file, aClass)
+            synchronized(requestCache) {
+                requestCache[file] = CachedResult(modificationStamp, aClass)
+            }
+            return aClass
         }
     }
 }
@@ -28,6 +28,7 @@ import org.jetbrains.kotlin.platform.TargetPlatform
 import org.jetbrains.kotlin.storage.ExceptionTracker
 import org.jetbrains.kotlin.storage.LockBasedStorageManager
 import org.jetbrains.kotlin.storage.StorageManager
+import org.jetbrains.kotlin.storage.StripedLockStorageManager
 
 interface GlobalContext {
     val storageManager: StorageManager
@@ -85,11 +86,18 @@ class MutableModuleContextImpl(
     projectContext: ProjectContext
 ) : MutableModuleContext, ProjectContext by projectContext
 
+private val USE_STRIPED_LOCK_STORAGE_MANAGER = System.getProperty("kotlin.storage.manager.striped") == "true"
+
 fun GlobalContext(debugName: String): GlobalContextImpl {
     val tracker = ExceptionTracker()
-    return GlobalContextImpl(LockBasedStorageManager.createWithExceptionHandling(debugName, tracker, {
-        ProgressManager.checkCanceled()
-    }, { throw ProcessCanceledException(it) }), tracker)
+    val checkCancelled = Runnable { ProgressManager.checkCanceled() }
+    val interruptedExceptionHandler = { e: InterruptedException -> throw ProcessCanceledException(e) }
+    val storageManager =
+        if (USE_STRIPED_LOCK_STORAGE_MANAGER)
+            StripedLockStorageManager.createWithExceptionHandling(debugName, tracker, checkCancelled, interruptedExceptionHandler)
+        else
+            LockBasedStorageManager.createWithExceptionHandling(debugName, tracker, checkCancelled, interruptedExceptionHandler)
+    return GlobalContextImpl(storageManager, tracker)
 }
 
 fun ProjectContext(project: Project, debugName: String): ProjectContext = ProjectContextImpl(project, GlobalContext(debugName))
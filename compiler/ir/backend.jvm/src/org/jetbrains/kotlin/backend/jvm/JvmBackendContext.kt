@@ -41,6 +41,7 @@ import org.jetbrains.kotlin.psi2ir.PsiErrorBuilder
 import org.jetbrains.kotlin.psi2ir.PsiSourceManager
 import org.jetbrains.kotlin.resolve.jvm.JvmClassName
 import org.jetbrains.org.objectweb.asm.Type
+import java.util.concurrent.ConcurrentHashMap
 
 typealias MetadataSerializerFactory = (JvmBackendContext, IrClass, Type, JvmSerializationBindings, MetadataSerializer?) -> MetadataSerializer
 
@@ -83,7 +84,9 @@ class JvmBackendContext(
 
     val irIntrinsics by lazy { IrIntrinsicMethods(irBuiltIns, ir.symbols) }
 
-    private val localClassType = mutableMapOf<IrAttributeContainer, Type>()
+    // Maps below which aren't iterated are concurrent, since class files may be generated by several threads,
+    // see JVMConfigurationKeys.PARALLEL_BACKEND_THREADS
+    private val localClassType = ConcurrentHashMap<IrAttributeContainer, Type>()
 
     internal fun getLocalClassType(container: IrAttributeContainer): Type? =
         localClassType[container.attributeOwnerId]
@@ -92,18 +95,18 @@ class JvmBackendContext(
         localClassType[container.attributeOwnerId] = value
     }
 
-    internal val isEnclosedInConstructor = mutableSetOf<IrAttributeContainer>()
+    internal val isEnclosedInConstructor: MutableSet<IrAttributeContainer> = ConcurrentHashMap.newKeySet()
 
     internal val classCodegens = mutableMapOf<IrClass, ClassCodegen>()
 
-    val localDelegatedProperties = mutableMapOf<IrClass, List<IrLocalDelegatedPropertySymbol>>()
+    val localDelegatedProperties = ConcurrentHashMap<IrClass, List<IrLocalDelegatedPropertySymbol>>()
 
     internal val multifileFacadesToAdd = mutableMapOf<JvmClassName, MutableList<IrClass>>()
-    val multifileFacadeForPart = mutableMapOf<IrClass, JvmClassName>()
-    internal val multifileFacadeClassForPart = mutableMapOf<IrClass, IrClass>()
-    internal val multifileFacadeMemberToPartMember = mutableMapOf<IrSimpleFunction, IrSimpleFunction>()
+    val multifileFacadeForPart = ConcurrentHashMap<IrClass, JvmClassName>()
+    internal val multifileFacadeClassForPart = ConcurrentHashMap<IrClass, IrClass>()
+    internal val multifileFacadeMemberToPartMember = ConcurrentHashMap<IrSimpleFunction, IrSimpleFunction>()
 
-    internal val hiddenConstructors = mutableMapOf<IrConstructor, IrConstructor>()
+    internal val hiddenConstructors = ConcurrentHashMap<IrConstructor, IrConstructor>()
 
     internal val collectionStubComputer = CollectionStubComputer(this)
     internal val bridgeLoweringCache = BridgeLowering.BridgeLoweringCache(this)
@@ -114,19 +117,20 @@ class JvmBackendContext(
 
     override val internalPackageFqn = FqName("kotlin.jvm")
 
-    val suspendLambdaToOriginalFunctionMap = mutableMapOf<IrFunctionReference, IrFunction>()
-    val suspendFunctionOriginalToView = mutableMapOf<IrFunction, IrFunction>()
+    val suspendLambdaToOriginalFunctionMap = ConcurrentHashMap<IrFunctionReference, IrFunction>()
+    val suspendFunctionOriginalToView = ConcurrentHashMap<IrFunction, IrFunction>()
     val fakeContinuation: IrExpression = createFakeContinuation(this)
 
-    val staticDefaultStubs = mutableMapOf<IrSimpleFunctionSymbol, IrSimpleFunction>()
+    val staticDefaultStubs = ConcurrentHashMap<IrSimpleFunctionSymbol, IrSimpleFunction>()
 
     val inlineClassReplacements = MemoizedInlineClassReplacements(state.functionsWithInlineClassReturnTypesMangled, irFactory)
 
+    // The symbol table is also filled by lazy IR, which may be initialized concurrently by threads generating class files
     internal fun referenceClass(descriptor: ClassDescriptor): IrClassSymbol =
-        symbolTable.lazyWrapper.referenceClass(descriptor)
+        symbolTable.lock.withLock { symbolTable.lazyWrapper.referenceClass(descriptor) }
 
     internal fun referenceTypeParameter(descriptor: TypeParameterDescriptor): IrTypeParameterSymbol =
-        symbolTable.lazyWrapper.referenceTypeParameter(descriptor)
+        symbolTable.lock.withLock { symbolTable.lazyWrapper.referenceTypeParameter(descriptor) }
 
     override fun log(message: () -> String) {
         /*TODO*/
@@ -15,6 +15,7 @@ import org.jetbrains.kotlin.backend.jvm.codegen.DescriptorMetadataSerializer
 import org.jetbrains.kotlin.backend.jvm.lower.MultifileFacadeFileEntry
 import org.jetbrains.kotlin.backend.jvm.serialization.JvmIdSignatureDescriptor
 import org.jetbrains.kotlin.codegen.state.GenerationState
+import org.jetbrains.kotlin.config.JVMConfigurationKeys
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor
 import org.jetbrains.kotlin.descriptors.konan.DeserializedKlibModuleOrigin
 import org.jetbrains.kotlin.descriptors.konan.KlibModuleOrigin
@@ -22,20 +23,29 @@ import org.jetbrains.kotlin.idea.MainFunctionDetector
 import org.jetbrains.kotlin.ir.backend.jvm.serialization.EmptyLoggingContext
 import org.jetbrains.kotlin.ir.backend.jvm.serialization.JvmIrLinker
 import org.jetbrains.kotlin.ir.backend.jvm.serialization.JvmManglerDesc
+import org.jetbrains.kotlin.ir.IrElement
 import org.jetbrains.kotlin.ir.builders.TranslationPluginContext
 import org.jetbrains.kotlin.ir.declarations.IrClass
+import org.jetbrains.kotlin.ir.declarations.IrFile
+import org.jetbrains.kotlin.ir.declarations.IrFunction
 import org.jetbrains.kotlin.ir.declarations.IrModuleFragment
 import org.jetbrains.kotlin.ir.declarations.impl.IrFactoryImpl
+import org.jetbrains.kotlin.ir.declarations.lazy.IrLock
 import org.jetbrains.kotlin.ir.descriptors.IrBuiltIns
 import org.jetbrains.kotlin.ir.descriptors.IrFunctionFactory
 import org.jetbrains.kotlin.ir.linkage.IrProvider
 import org.jetbrains.kotlin.ir.types.defaultType
 import org.jetbrains.kotlin.ir.util.*
+import org.jetbrains.kotlin.ir.visitors.IrElementVisitorVoid
+import org.jetbrains.kotlin.ir.visitors.acceptChildrenVoid
 import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.psi2ir.Psi2IrConfiguration
 import org.jetbrains.kotlin.psi2ir.Psi2IrTranslator
 import org.jetbrains.kotlin.psi2ir.PsiSourceManager
 import org.jetbrains.kotlin.resolve.BindingContext
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
 
 object JvmBackendFacade {
     fun doGenerateFiles(files: Collection<KtFile>, state: GenerationState, phaseConfig: PhaseConfig) {
@@ -138,28 +148,106 @@ object JvmBackendFacade {
 
         JvmLower(context).lower(irModuleFragment)
 
-        for (generateMultifileFacade in listOf(true, false)) {
-            for (irFile in irModuleFragment.files) {
-                // Generate multifile facades first, to compute and store JVM signatures of const properties which are later used
-                // when serializing metadata in the multifile parts.
-                // TODO: consider dividing codegen itself into separate phases (bytecode generation, metadata serialization) to avoid this
-                val isMultifileFacade = irFile.fileEntry is MultifileFacadeFileEntry
-                if (isMultifileFacade != generateMultifileFacade) continue
+        // Generate multifile facades first, to compute and store JVM signatures of const properties which are later used
+        // when serializing metadata in the multifile parts.
+        // TODO: consider dividing codegen itself into separate phases (bytecode generation, metadata serialization) to avoid this
+        val files = irModuleFragment.files.sortedBy { it.fileEntry !is MultifileFacadeFileEntry }
 
-                try {
-                    for (loweredClass in irFile.declarations) {
-                        if (loweredClass !is IrClass) {
-                            throw AssertionError("File-level declaration should be IrClass after JvmLower, got: " + loweredClass.render())
-                        }
-                        ClassCodegen.getOrCreate(loweredClass, context).generate()
-                    }
-                } catch (e: Throwable) {
-                    CodegenUtil.reportBackendException(e, "code generation", irFile.fileEntry.name)
-                }
+        recordLocalDelegatedProperties(files, context)
+
+        val threads = state.configuration.get(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, 1)
+            .let { if (it == 0) Runtime.getRuntime().availableProcessors() else it }
+        if (threads > 1) {
+            generateFilesInParallel(files, context, symbolTable.lock, threads)
+        } else {
+            for (irFile in files) {
+                generateFile(irFile, context)
             }
         }
+
         // TODO: split classes into groups connected by inline calls; call this after every group
         //       and clear `JvmBackendContext.classCodegens`
         state.afterIndependentPart()
     }
+
+    private fun recordLocalDelegatedProperties(files: List<IrFile>, context: JvmBackendContext) {
+        if (context.localDelegatedProperties.isEmpty()) return
+        for (irFile in files) {
+            // Local classes are generated too, so the whole tree is visited
+            irFile.acceptChildrenVoid(object : IrElementVisitorVoid {
+                override fun visitElement(element: IrElement) {
+                    element.acceptChildrenVoid(this)
+                }
+
+                override fun visitClass(declaration: IrClass) {
+                    DescriptorMetadataSerializer.recordLocalDelegatedProperties(context, declaration)
+                    declaration.acceptChildrenVoid(this)
+                }
+            })
+        }
+    }
+
+    private fun generateFile(irFile: IrFile, context: JvmBackendContext) {
+        try {
+            for (loweredClass in irFile.declarations) {
+                if (loweredClass !is IrClass) {
+                    throw AssertionError("File-level declaration should be IrClass after JvmLower, got: " + loweredClass.render())
+                }
+                ClassCodegen.getOrCreate(loweredClass, context).generate()
+            }
+        } catch (e: Throwable) {
+            CodegenUtil.reportBackendException(e, "code generation", irFile.fileEntry.name)
+        }
+    }
+
+    // Lowerings are still performed sequentially, since they update the shared JvmBackendContext and declarations of other files.
+    //
+    // Code generation of a file only reads other files, except for inline functions, which are generated into a method node
+    // when first called and are then copied into every call site, and multifile facades, which should be generated before their parts.
+    // Such files are generated sequentially first, and then the remaining files are generated in parallel. Output files are ordered
+    // by the index of the source file, so that the result doesn't depend on the scheduling of threads.
+    // Lazy IR is initialized under [lock], which is only enabled while the files are generated in parallel.
+    private fun generateFilesInParallel(files: List<IrFile>, context: JvmBackendContext, lock: IrLock, threads: Int) {
+        val factory = context.state.factory
+        val (sequentialFiles, parallelFiles) = files.withIndex().partition { (_, irFile) ->
+            irFile.fileEntry is MultifileFacadeFileEntry || irFile.declarations.any { it is IrClass && it.hasInlineFunctions() }
+        }
+
+        try {
+            for ((index, irFile) in sequentialFiles) {
+                factory.setOutputOrder(index)
+                generateFile(irFile, context)
+            }
+        } finally {
+            factory.setOutputOrder(null)
+        }
+
+        lock.isEnabled = true
+        val pool = ForkJoinPool(threads)
+        try {
+            val tasks = parallelFiles.map { (index, irFile) ->
+                Callable {
+                    factory.setOutputOrder(index)
+                    try {
+                        generateFile(irFile, context)
+                    } finally {
+                        factory.setOutputOrder(null)
+                    }
+                }
+            }
+            for (future in pool.invokeAll(tasks)) {
+                try {
+                    future.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        } finally {
+            pool.shutdown()
+            lock.isEnabled = false
+        }
+    }
+
+    private fun IrClass.hasInlineFunctions(): Boolean =
+        declarations.any { it is IrFunction && it.isInline || it is IrClass && it.hasInlineFunctions() }
 }
@@ -31,23 +31,26 @@ import org.jetbrains.kotlin.load.java.JavaDescriptorVisibilities
 import org.jetbrains.kotlin.load.java.JvmAbi
 import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.resolve.deprecation.DeprecationResolver
+import java.util.concurrent.ConcurrentHashMap
 
 class JvmCachedDeclarations(
     private val context: JvmBackendContext,
     private val methodSignatureMapper: MethodSignatureMapper,
     private val languageVersionSettings: LanguageVersionSettings
 ) {
-    private val singletonFieldDeclarations = HashMap<IrSymbolOwner, IrField>()
-    private val interfaceCompanionFieldDeclarations = HashMap<IrSymbolOwner, IrField>()
-    private val staticBackingFields = HashMap<IrProperty, IrField>()
+    // Declarations may be requested by several threads generating class files, see JVMConfigurationKeys.PARALLEL_BACKEND_THREADS.
+    // computeIfAbsent makes sure that only one declaration is created for a key; no computation updates the map it's stored in.
+    private val singletonFieldDeclarations = ConcurrentHashMap<IrSymbolOwner, IrField>()
+    private val interfaceCompanionFieldDeclarations = ConcurrentHashMap<IrSymbolOwner, IrField>()
+    private val staticBackingFields = ConcurrentHashMap<IrProperty, IrField>()
 
-    private val defaultImplsMethods = HashMap<IrSimpleFunction, IrSimpleFunction>()
-    private val defaultImplsClasses = HashMap<IrClass, IrClass>()
-    private val defaultImplsRedirections = HashMap<IrSimpleFunction, IrSimpleFunction>()
-    private val defaultImplsOriginalMethods = HashMap<IrSimpleFunction, IrSimpleFunction>()
+    private val defaultImplsMethods = ConcurrentHashMap<IrSimpleFunction, IrSimpleFunction>()
+    private val defaultImplsClasses = ConcurrentHashMap<IrClass, IrClass>()
+    private val defaultImplsRedirections = ConcurrentHashMap<IrSimpleFunction, IrSimpleFunction>()
+    private val defaultImplsOriginalMethods = ConcurrentHashMap<IrSimpleFunction, IrSimpleFunction>()
 
     fun getFieldForEnumEntry(enumEntry: IrEnumEntry): IrField =
-        singletonFieldDeclarations.getOrPut(enumEntry) {
+        singletonFieldDeclarations.computeIfAbsent(enumEntry) {
             context.irFactory.buildField {
                 setSourceRange(enumEntry)
                 name = enumEntry.name
@@ -61,7 +64,7 @@ class JvmCachedDeclarations(
         }
 
     fun getFieldForObjectInstance(singleton: IrClass): IrField =
-        singletonFieldDeclarations.getOrPut(singleton) {
+        singletonFieldDeclarations.computeIfAbsent(singleton) {
             val originalVisibility = singleton.visibility
             val isNotMappedCompanion = singleton.isCompanion && !singleton.isMappedIntrinsicCompanionObject()
             val useProperVisibilityForCompanion =
@@ -90,7 +93,7 @@ class JvmCachedDeclarations(
 
     fun getPrivateFieldForObjectInstance(singleton: IrClass): IrField =
         if (singleton.isCompanion && singleton.parentAsClass.isJvmInterface)
-            interfaceCompanionFieldDeclarations.getOrPut(singleton) {
+            interfaceCompanionFieldDeclarations.computeIfAbsent(singleton) {
                 context.irFactory.buildField {
                     name = Name.identifier("\$\$INSTANCE")
                     type = singleton.defaultType
@@ -112,7 +115,7 @@ class JvmCachedDeclarations(
         val oldField = irProperty.backingField ?: return null
         val oldParent = irProperty.parent as? IrClass ?: return null
         if (!oldParent.isObject) return null
-        return staticBackingFields.getOrPut(irProperty) {
+        return staticBackingFields.computeIfAbsent(irProperty) {
             context.irFactory.buildField {
                 updateFrom(oldField)
                 name = oldField.name
@@ -139,7 +142,7 @@ class JvmCachedDeclarations(
         val parent = interfaceFun.parentAsClass
         assert(parent.isJvmInterface) { "Parent of ${interfaceFun.dump()} should be interface" }
         assert(!forCompatibilityMode || !defaultImplsMethods.containsKey(interfaceFun)) { "DefaultImpls stub in compatibility mode should be requested only once from interface lowering: ${interfaceFun.dump()}" }
-        return defaultImplsMethods.getOrPut(interfaceFun) {
+        return defaultImplsMethods.computeIfAbsent(interfaceFun) {
             val defaultImpls = getDefaultImplsClass(interfaceFun.parentAsClass)
 
             val name = Name.identifier(methodSignatureMapper.mapFunctionName(interfaceFun))
@@ -196,7 +199,7 @@ class JvmCachedDeclarations(
         defaultImplsOriginalMethods[defaultImplFun]
 
     fun getDefaultImplsClass(interfaceClass: IrClass): IrClass =
-        defaultImplsClasses.getOrPut(interfaceClass) {
+        defaultImplsClasses.computeIfAbsent(interfaceClass) {
             context.irFactory.buildClass {
                 startOffset = interfaceClass.startOffset
                 endOffset = interfaceClass.endOffset
@@ -209,7 +212,7 @@ class JvmCachedDeclarations(
         }
 
     fun getDefaultImplsRedirection(fakeOverride: IrSimpleFunction): IrSimpleFunction =
-        defaultImplsRedirections.getOrPut(fakeOverride) {
+        defaultImplsRedirections.computeIfAbsent(fakeOverride) {
             assert(fakeOverride.isFakeOverride)
             val irClass = fakeOverride.parentAsClass
             context.irFactory.buildFun {
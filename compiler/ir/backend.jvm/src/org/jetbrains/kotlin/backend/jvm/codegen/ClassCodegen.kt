@@ -50,6 +50,7 @@ import org.jetbrains.org.objectweb.asm.*
 import org.jetbrains.org.objectweb.asm.commons.Method
 import org.jetbrains.org.objectweb.asm.tree.MethodNode
 import java.io.File
+import java.util.concurrent.ConcurrentHashMap
 
 interface MetadataSerializer {
     fun serialize(metadata: MetadataSource): Pair<MessageLite, JvmStringTable>?
@@ -302,7 +303,11 @@ class ClassCodegen private constructor(
                 it.origin == JvmLoweredDeclarationOrigin.CLASS_STATIC_INITIALIZER
             },
         ): ClassCodegen =
-            context.classCodegens.getOrPut(irClass) { ClassCodegen(irClass, context, parentFunction) }.also {
+            // Codegens may be requested by several threads generating classes in parallel. Creating a codegen creates
+            // codegens for the containing classes, hence a reentrant lock instead of a concurrent map.
+            synchronized(context.classCodegens) {
+                context.classCodegens.getOrPut(irClass) { ClassCodegen(irClass, context, parentFunction) }
+            }.also {
                 assert(parentFunction == null || it.parentFunction == parentFunction) {
                     "inconsistent parent function for ${irClass.render()}:\n" +
                             "New: ${parentFunction!!.render()}\n" +
@@ -348,7 +353,10 @@ class ClassCodegen private constructor(
         }
     }
 
-    private val generatedInlineMethods = mutableMapOf<IrFunction, SMAPAndMethodNode>()
+    // Inline methods of this class may be requested by threads generating other classes, see JvmBackendFacade.
+    // A method is generated by the first thread requesting it, the others wait for its result. The method is generated
+    // outside of the map's lock, since generating it may request other inline methods of this class.
+    private val generatedInlineMethods = ConcurrentHashMap<IrFunction, Lazy<SMAPAndMethodNode>>()
 
     fun generateMethodNode(method: IrFunction, delegatedPropertyOptimizer: DelegatedPropertyOptimizer?): SMAPAndMethodNode {
         if (!method.isInline && !method.isSuspend) {
@@ -357,10 +365,14 @@ class ClassCodegen private constructor(
             // generated by `generateMethod` below so does not need caching.
             return FunctionCodegen(method, this).generate(delegatedPropertyOptimizer)
         }
-        val (node, smap) = generatedInlineMethods.getOrPut(method) { FunctionCodegen(method, this).generate(delegatedPropertyOptimizer) }
+        val (node, smap) = generatedInlineMethods.computeIfAbsent(method) {
+            lazy { FunctionCodegen(method, this).generate(delegatedPropertyOptimizer) }
+        }.value
         val copy = with(node) { MethodNode(Opcodes.API_VERSION, access, name, desc, signature, exceptions.toTypedArray()) }
-        node.instructions.resetLabels()
-        node.accept(copy)
+        synchronized(node) {
+            node.instructions.resetLabels()
+            node.accept(copy)
+        }
         return SMAPAndMethodNode(copy, smap)
     }
 
@@ -37,16 +37,6 @@ class DescriptorMetadataSerializer(
         }
 
     override fun serialize(metadata: MetadataSource): Pair<MessageLite, JvmStringTable>? {
-        val localDelegatedProperties = (irClass.attributeOwnerId as? IrClass)?.let(context.localDelegatedProperties::get)
-        if (localDelegatedProperties != null && localDelegatedProperties.isNotEmpty()) {
-            context.state.bindingTrace.record(
-                CodegenBinding.DELEGATED_PROPERTIES_WITH_METADATA,
-                // When serializing metadata for interfaces, `JvmSerializerExtension.serializeClass`
-                // looks at `$DefaultImpls` for some reason that's probably related to the old backend.
-                if (irClass.isInterface) context.typeMapper.mapClass(context.cachedDeclarations.getDefaultImplsClass(irClass)) else type,
-                localDelegatedProperties.mapNotNull { (it.owner.metadata as? DescriptorMetadataSource.LocalDelegatedProperty)?.descriptor }
-            )
-        }
         val message = when (metadata) {
             is DescriptorMetadataSource.Class -> serializer!!.classProto(metadata.descriptor).build()
             is DescriptorMetadataSource.File ->
@@ -74,4 +64,25 @@ class DescriptorMetadataSerializer(
         val descriptor = (metadata as DescriptorMetadataSource.Property).descriptor
         context.state.globalSerializationBindings.put(JvmSerializationBindings.FIELD_FOR_PROPERTY, descriptor, signature)
     }
+
+    companion object {
+        /**
+         * Records local delegated properties of [irClass], which are serialized by [JvmSerializerExtension].
+         * Called for all classes before code generation starts, since classes may be generated in parallel
+         * and the binding trace isn't thread-safe.
+         */
+        fun recordLocalDelegatedProperties(context: JvmBackendContext, irClass: IrClass) {
+            val localDelegatedProperties = (irClass.attributeOwnerId as? IrClass)?.let(context.localDelegatedProperties::get)
+            val descriptors = localDelegatedProperties.orEmpty()
+                .mapNotNull { (it.owner.metadata as? DescriptorMetadataSource.LocalDelegatedProperty)?.descriptor }
+            if (descriptors.isEmpty()) return
+            context.state.bindingTrace.record(
+                CodegenBinding.DELEGATED_PROPERTIES_WITH_METADATA,
+                // When serializing metadata for interfaces, `JvmSerializerExtension.serializeClass`
+                // looks at `$DefaultImpls` for some reason that's probably related to the old backend.
+                context.typeMapper.mapClass(if (irClass.isInterface) context.cachedDeclarations.getDefaultImplsClass(irClass) else irClass),
+                descriptors
+            )
+        }
+    }
 }
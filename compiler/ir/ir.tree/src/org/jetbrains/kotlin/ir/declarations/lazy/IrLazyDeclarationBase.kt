@@ -26,6 +26,9 @@ interface IrLazyDeclarationBase : IrDeclaration {
     override val factory: IrFactory
         get() = stubGenerator.symbolTable.irFactory
 
+    val lock: IrLock
+        get() = stubGenerator.symbolTable.lock
+
     fun KotlinType.toIrType(): IrType =
         typeTranslator.translateType(this)
 
@@ -46,11 +49,11 @@ interface IrLazyDeclarationBase : IrDeclaration {
         }
     }
 
-    fun createLazyAnnotations(): ReadWriteProperty<Any?, List<IrConstructorCall>> = lazyVar {
+    fun createLazyAnnotations(): ReadWriteProperty<Any?, List<IrConstructorCall>> = lazyVar(lock) {
         descriptor.annotations.mapNotNull(typeTranslator.constantValueGenerator::generateAnnotationConstructorCall).toMutableList()
     }
 
-    fun createLazyParent(): ReadWriteProperty<Any?, IrDeclarationParent> = lazyVar {
+    fun createLazyParent(): ReadWriteProperty<Any?, IrDeclarationParent> = lazyVar(lock) {
         val currentDescriptor = descriptor
 
         val containingDeclaration =
@@ -26,7 +26,7 @@ interface IrLazyFunctionBase : IrLazyDeclarationBase, IrTypeParametersContainer
         }
 
     fun createValueParameters(): ReadWriteProperty<Any?, List<IrValueParameter>> =
-        lazyVar {
+        lazyVar(lock) {
             typeTranslator.buildWithScope(this) {
                 descriptor.valueParameters.mapTo(arrayListOf()) {
                     stubGenerator.generateValueParameterStub(it).apply { parent = this@IrLazyFunctionBase }
@@ -35,14 +35,14 @@ interface IrLazyFunctionBase : IrLazyDeclarationBase, IrTypeParametersContainer
         }
 
     fun createReceiverParameter(parameter: ReceiverParameterDescriptor?): ReadWriteProperty<Any?, IrValueParameter?> =
-        lazyVar {
+        lazyVar(lock) {
             typeTranslator.buildWithScope(this) {
                 parameter?.generateReceiverParameterStub()?.also { it.parent = this@IrLazyFunctionBase }
             }
         }
 
     fun createReturnType(): ReadWriteProperty<Any?, IrType> =
-        lazyVar {
+        lazyVar(lock) {
             typeTranslator.buildWithScope(this) {
                 descriptor.returnType!!.toIrType()
             }
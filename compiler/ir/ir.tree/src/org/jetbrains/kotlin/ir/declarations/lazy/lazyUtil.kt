@@ -9,9 +9,26 @@ import org.jetbrains.kotlin.ir.declarations.withInitialIr
 import kotlin.properties.ReadWriteProperty
 import kotlin.reflect.KProperty
 
-fun <T> lazyVar(initializer: () -> T): ReadWriteProperty<Any?, T> = UnsafeLazyVar(initializer)
+fun <T> lazyVar(lock: IrLock, initializer: () -> T): ReadWriteProperty<Any?, T> = LazyVar(lock, initializer)
+
+/**
+ * Lock held while lazy IR declarations of one [org.jetbrains.kotlin.ir.util.SymbolTable] are initialized.
+ *
+ * Initialization of one lazy declaration usually creates or initializes other ones and fills the symbol table,
+ * so a single lock is used for all of them. The lock is disabled by default, so that sequential compilations don't pay for it.
+ * Code which accesses lazy IR and the symbol table from several threads (parallel class file generation in the JVM IR backend)
+ * enables it for the duration of the parallel part and should hold it while referencing symbols.
+ */
+class IrLock {
+    // Only changed while no other thread accesses the IR: starting and joining those threads publishes the change
+    var isEnabled: Boolean = false
+
+    inline fun <T> withLock(block: () -> T): T =
+        if (isEnabled) synchronized(this) { block() } else block()
+}
 
-private class UnsafeLazyVar<T>(initializer: () -> T) : ReadWriteProperty<Any?, T> {
+private class LazyVar<T>(private val lock: IrLock, initializer: () -> T) : ReadWriteProperty<Any?, T> {
+    @Volatile
     private var isInitialized = false
     private var initializer: (() -> T)? = initializer
     private var _value: Any? = null
@@ -19,9 +36,13 @@ private class UnsafeLazyVar<T>(initializer: () -> T) : ReadWriteProperty<Any?, T
     private val value: T
         get() {
             if (!isInitialized) {
-                withInitialIr { _value = initializer!!() }
-                isInitialized = true
-                initializer = null
+                lock.withLock {
+                    if (!isInitialized) {
+                        withInitialIr { _value = initializer!!() }
+                        isInitialized = true
+                        initializer = null
+                    }
+                }
             }
             @Suppress("UNCHECKED_CAST")
             return _value as T
@@ -32,7 +53,9 @@ private class UnsafeLazyVar<T>(initializer: () -> T) : ReadWriteProperty<Any?, T
     override fun getValue(thisRef: Any?, property: KProperty<*>): T = value
 
     override fun setValue(thisRef: Any?, property: KProperty<*>, value: T) {
-        this._value = value
-        isInitialized = true
+        lock.withLock {
+            this._value = value
+            isInitialized = true
+        }
     }
 }
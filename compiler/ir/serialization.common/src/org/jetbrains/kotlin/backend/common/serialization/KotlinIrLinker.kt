@@ -40,6 +40,8 @@ import org.jetbrains.kotlin.protobuf.ExtensionRegistryLite.newInstance
 import org.jetbrains.kotlin.resolve.descriptorUtil.module
 import org.jetbrains.kotlin.types.Variance
 import org.jetbrains.kotlin.utils.addToStdlib.firstNotNullResult
+import java.io.InputStream
+import java.nio.ByteBuffer
 import org.jetbrains.kotlin.backend.common.serialization.proto.Actual as ProtoActual
 import org.jetbrains.kotlin.backend.common.serialization.proto.IdSignature as ProtoIdSignature
 import org.jetbrains.kotlin.backend.common.serialization.proto.IrConstructorCall as ProtoConstructorCall
@@ -121,7 +123,7 @@ abstract class KotlinIrLinker(
             val files = ArrayList<IrFile>(fileCount)
 
             for (i in 0 until fileCount) {
-                val fileStream = klib.file(i).codedInputStream
+                val fileStream = klib.fileBuffer(i).codedInputStream
                 files.add(deserializeIrFile(ProtoFile.parseFrom(fileStream, newInstance()), i, delegate))
             }
 
@@ -296,7 +298,7 @@ abstract class KotlinIrLinker(
         }
 
         private fun readDeclaration(index: Int): CodedInputStream =
-            moduleDeserializer.klib.irDeclaration(index, fileIndex).codedInputStream
+            moduleDeserializer.klib.irDeclarationBuffer(index, fileIndex).codedInputStream
 
         private fun loadTopLevelDeclarationProto(idSig: IdSignature): ProtoDeclaration {
             val idSigIndex = resolveSignatureIndex(idSig)
@@ -304,21 +306,21 @@ abstract class KotlinIrLinker(
         }
 
         private fun readType(index: Int): CodedInputStream =
-            moduleDeserializer.klib.type(index, fileIndex).codedInputStream
+            moduleDeserializer.klib.typeBuffer(index, fileIndex).codedInputStream
 
         private fun loadTypeProto(index: Int): ProtoType {
             return ProtoType.parseFrom(readType(index), newInstance())
         }
 
         private fun readSignature(index: Int): CodedInputStream =
-            moduleDeserializer.klib.signature(index, fileIndex).codedInputStream
+            moduleDeserializer.klib.signatureBuffer(index, fileIndex).codedInputStream
 
         private fun loadSignatureProto(index: Int): ProtoIdSignature {
             return ProtoIdSignature.parseFrom(readSignature(index), newInstance())
         }
 
         private fun readBody(index: Int): CodedInputStream =
-            moduleDeserializer.klib.body(index, fileIndex).codedInputStream
+            moduleDeserializer.klib.bodyBuffer(index, fileIndex).codedInputStream
 
         private fun loadStatementBodyProto(index: Int): ProtoStatement {
             return ProtoStatement.parseFrom(readBody(index), newInstance())
@@ -440,9 +442,15 @@ abstract class KotlinIrLinker(
         }
     }
 
-    private val ByteArray.codedInputStream: CodedInputStream
+    private val ByteBuffer.codedInputStream: CodedInputStream
         get() {
-            val codedInputStream = CodedInputStream.newInstance(this)
+            val codedInputStream = when {
+                hasArray() -> CodedInputStream.newInstance(array(), arrayOffset() + position(), remaining())
+                // Protobuf can't read off-heap (e.g. mapped) memory, so big messages are streamed through
+                // the coded stream's own buffer instead of being copied to the heap as a whole.
+                remaining() > DIRECT_BUFFER_COPY_LIMIT -> CodedInputStream.newInstance(ByteBufferInputStream(this))
+                else -> CodedInputStream.newInstance(ByteArray(remaining()).also { duplicate().get(it) })
+            }
             codedInputStream.setRecursionLimit(65535) // The default 64 is blatantly not enough for IR.
             return codedInputStream
         }
@@ -697,3 +705,23 @@ enum class DeserializationStrategy(
     ONLY_DECLARATION_HEADERS(false, false, false, false),
     WITH_INLINE_BODIES(false, false, false, true)
 }
+
+// The size of the buffer CodedInputStream allocates when reading from a stream
+private const val DIRECT_BUFFER_COPY_LIMIT = 4096
+
+private class ByteBufferInputStream(buffer: ByteBuffer) : InputStream() {
+    private val buffer = buffer.duplicate()
+
+    override fun read(): Int =
+        if (buffer.hasRemaining()) buffer.get().toInt() and 0xFF else -1
+
+    override fun read(b: ByteArray, off: Int, len: Int): Int {
+        if (len == 0) return 0
+        if (!buffer.hasRemaining()) return -1
+        val count = minOf(len, buffer.remaining())
+        buffer.get(b, off, count)
+        return count
+    }
+
+    override fun available(): Int = buffer.remaining()
+}
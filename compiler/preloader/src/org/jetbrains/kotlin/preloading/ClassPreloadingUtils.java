@@ -20,10 +20,12 @@ import java.io.*;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 @SuppressWarnings("unchecked")
@@ -36,6 +38,8 @@ public class ClassPreloadingUtils {
      * @param parentClassLoader parent class loader
      * @param handler handler to be notified on class definitions done by this class loader, or null
      * @param classesToLoadByParent condition to load some classes via parent class loader
+     * @param threads number of threads inflating entries of the jars, the handler is still notified in one thread
+     *                and in the same order as with one thread
      * @return a class loader that reads classes from memory
      * @throws IOException on from reading the jar
      */
@@ -44,13 +48,14 @@ public class ClassPreloadingUtils {
             int classCountEstimation,
             ClassLoader parentClassLoader,
             ClassCondition classesToLoadByParent,
-            ClassHandler handler
+            ClassHandler handler,
+            int threads
     ) throws IOException {
-        Map<String, Object> entries = loadAllClassesFromJars(jarFiles, classCountEstimation, handler);
+        Map<String, Object> entries = loadAllClassesFromJars(jarFiles, classCountEstimation, handler, threads);
 
         Collection<File> classpath = mergeClasspathFromManifests(entries);
         if (!classpath.isEmpty()) {
-            parentClassLoader = preloadClasses(classpath, classCountEstimation, parentClassLoader, null, handler);
+            parentClassLoader = preloadClasses(classpath, classCountEstimation, parentClassLoader, null, handler, threads);
         }
 
         return new MemoryBasedClassLoader(classesToLoadByParent, parentClassLoader, entries, handler, createFallbackClassLoader(jarFiles));
@@ -64,6 +69,16 @@ public class ClassPreloadingUtils {
         return new URLClassLoader(urls.toArray(new URL[urls.size()]), null);
     }
 
+    public static ClassLoader preloadClasses(
+            Collection<File> jarFiles,
+            int classCountEstimation,
+            ClassLoader parentClassLoader,
+            ClassCondition classesToLoadByParent,
+            ClassHandler handler
+    ) throws IOException {
+        return preloadClasses(jarFiles, classCountEstimation, parentClassLoader, classesToLoadByParent, handler, 1);
+    }
+
     public static ClassLoader preloadClasses(
             Collection<File> jarFiles, int classCountEstimation, ClassLoader parentClassLoader, ClassCondition classesToLoadByParent
     ) throws IOException {
@@ -114,78 +129,193 @@ public class ClassPreloadingUtils {
     private static Map<String, Object> loadAllClassesFromJars(
             Collection<File> jarFiles,
             int classNumberEstimate,
-            ClassHandler handler
+            ClassHandler handler,
+            int threads
     ) throws IOException {
         // 0.75 is HashMap.DEFAULT_LOAD_FACTOR
         Map<String, Object> resources = new HashMap<String, Object>((int) (classNumberEstimate / 0.75));
 
-        for (File jarFile : jarFiles) {
-            if (handler != null) {
-                handler.beforeLoadJar(jarFile);
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        try {
+            for (File jarFile : jarFiles) {
+                if (handler != null) {
+                    handler.beforeLoadJar(jarFile);
+                }
+
+                List<ResourceData> inflated = executor != null ? inflateJarInParallel(jarFile, executor, threads) : null;
+                if (inflated != null) {
+                    for (ResourceData resourceData : inflated) {
+                        byte[] data = resourceData.bytes;
+                        if (handler != null) {
+                            data = handler.instrument(resourceData.resourceName, data);
+                        }
+                        addResource(resources, new ResourceData(jarFile, resourceData.resourceName, data));
+                    }
+                }
+                else {
+                    loadAllClassesFromJar(jarFile, resources, handler);
+                }
+
+                if (handler != null) {
+                    handler.afterLoadJar(jarFile);
+                }
+            }
+        }
+        finally {
+            if (executor != null) {
+                executor.shutdown();
             }
+        }
+
+        trimResources(resources);
+        return resources;
+    }
+
+    private static void loadAllClassesFromJar(File jarFile, Map<String, Object> resources, ClassHandler handler) throws IOException {
+        FileInputStream fileInputStream = new FileInputStream(jarFile);
+        try {
+            byte[] buffer = new byte[10 * 1024];
+            ZipInputStream stream = new ZipInputStream(new BufferedInputStream(fileInputStream, 1 << 19));
+            while (true) {
+                ZipEntry entry = stream.getNextEntry();
+                if (entry == null) break;
+                if (entry.isDirectory()) continue;
 
-            FileInputStream fileInputStream = new FileInputStream(jarFile);
+                int size = (int) entry.getSize();
+                int effectiveSize = size < 0 ? 32 : size;
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(effectiveSize);
+
+                int count;
+                while ((count = stream.read(buffer)) > 0) {
+                    bytes.write(buffer, 0, count);
+                }
+
+                String name = entry.getName();
+                byte[] data = bytes.toByteArray();
+                if (handler != null) {
+                    data = handler.instrument(name, data);
+                }
+                addResource(resources, new ResourceData(jarFile, name, data));
+            }
+        }
+        finally {
             try {
-                byte[] buffer = new byte[10 * 1024];
-                ZipInputStream stream = new ZipInputStream(new BufferedInputStream(fileInputStream, 1 << 19));
-                while (true) {
-                    ZipEntry entry = stream.getNextEntry();
-                    if (entry == null) break;
-                    if (entry.isDirectory()) continue;
-
-                    int size = (int) entry.getSize();
-                    int effectiveSize = size < 0 ? 32 : size;
-                    ByteArrayOutputStream bytes = new ByteArrayOutputStream(effectiveSize);
-
-                    int count;
-                    while ((count = stream.read(buffer)) > 0) {
-                        bytes.write(buffer, 0, count);
-                    }
+                fileInputStream.close();
+            }
+            catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
 
-                    String name = entry.getName();
-                    byte[] data = bytes.toByteArray();
-                    if (handler != null) {
-                        data = handler.instrument(name, data);
-                    }
-                    ResourceData resourceData = new ResourceData(jarFile, name, data);
+    /**
+     * Reads and inflates all entries of the jar, splitting them between several tasks on the executor.
+     * Entries are returned in the order in which they are stored in the jar.
+     *
+     * Unlike {@link ZipInputStream}, which reads local entry headers, {@link ZipFile} reads the central directory of the jar,
+     * and only one of several entries with the same name can be read with it. So null is returned for jars with such entries,
+     * and they should be read sequentially. Entries which are missing in the central directory are not read by this method.
+     */
+    private static List<ResourceData> inflateJarInParallel(
+            final File jarFile,
+            ExecutorService executor,
+            int threads
+    ) throws IOException {
+        final ZipFile zipFile = new ZipFile(jarFile);
+        try {
+            List<ZipEntry> entries = new ArrayList<ZipEntry>();
+            Set<String> names = new HashSet<String>();
+            for (Enumeration<? extends ZipEntry> enumeration = zipFile.entries(); enumeration.hasMoreElements(); ) {
+                ZipEntry entry = enumeration.nextElement();
+                if (!entry.isDirectory()) {
+                    if (!names.add(entry.getName())) return null;
+                    entries.add(entry);
+                }
+            }
 
-                    Object previous = resources.get(name);
-                    if (previous == null) {
-                        resources.put(name, resourceData);
-                    }
-                    else if (previous instanceof ResourceData) {
-                        List<ResourceData> list = new ArrayList<ResourceData>();
-                        list.add((ResourceData) previous);
-                        list.add(resourceData);
-                        resources.put(name, list);
-                    }
-                    else {
-                        assert previous instanceof ArrayList :
-                                "Resource map should contain ResourceData or ArrayList<ResourceData>: " + name;
-                        ((ArrayList<ResourceData>) previous).add(resourceData);
+            // Several chunks per thread even out the differences in the sizes of entries
+            int chunkSize = Math.max(1, entries.size() / (threads * 4));
+            List<Future<List<ResourceData>>> chunks = new ArrayList<Future<List<ResourceData>>>();
+            for (int start = 0; start < entries.size(); start += chunkSize) {
+                final List<ZipEntry> chunk = entries.subList(start, Math.min(start + chunkSize, entries.size()));
+                chunks.add(executor.submit(new Callable<List<ResourceData>>() {
+                    @Override
+                    public List<ResourceData> call() throws IOException {
+                        List<ResourceData> result = new ArrayList<ResourceData>(chunk.size());
+                        byte[] buffer = new byte[10 * 1024];
+                        for (ZipEntry entry : chunk) {
+                            InputStream stream = zipFile.getInputStream(entry);
+                            try {
+                                result.add(new ResourceData(jarFile, entry.getName(), readFully(stream, entry.getSize(), buffer)));
+                            }
+                            finally {
+                                stream.close();
+                            }
+                        }
+                        return result;
                     }
-                }
+                }));
             }
-            finally {
+
+            List<ResourceData> result = new ArrayList<ResourceData>(entries.size());
+            for (Future<List<ResourceData>> chunk : chunks) {
                 try {
-                    fileInputStream.close();
+                    result.addAll(chunk.get());
                 }
-                catch (IOException e) {
-                    // Ignore
+                catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) throw (IOException) cause;
+                    throw new RuntimeException(cause);
+                }
+                catch (InterruptedException e) {
+                    throw new InterruptedIOException("Interrupted while reading " + jarFile);
                 }
             }
-
-            if (handler != null) {
-                handler.afterLoadJar(jarFile);
+            return result;
+        }
+        finally {
+            try {
+                zipFile.close();
+            }
+            catch (IOException e) {
+                // Ignore
             }
         }
+    }
+
+    private static byte[] readFully(InputStream stream, long size, byte[] buffer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(size < 0 ? 32 : (int) size);
+        int count;
+        while ((count = stream.read(buffer)) > 0) {
+            bytes.write(buffer, 0, count);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void addResource(Map<String, Object> resources, ResourceData resourceData) {
+        String name = resourceData.resourceName;
+        Object previous = resources.get(name);
+        if (previous == null) {
+            resources.put(name, resourceData);
+        }
+        else if (previous instanceof ResourceData) {
+            List<ResourceData> list = new ArrayList<ResourceData>();
+            list.add((ResourceData) previous);
+            list.add(resourceData);
+            resources.put(name, list);
+        }
+        else {
+            assert previous instanceof ArrayList :
+                    "Resource map should contain ResourceData or ArrayList<ResourceData>: " + name;
+            ((ArrayList<ResourceData>) previous).add(resourceData);
+        }
+    }
 
+    private static void trimResources(Map<String, Object> resources) {
         for (Object value : resources.values()) {
             if (value instanceof ArrayList) {
                 ((ArrayList) value).trimToSize();
             }
         }
-
-        return resources;
     }
 }
@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.preloading;
 import org.jetbrains.kotlin.preloading.instrumentation.Instrumenter;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.lang.reflect.Method;
@@ -31,6 +32,14 @@ import java.util.stream.Collectors;
 @SuppressWarnings("UseOfSystemOutOrSystemErr")
 public class Preloader {
     public static final int DEFAULT_CLASS_NUMBER_ESTIMATE = 4096;
+    public static final int DEFAULT_THREADS = 1;
+
+    /**
+     * System property where the time of preloading in milliseconds is recorded for the program being run, so that it can
+     * report the time together with its own measurements.
+     * The name is repeated in CommonCompilerPerformanceManager, which can't depend on the preloader, so both must be changed together.
+     */
+    public static final String PRELOADING_TIME_PROPERTY = "kotlin.preloader.preloading.time.ms";
 
     public static void main(String[] args) throws Exception {
         String javaVersion = System.getProperty("java.specification.version");
@@ -59,7 +68,12 @@ public class Preloader {
         ClassLoader classLoader = createClassLoader(options);
 
         final Handler handler = getHandler(options, classLoader);
-        ClassLoader preloaded = ClassPreloadingUtils.preloadClasses(options.classpath, options.estimate, classLoader, null, handler);
+        final long preloadingStartTime = System.nanoTime();
+        ClassLoader preloaded = ClassPreloadingUtils.preloadClasses(
+                options.classpath, options.estimate, classLoader, null, handler, options.threads
+        );
+        final long preloadingTime = System.nanoTime() - preloadingStartTime;
+        System.setProperty(PRELOADING_TIME_PROPERTY, String.valueOf(preloadingTime / 1000000));
 
         Class<?> mainClass = preloaded.loadClass(options.mainClass);
         Method mainMethod = mainClass.getMethod("main", String[].class);
@@ -76,6 +90,7 @@ public class Preloader {
                             System.out.println();
                             System.out.println("=== Preloader's measurements: ");
                             System.out.format("Total time: %.3fs\n", (System.nanoTime() - startTime) / 1e9);
+                            System.out.format("Preloading time: %.3fs\n", preloadingTime / 1e9);
                         }
                         handler.done();
                     }
@@ -143,6 +158,8 @@ public class Preloader {
         boolean measure = false;
         List<File> instrumenters = new ArrayList<File>();
         int estimate = DEFAULT_CLASS_NUMBER_ESTIMATE;
+        int threads = DEFAULT_THREADS;
+        File classListFile = null;
         String mainClass = null;
         List<String> arguments = new ArrayList<String>();
 
@@ -162,6 +179,15 @@ public class Preloader {
                 if (end) throw new PreloaderException("no argument provided to " + arg);
                 estimate = Integer.parseInt(args[++i]);
             }
+            else if ("-threads".equals(arg)) {
+                if (end) throw new PreloaderException("no argument provided to " + arg);
+                threads = Integer.parseInt(args[++i]);
+                if (threads < 1) throw new PreloaderException("number of threads should be positive: " + threads);
+            }
+            else if ("-dump-class-list".equals(arg)) {
+                if (end) throw new PreloaderException("no argument provided to " + arg);
+                classListFile = new File(args[++i]);
+            }
             else if ("-instrument".equals(arg)) {
                 if (end) throw new PreloaderException("no argument provided to " + arg);
                 instrumenters = parseClassPath(args[++i]);
@@ -178,7 +204,7 @@ public class Preloader {
 
         if (mainClass == null) throw new PreloaderException("no main class name provided");
 
-        return new Options(classpath, measure, instrumenters, estimate, mainClass, arguments);
+        return new Options(classpath, measure, instrumenters, estimate, threads, classListFile, mainClass, arguments);
     }
 
     private static List<File> parseClassPath(String classpath) {
@@ -195,6 +221,11 @@ public class Preloader {
     }
 
     private static Handler getHandler(Options options, ClassLoader withInstrumenter) {
+        Handler handler = getMeasuringHandler(options, withInstrumenter);
+        return options.classListFile != null ? new ClassListHandler(handler, options.classListFile) : handler;
+    }
+
+    private static Handler getMeasuringHandler(Options options, ClassLoader withInstrumenter) {
         if (!options.measure) return new Handler();
 
         final Instrumenter instrumenter = options.instrumenters.isEmpty() ? Instrumenter.DO_NOTHING : loadInstrumenter(withInstrumenter);
@@ -249,6 +280,9 @@ public class Preloader {
         out.println("  -instrument <paths>         Paths where the instrumenter will be looked up by java.util.ServiceLoader");
         out.println("                              (the class must implement " + Instrumenter.class.getCanonicalName() + " interface)");
         out.println("  -estimate <number>          Class number estimate (" + DEFAULT_CLASS_NUMBER_ESTIMATE + " by default)");
+        out.println("  -threads <number>           Number of threads reading the class path (" + DEFAULT_THREADS + " by default)");
+        out.println("  -dump-class-list <file>     Write the names of the loaded classes to the file on exit, in the format of");
+        out.println("                              -XX:SharedClassListFile, to create a class data sharing archive for the program");
         out.println("  -help (-h)                  Output this help message");
     }
 
@@ -257,6 +291,8 @@ public class Preloader {
         public final boolean measure;
         public final List<File> instrumenters;
         public final int estimate;
+        public final int threads;
+        public final File classListFile;
         public final String mainClass;
         public final List<String> arguments;
 
@@ -265,6 +301,8 @@ public class Preloader {
                 boolean measure,
                 List<File> instrumenters,
                 int estimate,
+                int threads,
+                File classListFile,
                 String mainClass,
                 List<String> arguments
         ) {
@@ -272,6 +310,8 @@ public class Preloader {
             this.measure = measure;
             this.instrumenters = instrumenters;
             this.estimate = estimate;
+            this.threads = threads;
+            this.classListFile = classListFile;
             this.mainClass = mainClass;
             this.arguments = arguments;
         }
@@ -290,4 +330,70 @@ public class Preloader {
     private static class Handler extends ClassHandler {
         public void done() {}
     }
+
+    /**
+     * Records the names of the classes defined by the preloading class loader, in the order of their definition.
+     * The list can be passed to -XX:SharedClassListFile together with -Xshare:dump to create an archive, which the JVM then uses
+     * with -XX:SharedArchiveFile when the same classes are loaded from the class path, without the preloader.
+     */
+    private static class ClassListHandler extends Handler {
+        private final Handler delegate;
+        private final File classListFile;
+        private final List<String> classNames = new ArrayList<String>();
+
+        private ClassListHandler(Handler delegate, File classListFile) {
+            this.delegate = delegate;
+            this.classListFile = classListFile;
+        }
+
+        @Override
+        public byte[] instrument(String resourceName, byte[] data) {
+            return delegate.instrument(resourceName, data);
+        }
+
+        @Override
+        public void beforeDefineClass(String name, int sizeInBytes) {
+            synchronized (classNames) {
+                classNames.add(name.replace('.', '/'));
+            }
+            delegate.beforeDefineClass(name, sizeInBytes);
+        }
+
+        @Override
+        public void afterDefineClass(String name) {
+            delegate.afterDefineClass(name);
+        }
+
+        @Override
+        public void beforeLoadJar(File jarFile) {
+            delegate.beforeLoadJar(jarFile);
+        }
+
+        @Override
+        public void afterLoadJar(File jarFile) {
+            delegate.afterLoadJar(jarFile);
+        }
+
+        @Override
+        public void done() {
+            delegate.done();
+
+            try {
+                PrintStream out = new PrintStream(new FileOutputStream(classListFile), false, "UTF-8");
+                try {
+                    synchronized (classNames) {
+                        for (String name : classNames) {
+                            out.println(name);
+                        }
+                    }
+                }
+                finally {
+                    out.close();
+                }
+            }
+            catch (IOException e) {
+                System.err.println("warning: failed to write the class list to " + classListFile + ": " + e);
+            }
+        }
+    }
 }
@@ -90,6 +90,11 @@ public class CliTestGenerated extends AbstractCliTest {
             runTest("compiler/testData/cli/jvm/argumentPassedMultipleTimes.args");
         }
 
+        @TestMetadata("backendThreadsInvalid.args")
+        public void testBackendThreadsInvalid() throws Exception {
+            runTest("compiler/testData/cli/jvm/backendThreadsInvalid.args");
+        }
+
         @TestMetadata("classAndFileClassClash.args")
         public void testClassAndFileClassClash() throws Exception {
             runTest("compiler/testData/cli/jvm/classAndFileClassClash.args");
@@ -300,6 +305,16 @@ public class CliTestGenerated extends AbstractCliTest {
             runTest("compiler/testData/cli/jvm/firHello.args");
         }
 
+        @TestMetadata("firThreads.args")
+        public void testFirThreads() throws Exception {
+            runTest("compiler/testData/cli/jvm/firThreads.args");
+        }
+
+        @TestMetadata("firThreadsInvalid.args")
+        public void testFirThreadsInvalid() throws Exception {
+            runTest("compiler/testData/cli/jvm/firThreadsInvalid.args");
+        }
+
         @TestMetadata("flagAllowingResultAsReturnType.args")
         public void testFlagAllowingResultAsReturnType() throws Exception {
             runTest("compiler/testData/cli/jvm/flagAllowingResultAsReturnType.args");
@@ -1091,6 +1106,11 @@ public class CliTestGenerated extends AbstractCliTest {
             runTest("compiler/testData/cli/js-dce/outputIsDirectory.args");
         }
 
+        @TestMetadata("parallel.args")
+        public void testParallel() throws Exception {
+            runTest("compiler/testData/cli/js-dce/parallel.args");
+        }
+
         @TestMetadata("parseError.args")
         public void testParseError() throws Exception {
             runTest("compiler/testData/cli/js-dce/parseError.args");
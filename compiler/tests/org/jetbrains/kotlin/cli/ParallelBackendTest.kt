@@ -0,0 +1,125 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli
+
+import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler
+import org.jetbrains.kotlin.test.CompilerTestUtil
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.File
+
+/**
+ * Checks that class files generated by the JVM backends with -Xbackend-threads are the same as the ones generated sequentially
+ */
+class ParallelBackendTest : TestCaseWithTmpdir() {
+    fun testParallelOutputIsSameAsSequential() {
+        doTest(listOf("-Xuse-ir"))
+    }
+
+    // The old backend optimizes methods of each class in parallel, except for methods with inline class boxing
+    fun testParallelOutputOfOldBackendIsSameAsSequential() {
+        doTest(listOf("-Xno-use-ir"))
+    }
+
+    private fun doTest(backendArgs: List<String>) {
+        val sources = File(tmpdir, "src").apply { mkdirs() }
+        File(sources, "inline.kt").writeText(INLINE_FUNCTIONS)
+        for (index in 0 until FILE_COUNT) {
+            File(sources, "file$index.kt").writeText(fileText(index))
+        }
+
+        val expected = compile(sources, "sequential", backendArgs, threads = null)
+        assertTrue("Output should contain DefaultImpls classes", expected.keys.any { it.endsWith("\$DefaultImpls.class") })
+        repeat(3) { attempt ->
+            val actual = compile(sources, "parallel$attempt", backendArgs, threads = 4)
+            assertEquals(expected.keys, actual.keys)
+            for ((path, bytes) in expected) {
+                assertTrue("$path differs from the sequentially generated one", bytes.contentEquals(actual.getValue(path)))
+            }
+        }
+    }
+
+    private fun compile(sources: File, name: String, backendArgs: List<String>, threads: Int?): Map<String, ByteArray> {
+        val destination = File(tmpdir, name)
+        val args = backendArgs + listOf("-XXLanguage:+InlineClasses", "-d", destination.path, sources.path) +
+                listOfNotNull(threads?.let { "-Xbackend-threads=$it" })
+        CompilerTestUtil.executeCompilerAssertSuccessful(K2JVMCompiler(), args)
+        return destination.walkTopDown().filter { it.isFile }.associate {
+            it.relativeTo(destination).invariantSeparatorsPath to it.readBytes()
+        }
+    }
+
+    private fun fileText(index: Int): String = """
+        @file:JvmMultifileClass
+        @file:JvmName("Facade${index % 3}")
+        package test
+
+        interface Api$index {
+            fun name(): String = "Api$index"
+            val size: Int get() = $index
+
+            fun lazyName(): String {
+                val cached by lazy { name() }
+                return cached
+            }
+        }
+
+        enum class Kind$index { A, B, C }
+
+        inline class Id$index(val value: Int)
+
+        object Registry$index {
+            val names = mutableListOf<String>()
+            fun register(name: String) = twice { names += name }
+        }
+
+        class Impl$index(private val kind: Kind$index) : Api$index {
+            companion object {
+                const val ID = $index
+                fun create() = Impl$index(Kind$index.values()[ID % 3])
+            }
+
+            override fun name(): String = when (kind) {
+                Kind$index.A -> "a${'$'}ID"
+                Kind$index.B -> "b${'$'}{super.name()}"
+                Kind$index.C -> measure { "c" + size }
+            }
+
+            fun callbacks(): List<() -> String> = (0..2).map { i -> { "${'$'}i:${'$'}{name()}" } }
+        }
+
+        fun ids$index(items: List<Int>): Int {
+            val ids: List<Id$index> = items.map { Id$index(it) }
+            val boxed: Any = ids.first()
+            return ids.sumBy { it.value } + (boxed as Id$index).value
+        }
+
+        fun top$index(items: List<Int>): Int {
+            class Local(val value: Int)
+            val count by lazy { items.size }
+            val sum = count + items.filter { it % 2 == 0 }.map(::Local).sumBy { it.value }
+            Registry$index.register(Impl$index.create().name())
+            return sum + object : Api$index {}.size
+        }
+    """.trimIndent()
+
+    companion object {
+        private const val FILE_COUNT = 12
+
+        private val INLINE_FUNCTIONS = """
+            package test
+
+            inline fun twice(block: () -> Unit) {
+                block()
+                block()
+            }
+
+            inline fun <T> measure(block: () -> T): T {
+                val start = System.nanoTime()
+                return block().also { check(System.nanoTime() >= start) }
+            }
+        """.trimIndent()
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli
+
+import org.jetbrains.kotlin.cli.common.ClassPreloadingMeasurement
+import org.jetbrains.kotlin.cli.common.CommonCompilerPerformanceManager
+import org.jetbrains.kotlin.cli.common.JvmStartupMeasurement
+import org.jetbrains.kotlin.cli.common.PerformanceMeasurement
+import org.jetbrains.kotlin.preloading.ClassHandler
+import org.jetbrains.kotlin.preloading.ClassPreloadingUtils
+import org.jetbrains.kotlin.preloading.Preloader
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import org.jetbrains.kotlin.util.PerformanceCounter
+import org.jetbrains.org.objectweb.asm.ClassWriter
+import org.jetbrains.org.objectweb.asm.Opcodes
+import java.io.File
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class PreloaderTest : TestCaseWithTmpdir() {
+    fun testParallelPreloadingIsSameAsSequential() {
+        val classes = (0 until CLASS_COUNT).associate { "test/Class$it.class" to classBytes("test/Class$it") }
+        val resources = (0 until RESOURCE_COUNT).associate { "resources/file$it.txt" to "content $it".repeat(it).toByteArray() }
+        val first = createJar("first.jar", classes + resources + ("shared.txt" to "first".toByteArray()))
+        // The second jar has two entries with the same name, which are both read from the local headers when preloading sequentially
+        val second = createJar(
+            "second.jar",
+            mapOf(
+                "shared.txt" to "second".toByteArray(),
+                DUPLICATE_NAME to "first copy".toByteArray(),
+                DUPLICATE_PLACEHOLDER_NAME to "second copy".toByteArray()
+            )
+        )
+        second.writeBytes(second.readBytes().replace(DUPLICATE_PLACEHOLDER_NAME.toByteArray(), DUPLICATE_NAME.toByteArray()))
+
+        val names = classes.keys + resources.keys + listOf("shared.txt", DUPLICATE_NAME)
+        val expected = preload(listOf(first, second), names, threads = 1)
+        assertEquals(2, expected.single { it.startsWith("resources $DUPLICATE_NAME") }.split(",").size)
+        for (threads in listOf(2, 4)) {
+            assertEquals(expected, preload(listOf(first, second), names, threads))
+        }
+    }
+
+    fun testPerformanceManagerReadsPreloadingTime() {
+        val measurements = withPreloadingTimeProperty("12345") { initializationMeasurements() }
+        val measurement = measurements.filterIsInstance<ClassPreloadingMeasurement>().single()
+        assertTrue(measurement.render(), measurement.render().contains("12345 ms"))
+        assertEquals(1, measurements.filterIsInstance<JvmStartupMeasurement>().size)
+    }
+
+    fun testPerformanceManagerSkipsStartupWithoutPreloader() {
+        // Without the preloader, the JVM may have been started long before the compilation, e.g. in the daemon
+        val measurements = withPreloadingTimeProperty(null) { initializationMeasurements() }
+        assertTrue(measurements.filterIsInstance<ClassPreloadingMeasurement>().isEmpty())
+        assertTrue(measurements.filterIsInstance<JvmStartupMeasurement>().isEmpty())
+    }
+
+    private fun initializationMeasurements(): List<PerformanceMeasurement> {
+        try {
+            val manager = object : CommonCompilerPerformanceManager("Test") {}
+            manager.enableCollectingPerformanceStatistics()
+            manager.notifyCompilerInitialized(0, 0, "test")
+            return manager.getMeasurementResults()
+        } finally {
+            PerformanceCounter.setTimeCounterEnabled(false)
+        }
+    }
+
+    private fun <T> withPreloadingTimeProperty(value: String?, block: () -> T): T {
+        val previous = System.getProperty(Preloader.PRELOADING_TIME_PROPERTY)
+        setPreloadingTimeProperty(value)
+        try {
+            return block()
+        } finally {
+            setPreloadingTimeProperty(previous)
+        }
+    }
+
+    private fun setPreloadingTimeProperty(value: String?) {
+        if (value != null) {
+            System.setProperty(Preloader.PRELOADING_TIME_PROPERTY, value)
+        } else {
+            System.clearProperty(Preloader.PRELOADING_TIME_PROPERTY)
+        }
+    }
+
+    private fun preload(jars: List<File>, names: Collection<String>, threads: Int): List<String> {
+        val handler = RecordingHandler()
+        val classLoader = ClassPreloadingUtils.preloadClasses(jars, Preloader.DEFAULT_CLASS_NUMBER_ESTIMATE, null, null, handler, threads)
+        for (name in names.sorted()) {
+            if (name.endsWith(".class")) {
+                classLoader.loadClass(name.removeSuffix(".class").replace('/', '.'))
+            } else {
+                val contents = classLoader.getResources(name).toList().map { url -> url.openStream().use { String(it.readBytes()) } }
+                handler.events += "resources $name: ${contents.joinToString(",")}"
+            }
+        }
+        return handler.events
+    }
+
+    private class RecordingHandler : ClassHandler() {
+        val events = mutableListOf<String>()
+
+        override fun instrument(resourceName: String, data: ByteArray): ByteArray {
+            events += "instrument $resourceName ${data.contentHashCode()}"
+            return data
+        }
+
+        override fun beforeDefineClass(name: String, sizeInBytes: Int) {
+            events += "beforeDefineClass $name $sizeInBytes"
+        }
+
+        override fun afterDefineClass(name: String) {
+            events += "afterDefineClass $name"
+        }
+
+        override fun beforeLoadJar(jarFile: File) {
+            events += "beforeLoadJar ${jarFile.name}"
+        }
+
+        override fun afterLoadJar(jarFile: File) {
+            events += "afterLoadJar ${jarFile.name}"
+        }
+    }
+
+    private fun createJar(name: String, entries: Map<String, ByteArray>): File {
+        val file = File(tmpdir, name)
+        ZipOutputStream(file.outputStream()).use { zip ->
+            for ((entryName, bytes) in entries) {
+                zip.putNextEntry(ZipEntry(entryName))
+                zip.write(bytes)
+                zip.closeEntry()
+            }
+        }
+        return file
+    }
+
+    private fun classBytes(internalName: String): ByteArray =
+        ClassWriter(0).apply {
+            visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, internalName, null, "java/lang/Object", null)
+            visitEnd()
+        }.toByteArray()
+
+    private fun ByteArray.replace(old: ByteArray, new: ByteArray): ByteArray {
+        val result = copyOf()
+        for (start in 0..size - old.size) {
+            if (old.indices.all { this[start + it] == old[it] }) {
+                new.copyInto(result, start)
+            }
+        }
+        return result
+    }
+
+    companion object {
+        private const val CLASS_COUNT = 50
+        private const val RESOURCE_COUNT = 200
+
+        // Names of the same length, so that the second one can be replaced with the first one in the written jar
+        private const val DUPLICATE_NAME = "duplicate/a.txt"
+        private const val DUPLICATE_PLACEHOLDER_NAME = "duplicate/b.txt"
+    }
+}
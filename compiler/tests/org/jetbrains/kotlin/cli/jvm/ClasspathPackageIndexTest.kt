@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm
+
+import org.jetbrains.kotlin.cli.jvm.index.ClasspathPackageIndex
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.File
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class ClasspathPackageIndexTest : TestCaseWithTmpdir() {
+    private fun writeJar(fileName: String, vararg entries: String): File {
+        val file = File(tmpdir, fileName)
+        ZipOutputStream(file.outputStream()).use { zos ->
+            for (name in entries) {
+                zos.putNextEntry(ZipEntry(name))
+            }
+        }
+        return file
+    }
+
+    fun testPackagesAndClasses() {
+        val jar = writeJar(
+            "a.jar",
+            "META-INF/MANIFEST.MF", "a/b/C.class", "a/b/C\$D.class", "a/b/E\$F.class", "a/b/H.kotlin_metadata", "a/res/data.txt", "G.class"
+        )
+        val content = ClasspathPackageIndex.load(File(tmpdir, "index")).getJarContent(jar.path)!!
+
+        assertTrue(content.hasPackage(""))
+        assertTrue(content.hasPackage("a"))
+        assertTrue(content.hasPackage("a/b"))
+        assertTrue(content.hasPackage("a/res"))
+        assertFalse(content.hasPackage("b"))
+        assertFalse(content.hasPackage("a/b/C"))
+
+        assertTrue(content.mayHaveClass("a/b", "C"))
+        assertTrue(content.mayHaveClass("a/b", "E"))
+        assertTrue(content.mayHaveClass("a/b", "E\$F"))
+        assertTrue(content.mayHaveClass("", "G"))
+        assertTrue(content.mayHaveClass("a/b", "H"))
+        assertFalse(content.mayHaveClass("a/b", "D"))
+        assertFalse(content.mayHaveClass("a", "C"))
+    }
+
+    fun testSavedIndexIsReused() {
+        val jar = writeJar("a.jar", "a/B.class")
+        val storage = File(tmpdir, "index")
+        ClasspathPackageIndex.load(storage).apply {
+            getJarContent(jar.path)
+            save()
+        }
+
+        // Corrupt the jar keeping its size and modification time, so it can only be read from the index
+        val lastModified = jar.lastModified()
+        jar.writeBytes(ByteArray(jar.length().toInt()))
+        jar.setLastModified(lastModified)
+
+        val content = ClasspathPackageIndex.load(storage).getJarContent(jar.path)!!
+        assertTrue(content.hasPackage("a"))
+        assertTrue(content.mayHaveClass("a", "B"))
+    }
+
+    fun testChangedJarIsReindexed() {
+        val jar = writeJar("a.jar", "a/B.class")
+        val storage = File(tmpdir, "index")
+        ClasspathPackageIndex.load(storage).apply {
+            getJarContent(jar.path)
+            save()
+        }
+
+        writeJar("a.jar", "a/B.class", "c/D.class")
+        jar.setLastModified(jar.lastModified() + 2000)
+
+        val content = ClasspathPackageIndex.load(storage).getJarContent(jar.path)!!
+        assertTrue(content.hasPackage("c"))
+        assertTrue(content.mayHaveClass("c", "D"))
+    }
+
+    fun testMissingJar() {
+        assertNull(ClasspathPackageIndex.load(File(tmpdir, "index")).getJarContent(File(tmpdir, "missing.jar").path))
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import org.jetbrains.kotlin.codegen.optimization.common.BasicBlockFrames
+import org.jetbrains.kotlin.codegen.optimization.common.BasicBlockMethodAnalyzer
+import org.jetbrains.kotlin.codegen.optimization.common.MethodAnalyzer
+import org.jetbrains.kotlin.codegen.optimization.common.OptimizationBasicInterpreter
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.org.objectweb.asm.ClassReader
+import org.jetbrains.org.objectweb.asm.tree.ClassNode
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue
+import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
+
+class BasicBlockMethodAnalyzerTest : CodegenTestCase() {
+    fun testStraightLineMethod() {
+        val method = generateMethod(
+            """
+                fun test(a: Int, b: Long, s: String): String {
+                    val c = a * 2 + b
+                    val t = s + c
+                    println(t)
+                    return t.substring(1) + a.toString()
+                }
+            """
+        )
+        assertEquals(1, BasicBlockMethodAnalyzer.countBasicBlocks(method))
+        checkFrames(method)
+    }
+
+    fun testBranchyMethod() {
+        val method = generateMethod(
+            """
+                fun test(a: Int, s: String?, list: List<Any>): Any? {
+                    var result: Any? = null
+                    for (x in list) {
+                        result = when (x) {
+                            is String -> if (x.length > a) x else null
+                            is Int -> when (x) { 0 -> "zero"; 1 -> 1L; 2 -> 2.0; 10 -> s; else -> x }
+                            else -> continue
+                        }
+                        if (result == null) break
+                    }
+                    when (s) {
+                        "a" -> return 1
+                        "b", "c" -> return result
+                    }
+                    try {
+                        result = s!!.toInt() / a
+                    } catch (e: NumberFormatException) {
+                        return e
+                    } catch (e: ArithmeticException) {
+                        throw IllegalStateException(e)
+                    } finally {
+                        println(result)
+                    }
+                    var i = 0
+                    do { i += a } while (i < 100 && s != null)
+                    return result ?: i
+                }
+            """
+        )
+        assertTrue(BasicBlockMethodAnalyzer.countBasicBlocks(method) > 10)
+        checkFrames(method)
+    }
+
+    private fun generateMethod(text: String): MethodNode {
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.JDK_ONLY)
+        myFiles = CodegenTestFiles.create("file.kt", text, myEnvironment!!.project)
+
+        val classFile = generateClassesInFile().asList().single { it.relativePath == "FileKt.class" }
+        val classNode = ClassNode()
+        ClassReader(classFile.asByteArray()).accept(classNode, ClassReader.SKIP_FRAMES)
+        return classNode.methods.single { it.name == "test" }
+    }
+
+    private fun checkFrames(method: MethodNode) {
+        val expected = MethodAnalyzer("FileKt", method, OptimizationBasicInterpreter()).analyze()
+        val insns = method.instructions.toArray()
+
+        // in the order of instructions, as the frames are used by optimizations
+        val frames = BasicBlockMethodAnalyzer("FileKt", method, OptimizationBasicInterpreter()).analyze()
+        assertEquals(insns.size, frames.size)
+        checkFrames(expected, frames, insns.indices)
+
+        // in the reverse order, so that every frame is computed from the beginning of its block
+        checkFrames(expected, frames, insns.indices.reversed())
+
+        // frames returned before are not changed by the following requests
+        val returned = insns.indices.map { frames.getFrame(it) }
+        for (index in insns.indices) {
+            assertFramesEqual(index, expected[index], returned[index])
+        }
+    }
+
+    private fun checkFrames(expected: Array<Frame<BasicValue>?>, frames: BasicBlockFrames<BasicValue>, order: Iterable<Int>) {
+        for (index in order) {
+            assertEquals(expected[index] != null, frames.isReachable(index))
+            assertFramesEqual(index, expected[index], frames.getFrame(index))
+        }
+    }
+
+    private fun assertFramesEqual(index: Int, expected: Frame<BasicValue>?, actual: Frame<BasicValue>?) {
+        assertEquals("Frame at #$index", expected?.render(), actual?.render())
+    }
+
+    private fun Frame<BasicValue>.render(): String {
+        val locals = (0 until locals).map { getLocal(it) }
+        val stack = (0 until stackSize).map { getStack(it) }
+        return "locals: $locals, stack: $stack"
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import com.intellij.openapi.vfs.impl.jar.CoreJarFileSystem
+import com.intellij.openapi.vfs.local.CoreLocalFileSystem
+import com.intellij.testFramework.LightVirtualFile
+import org.jetbrains.kotlin.codegen.inline.ClassFileStamp
+import org.jetbrains.kotlin.codegen.inline.SharedInlineCache
+import org.jetbrains.kotlin.codegen.inline.WeightedLruCache
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.File
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class InlineCacheTest : TestCaseWithTmpdir() {
+    fun testValuesAreEvictedWhenTotalWeightExceedsMaximum() {
+        val cache = stringCache(maxWeight = 10)
+        cache.putIfAbsent("a", "aaa")
+        cache.putIfAbsent("b", "bbb")
+        cache.putIfAbsent("c", "ccc")
+        assertEquals(listOf("aaa", "bbb", "ccc"), listOf("a", "b", "c").map { cache[it] })
+
+        // 12 > 10, so the oldest entry is evicted
+        cache.putIfAbsent("d", "ddd")
+        assertNull(cache["a"])
+        assertEquals(listOf("bbb", "ccc", "ddd"), listOf("b", "c", "d").map { cache[it] })
+
+        // Both "b" and "c" have to be evicted to fit the new value
+        cache.putIfAbsent("e", "eeeee")
+        assertNull(cache["b"])
+        assertNull(cache["c"])
+        assertEquals(listOf("ddd", "eeeee"), listOf("d", "e").map { cache[it] })
+    }
+
+    fun testLeastRecentlyUsedValuesAreEvictedFirst() {
+        val cache = stringCache(maxWeight = 9)
+        cache.putIfAbsent("a", "aaa")
+        cache.putIfAbsent("b", "bbb")
+        cache.putIfAbsent("c", "ccc")
+        cache["a"]
+
+        cache.putIfAbsent("d", "ddd")
+        assertNull(cache["b"])
+        assertEquals("aaa", cache["a"])
+
+        cache.putIfAbsent("e", "eee")
+        assertNull(cache["c"])
+        assertEquals(listOf("aaa", "ddd", "eee"), listOf("a", "d", "e").map { cache[it] })
+    }
+
+    fun testValuesHeavierThanCacheAreNotStored() {
+        val cache = stringCache(maxWeight = 4)
+        cache.putIfAbsent("a", "aaa")
+        assertEquals("bbbbb", cache.putIfAbsent("b", "bbbbb"))
+        assertNull(cache["b"])
+        assertEquals("aaa", cache["a"])
+    }
+
+    fun testExistingValuesAreKept() {
+        val cache = stringCache(maxWeight = 6)
+        cache.putIfAbsent("a", "aaa")
+        assertEquals("aaa", cache.putIfAbsent("a", "xxx"))
+        // The weight of the rejected value isn't accounted, so another value still fits
+        cache.putIfAbsent("b", "bbb")
+        assertEquals(listOf("aaa", "bbb"), listOf("a", "b").map { cache[it] })
+    }
+
+    fun testGetOrPutCountsHitsAndMisses() {
+        val cache = stringCache(maxWeight = 100)
+        var computations = 0
+        repeat(3) { cache.getOrPut("a") { computations++; "aaa" } }
+        cache.getOrPut("b") { computations++; "bbb" }
+        assertEquals(2, computations)
+        assertEquals(2L, cache.hitCount)
+        assertEquals(2L, cache.missCount)
+    }
+
+    fun testSharedCacheEntriesAreInvalidatedWhenClassFileChanges() {
+        val classFile = File(tmpdir, "A.class").apply { writeBytes(byteArrayOf(1, 2, 3)) }
+        val fileSystem = CoreLocalFileSystem()
+        val stamp = ClassFileStamp.of(fileSystem.findFileByIoFile(classFile)!!)!!
+        val cache = SharedInlineCache(1L shl 20)
+        cache.classBytes.putIfAbsent(stamp, classFile.readBytes())
+
+        assertEquals(stamp, ClassFileStamp.of(fileSystem.findFileByIoFile(classFile)!!))
+        assertNotNull(cache.classBytes[ClassFileStamp.of(fileSystem.findFileByIoFile(classFile)!!)!!])
+
+        classFile.writeBytes(byteArrayOf(4, 5, 6, 7))
+        classFile.setLastModified(classFile.lastModified() + 2000)
+        val newStamp = ClassFileStamp.of(fileSystem.findFileByIoFile(classFile)!!)!!
+        assertFalse(stamp == newStamp)
+        assertNull(cache.classBytes[newStamp])
+    }
+
+    fun testSharedCacheEntriesAreInvalidatedWhenJarIsRebuiltWithSameEntries() {
+        val jar = File(tmpdir, "lib.jar")
+        writeJar(jar, byteArrayOf(1, 2, 3))
+        val stamp = jarEntryStamp(jar)
+        val cache = SharedInlineCache(1L shl 20)
+        cache.classBytes.putIfAbsent(stamp, byteArrayOf(1, 2, 3))
+        assertNotNull(cache.classBytes[jarEntryStamp(jar)])
+
+        // Same entry time stamp and size, as in reproducible builds, but another content
+        val jarTimeStamp = jar.lastModified()
+        writeJar(jar, byteArrayOf(4, 5, 6))
+        jar.setLastModified(jarTimeStamp + 2000)
+        val newStamp = jarEntryStamp(jar)
+        assertEquals(stamp.path, newStamp.path)
+        assertFalse(stamp == newStamp)
+        assertNull(cache.classBytes[newStamp])
+    }
+
+    fun testInMemoryFilesAreNotIdentified() {
+        assertNull(ClassFileStamp.of(LightVirtualFile("A.class")))
+    }
+
+    private fun stringCache(maxWeight: Long): WeightedLruCache<String, String> =
+        WeightedLruCache(maxWeight) { it.length.toLong() }
+
+    private fun jarEntryStamp(jar: File): ClassFileStamp =
+        ClassFileStamp.of(CoreJarFileSystem().findFileByPath("${jar.path}!/test/A.class")!!)!!
+
+    private fun writeJar(jar: File, classBytes: ByteArray) {
+        ZipOutputStream(jar.outputStream()).use { zip ->
+            zip.putNextEntry(ZipEntry("test/A.class").apply { time = ENTRY_TIME })
+            zip.write(classBytes)
+            zip.closeEntry()
+        }
+    }
+
+    companion object {
+        private const val ENTRY_TIME = 1_500_000_000_000L
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import org.jetbrains.kotlin.codegen.optimization.*
+import org.jetbrains.kotlin.codegen.optimization.boxing.PopBackwardPropagationTransformer
+import org.jetbrains.kotlin.codegen.optimization.boxing.StackPeepholeOptimizationsTransformer
+import org.jetbrains.kotlin.codegen.optimization.common.MethodAnalysisCache
+import org.jetbrains.kotlin.codegen.optimization.transformer.CompositeMethodTransformer
+import org.jetbrains.kotlin.config.CompilerConfiguration
+import org.jetbrains.kotlin.config.JVMConfigurationKeys
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.org.objectweb.asm.ClassReader
+import org.jetbrains.org.objectweb.asm.tree.ClassNode
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import org.jetbrains.org.objectweb.asm.util.Textifier
+import org.jetbrains.org.objectweb.asm.util.TraceMethodVisitor
+import java.io.PrintWriter
+import java.io.StringWriter
+
+class MethodAnalysisCacheTest : CodegenTestCase() {
+    override fun updateConfiguration(configuration: CompilerConfiguration) {
+        super.updateConfiguration(configuration)
+        // The methods are optimized by the test itself
+        configuration.put(JVMConfigurationKeys.DISABLE_OPTIMIZATION, true)
+    }
+
+    fun testOptimizationsWithSharedAnalysesAreSameAsWithout() {
+        val methods = generateMethods(
+            """
+                fun checkCasts(a: Any, list: List<Any>): Int {
+                    val s = a as String
+                    var result = (a as String).length + s.length
+                    for (x in list) {
+                        if (x is String) result += (x as String).length
+                        if (x is Int && x as Int > 0) result += x
+                    }
+                    return result
+                }
+
+                fun deadCode(a: Int, s: String?): Any? {
+                    var result: Any? = null
+                    if (true) {
+                        result = s
+                    } else {
+                        result = a
+                    }
+                    try {
+                        result = s!!.toInt() / a
+                    } catch (e: NumberFormatException) {
+                        return e
+                    } finally {
+                        println(result)
+                    }
+                    while (false) { result = a }
+                    return result ?: a
+                }
+
+                fun capturedVars(list: List<Int>): Int {
+                    var sum = 0
+                    var count = 0
+                    list.forEach { sum += it; count++ }
+                    run { sum *= 2 }
+                    return sum + count
+                }
+
+                fun boxing(a: Int, b: Long?): Any {
+                    val x: Any = a
+                    val y: Comparable<Int> = a + 1
+                    val z = b ?: 0L
+                    return if (y.compareTo(a) > 0) x else z
+                }
+            """
+        )
+        assertEquals(4, methods.size)
+
+        for (method in methods) {
+            val expected = optimize(method, analysisCache = null)
+            val actual = optimize(method, MethodAnalysisCache())
+            assertEquals("Method ${method.name}", expected, actual)
+        }
+    }
+
+    private fun generateMethods(text: String): List<MethodNode> {
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.JDK_ONLY)
+        myFiles = CodegenTestFiles.create("file.kt", text, myEnvironment!!.project)
+
+        val classFile = generateClassesInFile().asList().single { it.relativePath == "FileKt.class" }
+        val classNode = ClassNode()
+        ClassReader(classFile.asByteArray()).accept(classNode, ClassReader.SKIP_FRAMES)
+        return classNode.methods.filter { it.name != "<clinit>" }
+    }
+
+    // The same transformers as in OptimizationMethodVisitor except the ones which need the generation state
+    private fun optimize(original: MethodNode, analysisCache: MethodAnalysisCache?): String {
+        val method = MethodNode(original.access, original.name, original.desc, original.signature, null)
+        original.accept(method)
+
+        CompositeMethodTransformer(
+            listOf(
+                CapturedVarsOptimizationMethodTransformer(),
+                RedundantCheckCastEliminationMethodTransformer(analysisCache),
+                ConstantConditionEliminationMethodTransformer(),
+                StackPeepholeOptimizationsTransformer(),
+                PopBackwardPropagationTransformer(),
+                DeadCodeEliminationMethodTransformer(analysisCache),
+                RedundantGotoMethodTransformer(),
+                RedundantNopsCleanupMethodTransformer(),
+                DeadCodeEliminationMethodTransformer(analysisCache)
+            ),
+            analysisCache
+        ).transform("FileKt", method)
+
+        val textifier = Textifier()
+        method.accept(TraceMethodVisitor(textifier))
+        return StringWriter().also { textifier.print(PrintWriter(it)) }.toString()
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.storage;
+
+import kotlin.jvm.functions.Function1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class StripedLockStorageManagerTest extends StorageManagerTest {
+    @Override
+    protected StorageManager createStorageManager() {
+        return new StripedLockStorageManager("StripedLockStorageManagerTest");
+    }
+
+    public void testConcurrentNestedComputationsAgree() throws Exception {
+        StorageManager m = createStorageManager();
+        class C {
+            final MemoizedFunctionToNotNull<Integer, Long> fib = m.createMemoizedFunction(new Function1<Integer, Long>() {
+                @Override
+                public Long invoke(Integer n) {
+                    return n < 2 ? (long) n : (fib.invoke(n - 1) + fib.invoke(n - 2)) % 1000000007L;
+                }
+            });
+        }
+        C c = new C();
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int shift = i;
+                results.add(executor.submit(() -> {
+                    long sum = 0;
+                    for (int k = 0; k < 2000; k++) {
+                        sum += c.fib.invoke((k * 7 + shift * 13) % 500);
+                    }
+                    return sum;
+                }));
+            }
+
+            Long expected = null;
+            for (Future<Long> result : results) {
+                if (expected == null) expected = result.get();
+                assertEquals(expected, result.get());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static final int THREADS = 8;
+    private static final int KEYS = 300;
+
+    // Two stripes make threads holding a stripe run into busy stripes and compute values without a lock
+    private static StripedLockStorageManager createContendedStorageManager() {
+        return new StripedLockStorageManager("StripedLockStorageManagerTest", 2);
+    }
+
+    private static final class Node {
+        final Node left;
+        final Node right;
+
+        Node(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    public void testConcurrentMemoizedFunctionReturnsSameValues() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            StorageManager m = createContendedStorageManager();
+            class C {
+                final MemoizedFunctionToNotNull<Integer, Node> node = m.createMemoizedFunction(new Function1<Integer, Node>() {
+                    @Override
+                    public Node invoke(Integer k) {
+                        return k == 0 ? new Node(null, null) : new Node(node.invoke(k - 1), node.invoke(k / 2));
+                    }
+                });
+            }
+            C c = new C();
+
+            List<Node[]> results = runConcurrently(shift -> {
+                Node[] nodes = new Node[KEYS];
+                for (int i = 0; i < KEYS; i++) {
+                    int k = (i * 7 + shift * 31) % KEYS;
+                    nodes[k] = c.node.invoke(k);
+                }
+                return nodes;
+            });
+
+            assertSameValues(results, k -> c.node.invoke(k));
+        }
+    }
+
+    public void testConcurrentLazyValuesReturnSameValues() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            StorageManager m = createContendedStorageManager();
+            List<NotNullLazyValue<Node>> values = new ArrayList<>();
+            for (int i = 0; i < KEYS; i++) {
+                int k = i;
+                values.add(m.createLazyValue(
+                        () -> k == 0 ? new Node(null, null) : new Node(values.get(k - 1).invoke(), values.get(k / 2).invoke())
+                ));
+            }
+
+            List<Node[]> results = runConcurrently(shift -> {
+                Node[] nodes = new Node[KEYS];
+                for (int i = 0; i < KEYS; i++) {
+                    int k = (i * 7 + shift * 31) % KEYS;
+                    nodes[k] = values.get(k).invoke();
+                }
+                return nodes;
+            });
+
+            assertSameValues(results, k -> values.get(k).invoke());
+        }
+    }
+
+    // A thread holding a stripe computes the value of a memoized function, while another thread, which holds another stripe,
+    // finds the stripe busy and computes the value without a lock. Both threads should get the same value.
+    public void testLockFreeComputationOfMemoizedFunctionAgreesWithComputationUnderStripe() throws Exception {
+        StorageManager m = createContendedStorageManager();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadLocal<Boolean> blocking = ThreadLocal.withInitial(() -> false);
+        class C {
+            final MemoizedFunctionToNotNull<Integer, Node> node = m.createMemoizedFunction(new Function1<Integer, Node>() {
+                @Override
+                public Node invoke(Integer k) {
+                    if (k % 2 == 1) return new Node(node.invoke(k - 1), null);
+                    if (blocking.get()) {
+                        started.countDown();
+                        await(release);
+                    }
+                    return new Node(null, null);
+                }
+            });
+        }
+        C c = new C();
+
+        // Inputs k and k + 1 are guarded by different stripes
+        int functionHash = System.identityHashCode(c.node);
+        int k = 0;
+        while (StripedLockStorageManager.stripeIndex(StripedLockStorageManager.inputHash(functionHash, k), 2) ==
+               StripedLockStorageManager.stripeIndex(StripedLockStorageManager.inputHash(functionHash, k + 1), 2)) {
+            k += 2;
+        }
+        int input = k;
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Node> underStripe = executor.submit(() -> {
+                blocking.set(true);
+                return c.node.invoke(input);
+            });
+            started.await();
+            Node lockFree = c.node.invoke(input + 1).left;
+            release.countDown();
+
+            assertSame(lockFree, underStripe.get());
+            assertSame(lockFree, c.node.invoke(input));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testLockFreeComputationOfLazyValueAgreesWithComputationUnderStripe() throws Exception {
+        StorageManager m = createContendedStorageManager();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadLocal<Boolean> blocking = ThreadLocal.withInitial(() -> false);
+        NotNullLazyValue<Node> value = m.createLazyValue(() -> {
+            if (blocking.get()) {
+                started.countDown();
+                await(release);
+            }
+            return new Node(null, null);
+        });
+
+        NotNullLazyValue<Node> dependent;
+        do {
+            dependent = m.createLazyValue(() -> new Node(value.invoke(), null));
+        }
+        while (StripedLockStorageManager.stripeIndex(System.identityHashCode(dependent), 2) ==
+               StripedLockStorageManager.stripeIndex(System.identityHashCode(value), 2));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Node> underStripe = executor.submit(() -> {
+                blocking.set(true);
+                return value.invoke();
+            });
+            started.await();
+            Node lockFree = dependent.invoke().left;
+            release.countDown();
+
+            assertSame(lockFree, underStripe.get());
+            assertSame(lockFree, value.invoke());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testComputeExcludesLazyComputations() throws Exception {
+        StorageManager m = createStorageManager();
+        AtomicBoolean inCompute = new AtomicBoolean();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        NotNullLazyValue<String> value = m.createLazyValue(() -> {
+            if (inCompute.get()) overlapped.set(true);
+            return "value";
+        });
+
+        CountDownLatch computeStarted = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> compute = executor.submit(() -> m.compute(() -> {
+                inCompute.set(true);
+                computeStarted.countDown();
+                try {
+                    Thread.sleep(200);
+                }
+                catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                inCompute.set(false);
+                return null;
+            }));
+            computeStarted.await();
+            Future<String> lazy = executor.submit(() -> value.invoke());
+
+            assertEquals("value", lazy.get());
+            compute.get();
+            assertFalse("Lazy value was computed while compute() was running", overlapped.get());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static <T> List<T> runConcurrently(Function1<Integer, T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CyclicBarrier start = new CyclicBarrier(THREADS);
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int shift = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.invoke(shift);
+                }));
+            }
+
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertSameValues(List<Node[]> results, Function1<Integer, Node> get) {
+        for (int k = 0; k < KEYS; k++) {
+            Node expected = get.invoke(k);
+            for (Node[] nodes : results) {
+                assertSame("Different values for key " + k, expected, nodes[k]);
+            }
+            if (k > 0) {
+                assertSame("Value for key " + k + " refers to a dropped value", get.invoke(k - 1), expected.left);
+                assertSame("Value for key " + k + " refers to a dropped value", get.invoke(k / 2), expected.right);
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.jetbrains.kotlin.library
 import org.jetbrains.kotlin.konan.file.File
 import org.jetbrains.kotlin.konan.properties.Properties
 import org.jetbrains.kotlin.konan.properties.propertyList
+import java.nio.ByteBuffer
 
 const val KLIB_PROPERTY_ABI_VERSION = "abi_version"
 const val KLIB_PROPERTY_COMPILER_VERSION = "compiler_version"
@@ -51,6 +52,13 @@ interface IrLibrary {
     fun body(index: Int, fileIndex: Int): ByteArray
     fun file(index: Int): ByteArray
     fun fileCount(): Int
+
+    // The buffer variants may return views of the library content instead of copies, they must not be modified
+    fun irDeclarationBuffer(index: Int, fileIndex: Int): ByteBuffer = ByteBuffer.wrap(irDeclaration(index, fileIndex))
+    fun typeBuffer(index: Int, fileIndex: Int): ByteBuffer = ByteBuffer.wrap(type(index, fileIndex))
+    fun signatureBuffer(index: Int, fileIndex: Int): ByteBuffer = ByteBuffer.wrap(signature(index, fileIndex))
+    fun bodyBuffer(index: Int, fileIndex: Int): ByteBuffer = ByteBuffer.wrap(body(index, fileIndex))
+    fun fileBuffer(index: Int): ByteBuffer = ByteBuffer.wrap(file(index))
 }
 
 val BaseKotlinLibrary.uniqueName: String
@@ -31,9 +31,18 @@ abstract class IrArrayReader(private val buffer: ReadBuffer) {
         buffer.get(result, 0, size)
         return result
     }
+
+    /**
+     * Returns the [id]th item as a view of the underlying [ReadBuffer] rather than a copy, see [ReadBuffer.slice].
+     */
+    fun tableItemBuffer(id: Int): ByteBuffer {
+        val offset = indexToOffset[id]
+        return buffer.slice(offset, indexToOffset[id + 1] - offset)
+    }
 }
 
-class IrArrayFileReader(file: File) : IrArrayReader(ReadBuffer.WeakFileBuffer(file.javaFile()))
+class IrArrayFileReader(file: File, mapped: Boolean = USE_MAPPED_FILE_BUFFERS) :
+    IrArrayReader(fileReadBuffer(file.javaFile(), mapped))
 class IrArrayMemoryReader(bytes: ByteArray) : IrArrayReader(ReadBuffer.MemoryBuffer(bytes))
 
 abstract class IrMultiArrayReader(private val buffer: ReadBuffer) {
@@ -66,12 +75,24 @@ abstract class IrMultiArrayReader(private val buffer: ReadBuffer) {
         return result
     }
 
+    /**
+     * Returns the whole [id]th row, starting with its own offset table, as a view of the underlying [ReadBuffer].
+     * The row can be read with an [IrArrayReader] without copying it.
+     */
+    fun tableItemBuffer(id: Int): ByteBuffer {
+        val offset = indexToOffset[id]
+        return buffer.slice(offset, indexToOffset[id + 1] - offset)
+    }
+
+    private fun columnOffsets(row: Int): IntArray =
+        indexIndexToOffset.getOrPut(row) {
+            readOffsets(indexToOffset[row])
+        }
+
     fun tableItemBytes(row: Int, column: Int): ByteArray {
         val rowOffset = indexToOffset[row]
 
-        val collumnOffsets = indexIndexToOffset.getOrPut(row) {
-            readOffsets(rowOffset)
-        }
+        val collumnOffsets = columnOffsets(row)
 
         val dataOffset = collumnOffsets[column]
         val dataSize = collumnOffsets[column + 1] - dataOffset
@@ -82,9 +103,20 @@ abstract class IrMultiArrayReader(private val buffer: ReadBuffer) {
 
         return result
     }
+
+    /**
+     * Non-copying counterpart of [tableItemBytes] for the item at [column] of [row].
+     * The offsets of the row are read on the first access and cached.
+     */
+    fun tableItemBuffer(row: Int, column: Int): ByteBuffer {
+        val columnOffsets = columnOffsets(row)
+        val dataOffset = columnOffsets[column]
+        return buffer.slice(indexToOffset[row] + dataOffset, columnOffsets[column + 1] - dataOffset)
+    }
 }
 
-class IrMultiArrayFileReader(file: File) : IrMultiArrayReader(ReadBuffer.WeakFileBuffer(file.javaFile()))
+class IrMultiArrayFileReader(file: File, mapped: Boolean = USE_MAPPED_FILE_BUFFERS) :
+    IrMultiArrayReader(fileReadBuffer(file.javaFile(), mapped))
 class IrMultiArrayMemoryReader(bytes: ByteArray) : IrMultiArrayReader(ReadBuffer.MemoryBuffer(bytes))
 
 abstract class IrMultiTableReader<K>(private val buffer: ReadBuffer, private val keyReader: ReadBuffer.() -> K) {
@@ -125,15 +157,19 @@ abstract class IrMultiTableReader<K>(private val buffer: ReadBuffer, private val
         return result
     }
 
+    private fun coordinates(row: Int, id: K): Pair<Int, Int> {
+        val indexToMap = indexToIndexMap.getOrPut(row) {
+            readIndexMap(indexToOffset[row])
+        }
+
+        return indexToMap[id] ?: error("No coordinates found for $id")
+    }
+
     fun tableItemBytes(row: Int, id: K): ByteArray {
 
         val rowOffset = indexToOffset[row]
 
-        val indexToMap = indexToIndexMap.getOrPut(row) {
-            readIndexMap(rowOffset)
-        }
-
-        val coordinates = indexToMap[id] ?: error("No coordinates found for $id")
+        val coordinates = coordinates(row, id)
         val offset = coordinates.first
         val size = coordinates.second
         val result = ByteArray(size)
@@ -141,6 +177,14 @@ abstract class IrMultiTableReader<K>(private val buffer: ReadBuffer, private val
         buffer.get(result, 0, size)
         return result
     }
+
+    /**
+     * Non-copying counterpart of [tableItemBytes] for the item with the key [id] in [row], fails if there's no such key.
+     */
+    fun tableItemBuffer(row: Int, id: K): ByteBuffer {
+        val (offset, size) = coordinates(row, id)
+        return buffer.slice(indexToOffset[row] + offset, size)
+    }
 }
 
 abstract class IrTableReader<K>(private val buffer: ReadBuffer, keyReader: ReadBuffer.() -> K) {
@@ -166,25 +210,34 @@ abstract class IrTableReader<K>(private val buffer: ReadBuffer, keyReader: ReadB
         buffer.get(result, 0, size)
         return result
     }
+
+    /**
+     * Non-copying counterpart of [tableItemBytes] for the item with the key [id], fails if there's no such key.
+     */
+    fun tableItemBuffer(id: K): ByteBuffer {
+        val (offset, size) = indexToOffset[id] ?: error("No coordinates found for $id")
+        return buffer.slice(offset, size)
+    }
 }
 
 val ByteArray.buffer: ByteBuffer get() = ByteBuffer.wrap(this)
 
 fun File.javaFile(): java.io.File = java.io.File(path)
 
-class IndexIrTableFileReader(file: File) : IrTableReader<Long>(ReadBuffer.WeakFileBuffer(file.javaFile()), { long })
+class IndexIrTableFileReader(file: File, mapped: Boolean = USE_MAPPED_FILE_BUFFERS) :
+    IrTableReader<Long>(fileReadBuffer(file.javaFile(), mapped), { long })
 class IndexIrTableMemoryReader(bytes: ByteArray) : IrTableReader<Long>(ReadBuffer.MemoryBuffer(bytes), { long })
 
 data class DeclarationId(val id: Int)
 
-class DeclarationIrTableFileReader(file: File) :
-    IrTableReader<DeclarationId>(ReadBuffer.WeakFileBuffer(file.javaFile()), { DeclarationId(int) })
+class DeclarationIrTableFileReader(file: File, mapped: Boolean = USE_MAPPED_FILE_BUFFERS) :
+    IrTableReader<DeclarationId>(fileReadBuffer(file.javaFile(), mapped), { DeclarationId(int) })
 
 class DeclarationIrTableMemoryReader(bytes: ByteArray) :
     IrTableReader<DeclarationId>(ReadBuffer.MemoryBuffer(bytes), { DeclarationId(int) })
 
-class DeclarationIrMultiTableFileReader(file: File) :
-    IrMultiTableReader<DeclarationId>(ReadBuffer.WeakFileBuffer(file.javaFile()), { DeclarationId(int) })
+class DeclarationIrMultiTableFileReader(file: File, mapped: Boolean = USE_MAPPED_FILE_BUFFERS) :
+    IrMultiTableReader<DeclarationId>(fileReadBuffer(file.javaFile(), mapped), { DeclarationId(int) })
 
 class DeclarationIrMultiTableMemoryReader(bytes: ByteArray) :
     IrMultiTableReader<DeclarationId>(ReadBuffer.MemoryBuffer(bytes), { DeclarationId(int) })
@@ -20,6 +20,7 @@ import org.jetbrains.kotlin.konan.file.File
 import org.jetbrains.kotlin.library.*
 import org.jetbrains.kotlin.konan.properties.Properties
 import org.jetbrains.kotlin.konan.properties.loadProperties
+import java.nio.ByteBuffer
 
 open class BaseKotlinLibraryImpl(
     val access: BaseLibraryAccess<KotlinLibraryLayout>,
@@ -109,6 +110,17 @@ class IrMonoliticLibraryImpl(_access: IrLibraryAccess<IrKotlinLibraryLayout>) :
 
     override fun file(index: Int) = files.tableItemBytes(index)
 
+    override fun irDeclarationBuffer(index: Int, fileIndex: Int) =
+        combinedDeclarations.tableItemBuffer(fileIndex, DeclarationId(index))
+
+    override fun typeBuffer(index: Int, fileIndex: Int) = types.tableItemBuffer(fileIndex, index)
+
+    override fun signatureBuffer(index: Int, fileIndex: Int) = signatures.tableItemBuffer(fileIndex, index)
+
+    override fun bodyBuffer(index: Int, fileIndex: Int) = bodies.tableItemBuffer(fileIndex, index)
+
+    override fun fileBuffer(index: Int) = files.tableItemBuffer(index)
+
     private fun loadIrDeclaration(index: Int, fileIndex: Int) =
         combinedDeclarations.tableItemBytes(fileIndex, DeclarationId(index))
 
@@ -158,36 +170,45 @@ class IrPerFileLibraryImpl(_access: IrLibraryAccess<IrKotlinLibraryLayout>) : Ir
     }
 
     private val fileToDeclarationMap = mutableMapOf<Int, DeclarationIrTableFileReader>()
-    override fun irDeclaration(index: Int, fileIndex: Int): ByteArray {
-        val dataReader = fileToDeclarationMap.getOrPut(fileIndex) {
+    private fun declarationReader(fileIndex: Int): DeclarationIrTableFileReader =
+        fileToDeclarationMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
             DeclarationIrTableFileReader(access.realFiles {
                 it.irDeclarations(fileDirectory)
             })
         }
-        return dataReader.tableItemBytes(DeclarationId(index))
-    }
+
+    override fun irDeclaration(index: Int, fileIndex: Int): ByteArray =
+        declarationReader(fileIndex).tableItemBytes(DeclarationId(index))
+
+    override fun irDeclarationBuffer(index: Int, fileIndex: Int): ByteBuffer =
+        declarationReader(fileIndex).tableItemBuffer(DeclarationId(index))
 
     private val fileToTypeMap = mutableMapOf<Int, IrArrayFileReader>()
-    override fun type(index: Int, fileIndex: Int): ByteArray {
-        val dataReader = fileToTypeMap.getOrPut(fileIndex) {
+    private fun typeReader(fileIndex: Int): IrArrayFileReader =
+        fileToTypeMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
             IrArrayFileReader(access.realFiles {
                 it.irTypes(fileDirectory)
             })
         }
-        return dataReader.tableItemBytes(index)
-    }
 
-    override fun signature(index: Int, fileIndex: Int): ByteArray {
-        val dataReader = fileToTypeMap.getOrPut(fileIndex) {
+    override fun type(index: Int, fileIndex: Int): ByteArray = typeReader(fileIndex).tableItemBytes(index)
+
+    override fun typeBuffer(index: Int, fileIndex: Int): ByteBuffer = typeReader(fileIndex).tableItemBuffer(index)
+
+    private val fileToSignatureMap = mutableMapOf<Int, IrArrayFileReader>()
+    private fun signatureReader(fileIndex: Int): IrArrayFileReader =
+        fileToSignatureMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
             IrArrayFileReader(access.realFiles {
                 it.irSignatures(fileDirectory)
             })
         }
-        return dataReader.tableItemBytes(index)
-    }
+
+    override fun signature(index: Int, fileIndex: Int): ByteArray = signatureReader(fileIndex).tableItemBytes(index)
+
+    override fun signatureBuffer(index: Int, fileIndex: Int): ByteBuffer = signatureReader(fileIndex).tableItemBuffer(index)
 
     private val fileToStringMap = mutableMapOf<Int, IrArrayFileReader>()
     override fun string(index: Int, fileIndex: Int): ByteArray {
@@ -201,15 +222,17 @@ class IrPerFileLibraryImpl(_access: IrLibraryAccess<IrKotlinLibraryLayout>) : Ir
     }
 
     private val fileToBodyMap = mutableMapOf<Int, IrArrayFileReader>()
-    override fun body(index: Int, fileIndex: Int): ByteArray {
-        val dataReader = fileToBodyMap.getOrPut(fileIndex) {
+    private fun bodyReader(fileIndex: Int): IrArrayFileReader =
+        fileToBodyMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
             IrArrayFileReader(access.realFiles {
                 it.irBodies(fileDirectory)
             })
         }
-        return dataReader.tableItemBytes(index)
-    }
+
+    override fun body(index: Int, fileIndex: Int): ByteArray = bodyReader(fileIndex).tableItemBytes(index)
+
+    override fun bodyBuffer(index: Int, fileIndex: Int): ByteBuffer = bodyReader(fileIndex).tableItemBuffer(index)
 
     override fun file(index: Int): ByteArray {
         return access.realFiles {
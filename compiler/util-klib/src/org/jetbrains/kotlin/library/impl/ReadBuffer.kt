@@ -8,6 +8,8 @@ package org.jetbrains.kotlin.library.impl
 import java.io.File
 import java.lang.ref.SoftReference
 import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
 
 sealed class ReadBuffer {
 
@@ -15,6 +17,12 @@ sealed class ReadBuffer {
     abstract fun get(result: ByteArray, offset: Int, length: Int)
     abstract var position: Int
 
+    /**
+     * Returns a view of [length] bytes starting at [offset] which shares the content with this buffer.
+     * Doesn't change the [position].
+     */
+    abstract fun slice(offset: Int, length: Int): ByteBuffer
+
 
     abstract val int: Int
     abstract val long: Long
@@ -28,6 +36,8 @@ sealed class ReadBuffer {
             buffer.get(result, offset, length)
         }
 
+        override fun slice(offset: Int, length: Int): ByteBuffer = buffer.sliceAt(offset, length)
+
         override var position: Int
             get() = buffer.position()
             set(value) { buffer.position(value) }
@@ -43,6 +53,13 @@ sealed class ReadBuffer {
 
     class DirectFileBuffer(file: File) : NIOReader(file.readBytes().buffer)
 
+    /**
+     * Maps the file into memory instead of reading it into the heap, so the content is paged in by the OS on demand
+     * and never has to be re-read after a GC, unlike [WeakFileBuffer].
+     * Note that on Windows a mapped file can't be deleted until the buffer is garbage collected.
+     */
+    class MappedFileBuffer(file: File) : NIOReader(file.map())
+
     class WeakFileBuffer(private val file: File) : ReadBuffer() {
         override val size: Int
             get() = file.length().toInt()
@@ -53,6 +70,9 @@ sealed class ReadBuffer {
             buf.get(result, offset, length)
         }
 
+        // The slice keeps the content strongly reachable until it's dropped
+        override fun slice(offset: Int, length: Int): ByteBuffer = ensureBuffer().sliceAt(offset, length)
+
         override val int: Int
             get(): Int {
                 val buf = ensureBuffer()
@@ -89,4 +109,32 @@ sealed class ReadBuffer {
 
         private var weakBuffer: SoftReference<ByteBuffer> = SoftReference(null)
     }
-}
\ No newline at end of file
+}
+
+private fun ByteBuffer.sliceAt(offset: Int, length: Int): ByteBuffer {
+    val view = duplicate()
+    view.position(offset)
+    view.limit(offset + length)
+    return view.slice()
+}
+
+private fun File.map(): ByteBuffer =
+    FileChannel.open(toPath(), StandardOpenOption.READ).use { channel ->
+        channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+    }
+
+/**
+ * Whether IR file readers may map files into memory, off by default and enabled with `-Dkotlin.klib.ir.mapped.buffers=true`.
+ * Note that on Windows mapped files are locked, which prevents deletion of the extracted temporary klib files.
+ */
+val USE_MAPPED_FILE_BUFFERS: Boolean = System.getProperty("kotlin.klib.ir.mapped.buffers")?.toBoolean() ?: false
+
+/**
+ * Files smaller than this are read into the heap even if [USE_MAPPED_FILE_BUFFERS] is on: a mapping costs a file descriptor
+ * and at least a page of address space, which doesn't pay off for the small per-file tables of most klibs.
+ * Can be overridden with `-Dkotlin.klib.ir.mapped.buffers.threshold=<bytes>`.
+ */
+val MAPPED_FILE_BUFFER_THRESHOLD: Long = System.getProperty("kotlin.klib.ir.mapped.buffers.threshold")?.toLongOrNull() ?: 1024L * 1024L
+
+fun fileReadBuffer(file: File, mapped: Boolean = USE_MAPPED_FILE_BUFFERS): ReadBuffer =
+    if (mapped && file.length() >= MAPPED_FILE_BUFFER_THRESHOLD) ReadBuffer.MappedFileBuffer(file) else ReadBuffer.WeakFileBuffer(file)
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.library.impl
+
+import org.jetbrains.kotlin.library.TopLevelDeclaration
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.file.Files
+
+class IrFileReadersTest {
+    private lateinit var tmpdir: File
+
+    @Before
+    fun setUp() {
+        tmpdir = Files.createTempDirectory("irFileReaders").toFile()
+    }
+
+    @After
+    fun tearDown() {
+        tmpdir.deleteRecursively()
+    }
+
+    @Test
+    fun `slices of all buffers have the content of the file at the given offset`() {
+        val bytes = ByteArray(1000) { (it * 31).toByte() }
+        val file = writeFile("data", bytes)
+
+        for (buffer in allBuffers(file)) {
+            val description = buffer.javaClass.simpleName
+            buffer.position = 12
+            for ((offset, length) in listOf(0 to 0, 0 to 1000, 3 to 17, 999 to 1, 1000 to 0)) {
+                val slice = buffer.slice(offset, length)
+                assertEquals(description, 0, slice.position())
+                assertEquals(description, length, slice.remaining())
+                assertArrayEquals(description, bytes.copyOfRange(offset, offset + length), slice.toByteArray())
+            }
+            assertEquals("$description: slicing shouldn't move the buffer", 12, buffer.position)
+            assertEquals(description, ByteBuffer.wrap(bytes, 12, 4).int, buffer.int)
+        }
+    }
+
+    @Test
+    fun `mapped and copied array readers return the same items`() {
+        val items = listOf(bytes(5), ByteArray(0), bytes(1), bytes(300))
+        val file = writeFile("array", IrMemoryArrayWriter(items).writeIntoMemory())
+
+        for (buffer in allBuffers(file)) {
+            val reader = object : IrArrayReader(buffer) {}
+            assertEquals(items.size, reader.entryCount())
+            for ((id, item) in items.withIndex()) {
+                assertArrayEquals(item, reader.tableItemBuffer(id).toByteArray())
+                assertArrayEquals(item, reader.tableItemBytes(id))
+            }
+        }
+    }
+
+    @Test
+    fun `mapped and copied multi array readers return the same rows and items`() {
+        val rows = listOf(listOf(bytes(3), bytes(7)), listOf(), listOf(ByteArray(0), bytes(20), bytes(1)))
+        val rowBytes = rows.map { IrMemoryArrayWriter(it).writeIntoMemory() }
+        val file = writeFile("multiArray", IrMemoryArrayWriter(rowBytes).writeIntoMemory())
+
+        for (buffer in allBuffers(file)) {
+            val reader = object : IrMultiArrayReader(buffer) {}
+            for ((row, items) in rows.withIndex()) {
+                val rowBuffer = reader.tableItemBuffer(row)
+                assertArrayEquals(rowBytes[row], rowBuffer.toByteArray())
+                val rowReader = object : IrArrayReader(ReadBuffer.MemoryBuffer(rowBuffer.toByteArray())) {}
+                for ((column, item) in items.withIndex()) {
+                    assertArrayEquals(item, reader.tableItemBuffer(row, column).toByteArray())
+                    assertArrayEquals(item, reader.tableItemBytes(row, column))
+                    assertArrayEquals(item, rowReader.tableItemBuffer(column).toByteArray())
+                }
+            }
+        }
+    }
+
+    @Test
+    fun `mapped and copied table readers return the same items`() {
+        val rows = listOf(
+            listOf(TopLevelDeclaration(7, "a", bytes(4)), TopLevelDeclaration(2, "b", bytes(9))),
+            listOf(TopLevelDeclaration(2, "c", ByteArray(0)), TopLevelDeclaration(5, "d", bytes(33)))
+        )
+        val rowBytes = rows.map { IrMemoryDeclarationWriter(it).writeIntoMemory() }
+        val multiTableFile = writeFile("multiTable", IrMemoryArrayWriter(rowBytes).writeIntoMemory())
+        val tableFiles = rowBytes.mapIndexed { row, bytes -> writeFile("table$row", bytes) }
+
+        for ((multiTableBuffer, tableBuffers) in allBuffers(multiTableFile).zip(tableFiles.map(::allBuffers).transpose())) {
+            val multiTableReader = object : IrMultiTableReader<DeclarationId>(multiTableBuffer, { DeclarationId(int) }) {}
+            for ((row, declarations) in rows.withIndex()) {
+                val tableReader = object : IrTableReader<DeclarationId>(tableBuffers[row], { DeclarationId(int) }) {}
+                // Reverse order, so that the items are not read sequentially
+                for (declaration in declarations.reversed()) {
+                    val id = DeclarationId(declaration.id)
+                    assertArrayEquals(declaration.bytes, multiTableReader.tableItemBuffer(row, id).toByteArray())
+                    assertArrayEquals(declaration.bytes, multiTableReader.tableItemBytes(row, id))
+                    assertArrayEquals(declaration.bytes, tableReader.tableItemBuffer(id).toByteArray())
+                    assertArrayEquals(declaration.bytes, tableReader.tableItemBytes(id))
+                }
+            }
+        }
+    }
+
+    @Test
+    fun `small files are not mapped`() {
+        val file = writeFile("small", bytes(10))
+        assertEquals(ReadBuffer.WeakFileBuffer::class.java, fileReadBuffer(file, mapped = false).javaClass)
+        if (MAPPED_FILE_BUFFER_THRESHOLD > file.length()) {
+            assertEquals(ReadBuffer.WeakFileBuffer::class.java, fileReadBuffer(file, mapped = true).javaClass)
+        }
+    }
+
+    private fun allBuffers(file: File): List<ReadBuffer> = listOf(
+        ReadBuffer.MemoryBuffer(file.readBytes()),
+        ReadBuffer.DirectFileBuffer(file),
+        ReadBuffer.WeakFileBuffer(file),
+        ReadBuffer.MappedFileBuffer(file)
+    )
+
+    private fun writeFile(name: String, bytes: ByteArray): File = File(tmpdir, name).apply { writeBytes(bytes) }
+
+    private fun bytes(size: Int): ByteArray = ByteArray(size) { (size + it).toByte() }
+
+    private fun ByteBuffer.toByteArray(): ByteArray = ByteArray(remaining()).also { duplicate().get(it) }
+
+    private fun <T> List<List<T>>.transpose(): List<List<T>> = first().indices.map { column -> map { it[column] } }
+}
@@ -0,0 +1,841 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.storage;
+
+import kotlin.Unit;
+import kotlin.jvm.functions.Function0;
+import kotlin.jvm.functions.Function1;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.utils.ExceptionUtilsKt;
+import org.jetbrains.kotlin.utils.WrappedValues;
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A storage manager which guards memoized functions and lazy values with a fixed set of striped locks instead of
+ * the single lock used by {@link LockBasedStorageManager}, so that unrelated computations may run in parallel.
+ *
+ * To stay deadlock-free, a thread blocks on a stripe only if it holds no other lock of this storage manager.
+ * Otherwise it only tries to take the stripe, and if the stripe is busy the value is computed without a lock and
+ * published with a compare-and-set, even if a thread holding the stripe is still computing it. The first published value
+ * wins: it's returned to all callers, including the thread computing under the stripe, which drops its own result.
+ * This means that under contention a value may be computed more than once, so clients which rely on computations
+ * being performed exactly once should keep using {@link LockBasedStorageManager}.
+ *
+ * {@link #compute(Function0)} is guarded by a single lock shared by all copies of this storage manager. When it's called
+ * outside of memoized functions and lazy values, it also waits for all of their computations to finish and blocks new ones
+ * until it returns, as the single lock of {@link LockBasedStorageManager} does. When it's called from a computation,
+ * computations in other threads continue to run.
+ */
+public class StripedLockStorageManager extends LockBasedStorageManager {
+    public static final int DEFAULT_STRIPE_COUNT = 64;
+
+    private static final long CHECK_CANCELLATION_PERIOD_MS = 50;
+
+    @NotNull
+    public static StripedLockStorageManager createWithExceptionHandling(
+            @NotNull String debugText,
+            @NotNull ExceptionHandlingStrategy exceptionHandlingStrategy,
+            @Nullable Runnable checkCancelled,
+            @Nullable Function1<InterruptedException, Unit> interruptedExceptionHandler
+    ) {
+        return new StripedLockStorageManager(
+                debugText, exceptionHandlingStrategy,
+                new Stripes(DEFAULT_STRIPE_COUNT, checkCancelled, interruptedExceptionHandler)
+        );
+    }
+
+    private final Stripes stripes;
+
+    private StripedLockStorageManager(
+            @NotNull String debugText,
+            @NotNull ExceptionHandlingStrategy exceptionHandlingStrategy,
+            @NotNull Stripes stripes
+    ) {
+        super(debugText, exceptionHandlingStrategy, stripes.computeLock);
+        this.stripes = stripes;
+    }
+
+    public StripedLockStorageManager(String debugText) {
+        this(debugText, DEFAULT_STRIPE_COUNT);
+    }
+
+    StripedLockStorageManager(String debugText, int stripeCount) {
+        this(debugText, ExceptionHandlingStrategy.THROW, new Stripes(stripeCount, null, null));
+    }
+
+    @Override
+    public StripedLockStorageManager replaceExceptionHandling(
+            @NotNull String debugText, @NotNull ExceptionHandlingStrategy exceptionHandlingStrategy
+    ) {
+        return new StripedLockStorageManager(debugText, exceptionHandlingStrategy, stripes);
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunction(
+            @NotNull Function1<? super K, ? extends V> compute,
+            @NotNull ConcurrentMap<K, Object> map
+    ) {
+        return new StripedMemoizedFunctionToNotNull<K, V>(this, map, compute);
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNullable<K, V> createMemoizedFunctionWithNullableValues(
+            @NotNull Function1<? super K, ? extends V> compute,
+            @NotNull ConcurrentMap<K, Object> map
+    ) {
+        return new StripedMemoizedFunction<K, V>(this, map, compute);
+    }
+
+    @NotNull
+    @Override
+    public <K, V> CacheWithNullableValues<K, V> createCacheWithNullableValues() {
+        return new StripedCacheWithNullableValues<K, V>(this, StripedLockStorageManager.<KeyWithComputation<K, V>>createConcurrentHashMap());
+    }
+
+    @NotNull
+    @Override
+    public <K, V> CacheWithNotNullValues<K, V> createCacheWithNotNullValues() {
+        return new StripedCacheWithNotNullValues<K, V>(this, StripedLockStorageManager.<KeyWithComputation<K, V>>createConcurrentHashMap());
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValue(@NotNull Function0<? extends T> computable) {
+        return new StripedNotNullLazyValue<T>(this, computable);
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValue(
+            @NotNull Function0<? extends T> computable,
+            @NotNull final Function1<? super Boolean, ? extends T> onRecursiveCall
+    ) {
+        return new StripedNotNullLazyValue<T>(this, computable) {
+            @NotNull
+            @Override
+            protected RecursionDetectedResult<T> recursionDetected(boolean firstTime) {
+                return RecursionDetectedResult.value(onRecursiveCall.invoke(firstTime));
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createRecursionTolerantLazyValue(
+            @NotNull Function0<? extends T> computable, @NotNull final T onRecursiveCall
+    ) {
+        return new StripedNotNullLazyValue<T>(this, computable) {
+            @NotNull
+            @Override
+            protected RecursionDetectedResult<T> recursionDetected(boolean firstTime) {
+                return RecursionDetectedResult.value(onRecursiveCall);
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValueWithPostCompute(
+            @NotNull Function0<? extends T> computable,
+            final Function1<? super Boolean, ? extends T> onRecursiveCall,
+            @NotNull final Function1<? super T, Unit> postCompute
+    ) {
+        return new StripedNotNullLazyValue<T>(this, computable) {
+            @NotNull
+            @Override
+            protected RecursionDetectedResult<T> recursionDetected(boolean firstTime) {
+                if (onRecursiveCall == null) {
+                    return super.recursionDetected(firstTime);
+                }
+                return RecursionDetectedResult.value(onRecursiveCall.invoke(firstTime));
+            }
+
+            @Override
+            protected void postCompute(T value) {
+                postCompute.invoke(value);
+            }
+
+            @Override
+            protected boolean hasPostCompute() {
+                return true;
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValue(@NotNull Function0<? extends T> computable) {
+        return new StripedLazyValue<T>(this, computable);
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createRecursionTolerantNullableLazyValue(@NotNull Function0<? extends T> computable, final T onRecursiveCall) {
+        return new StripedLazyValue<T>(this, computable) {
+            @NotNull
+            @Override
+            protected RecursionDetectedResult<T> recursionDetected(boolean firstTime) {
+                return RecursionDetectedResult.value(onRecursiveCall);
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValueWithPostCompute(
+            @NotNull Function0<? extends T> computable, @NotNull final Function1<? super T, Unit> postCompute
+    ) {
+        return new StripedLazyValue<T>(this, computable) {
+            @Override
+            protected void postCompute(T value) {
+                postCompute.invoke(value);
+            }
+
+            @Override
+            protected boolean hasPostCompute() {
+                return true;
+            }
+        };
+    }
+
+    @NotNull
+    private static <K> ConcurrentMap<K, Object> createConcurrentHashMap() {
+        // memory optimization: fewer segments and entries stored
+        return new ConcurrentHashMap<K, Object>(3, 1, 2);
+    }
+
+    @NotNull
+    private static ThreadState threadState(@NotNull StripedLockStorageManager storageManager) {
+        return storageManager.stripes.threadState.get();
+    }
+
+    /**
+     * Per-thread bookkeeping: how many locks of this storage manager the thread holds, which values it is computing
+     * without a lock (to detect recursion there), and values published early to the thread by a post-compute.
+     */
+    private static final class ThreadState {
+        private int heldLocks = 0;
+
+        // The lock of the gate taken together with the first lock held by the thread, released with the last one
+        @Nullable
+        private Lock heldGateLock = null;
+
+        @Nullable
+        private Set<Object> lockFreeComputations = null;
+
+        @Nullable
+        private Map<Object, Object> postComputeValues = null;
+
+        boolean isComputingLockFree(@NotNull Object key) {
+            return lockFreeComputations != null && lockFreeComputations.contains(key);
+        }
+
+        void enterLockFree(@NotNull Object key) {
+            if (lockFreeComputations == null) {
+                lockFreeComputations = new HashSet<Object>();
+            }
+            lockFreeComputations.add(key);
+        }
+
+        void exitLockFree(@NotNull Object key) {
+            assert lockFreeComputations != null : "exitLockFree() without enterLockFree()";
+            lockFreeComputations.remove(key);
+        }
+    }
+
+    private static final class Stripes {
+        private final ReentrantLock[] locks;
+        private final CountingLock computeLock;
+
+        // Read by computations of memoized functions and lazy values, written by compute() called outside of them
+        private final ReentrantReadWriteLock gate = new ReentrantReadWriteLock();
+
+        @Nullable
+        private final Runnable checkCancelled;
+        @Nullable
+        private final Function1<InterruptedException, Unit> interruptedExceptionHandler;
+
+        private final ThreadLocal<ThreadState> threadState = new ThreadLocal<ThreadState>() {
+            @Override
+            protected ThreadState initialValue() {
+                return new ThreadState();
+            }
+        };
+
+        Stripes(
+                int count,
+                @Nullable Runnable checkCancelled,
+                @Nullable Function1<InterruptedException, Unit> interruptedExceptionHandler
+        ) {
+            assert Integer.bitCount(count) == 1 : "Stripe count should be a power of two: " + count;
+            this.locks = new ReentrantLock[count];
+            for (int i = 0; i < count; i++) {
+                locks[i] = new ReentrantLock();
+            }
+            this.checkCancelled = checkCancelled;
+            this.interruptedExceptionHandler = interruptedExceptionHandler;
+            this.computeLock = new CountingLock(this);
+        }
+
+        /**
+         * @return the acquired stripe, or {@code null} if the caller should compute without a lock
+         */
+        @Nullable
+        ReentrantLock acquire(@NotNull ThreadState state, int hash) {
+            ReentrantLock lock = locks[stripeIndex(hash, locks.length)];
+            if (state.heldLocks == 0) {
+                // Blocking is safe here: a thread holding another lock of this storage manager never blocks on a stripe
+                enterGate(state, gate.readLock());
+                try {
+                    lockCancellable(lock);
+                }
+                catch (RuntimeException e) {
+                    exitGate(state);
+                    throw e;
+                }
+            }
+            else if (!lock.tryLock()) {
+                return null;
+            }
+            state.heldLocks++;
+            return lock;
+        }
+
+        void release(@NotNull ThreadState state, @NotNull Lock lock) {
+            state.heldLocks--;
+            lock.unlock();
+            if (state.heldLocks == 0) {
+                exitGate(state);
+            }
+        }
+
+        void enterGate(@NotNull ThreadState state, @NotNull Lock gateLock) {
+            lockCancellable(gateLock);
+            state.heldGateLock = gateLock;
+        }
+
+        void exitGate(@NotNull ThreadState state) {
+            Lock gateLock = state.heldGateLock;
+            if (gateLock != null) {
+                state.heldGateLock = null;
+                gateLock.unlock();
+            }
+        }
+
+        void lockCancellable(@NotNull Lock lock) {
+            if (checkCancelled == null || interruptedExceptionHandler == null) {
+                lock.lock();
+                return;
+            }
+            try {
+                while (!lock.tryLock(CHECK_CANCELLATION_PERIOD_MS, TimeUnit.MILLISECONDS)) {
+                    checkCancelled.run();
+                }
+            }
+            catch (InterruptedException e) {
+                interruptedExceptionHandler.invoke(e);
+            }
+        }
+
+    }
+
+    static int stripeIndex(int hash, int stripeCount) {
+        return (hash ^ (hash >>> 16)) & (stripeCount - 1);
+    }
+
+    // The hash which selects the stripe for an input of a memoized function
+    static int inputHash(int functionIdentityHash, @Nullable Object input) {
+        return 31 * functionIdentityHash + (input == null ? 0 : input.hashCode());
+    }
+
+    /**
+     * The lock used by {@link #compute(Function0)}. Unlike stripes, it's always acquired with blocking, which is safe
+     * because a thread holding it never blocks on a stripe.
+     *
+     * A thread holding no other lock of the storage manager first takes the write lock of the gate, so that no computations
+     * run in other threads until it's released. The gate is taken before the lock itself: computations holding the read lock
+     * of the gate may call compute() and wait for the lock.
+     */
+    private static final class CountingLock implements SimpleLock {
+        private final Stripes stripes;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        CountingLock(@NotNull Stripes stripes) {
+            this.stripes = stripes;
+        }
+
+        @Override
+        public void lock() {
+            ThreadState state = stripes.threadState.get();
+            if (state.heldLocks == 0) {
+                stripes.enterGate(state, stripes.gate.writeLock());
+                try {
+                    stripes.lockCancellable(lock);
+                }
+                catch (RuntimeException e) {
+                    stripes.exitGate(state);
+                    throw e;
+                }
+            }
+            else {
+                stripes.lockCancellable(lock);
+            }
+            state.heldLocks++;
+        }
+
+        @Override
+        public void unlock() {
+            stripes.release(stripes.threadState.get(), lock);
+        }
+    }
+
+    private enum NotValue {
+        NOT_COMPUTED,
+        COMPUTING,
+        RECURSION_WAS_DETECTED
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<StripedLazyValue, Object> LAZY_VALUE_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(StripedLazyValue.class, Object.class, "value");
+
+    private static class StripedLazyValue<T> implements NullableLazyValue<T> {
+        private final StripedLockStorageManager storageManager;
+        private final Function0<? extends T> computable;
+
+        @Nullable
+        volatile Object value = NotValue.NOT_COMPUTED;
+
+        public StripedLazyValue(@NotNull StripedLockStorageManager storageManager, @NotNull Function0<? extends T> computable) {
+            this.storageManager = storageManager;
+            this.computable = computable;
+        }
+
+        @Override
+        public boolean isComputed() {
+            return value != NotValue.NOT_COMPUTED && value != NotValue.COMPUTING;
+        }
+
+        @Override
+        public boolean isComputing() {
+            return value == NotValue.COMPUTING;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T invoke() {
+            Object _value = value;
+            if (!(_value instanceof NotValue)) return WrappedValues.unescapeThrowable(_value);
+
+            ThreadState state = threadState(storageManager);
+            if (state.postComputeValues != null && state.postComputeValues.containsKey(this)) {
+                return (T) state.postComputeValues.get(this);
+            }
+
+            if (state.isComputingLockFree(this)) {
+                RecursionDetectedResult<T> result = recursionDetected(/*firstTime = */ true);
+                if (!result.isFallThrough()) {
+                    return result.getValue();
+                }
+            }
+
+            ReentrantLock lock = storageManager.stripes.acquire(state, System.identityHashCode(this));
+            if (lock == null) {
+                return computeLockFree(state);
+            }
+
+            try {
+                _value = value;
+                if (!(_value instanceof NotValue)) return WrappedValues.unescapeThrowable(_value);
+
+                // Markers are only changed by threads holding the stripe, but lock-free computations in other threads may
+                // replace them with a value at any moment, so they are changed with a compare-and-set
+                Object marker = _value;
+                if (_value == NotValue.COMPUTING) {
+                    if (!LAZY_VALUE_UPDATER.compareAndSet(this, NotValue.COMPUTING, NotValue.RECURSION_WAS_DETECTED)) {
+                        return WrappedValues.unescapeThrowable(value);
+                    }
+                    marker = NotValue.RECURSION_WAS_DETECTED;
+                    RecursionDetectedResult<T> result = recursionDetected(/*firstTime = */ true);
+                    if (!result.isFallThrough()) {
+                        return result.getValue();
+                    }
+                }
+                else if (_value == NotValue.RECURSION_WAS_DETECTED) {
+                    RecursionDetectedResult<T> result = recursionDetected(/*firstTime = */ false);
+                    if (!result.isFallThrough()) {
+                        return result.getValue();
+                    }
+                }
+
+                if (!LAZY_VALUE_UPDATER.compareAndSet(this, marker, NotValue.COMPUTING)) {
+                    // Published by a lock-free computation in another thread
+                    return WrappedValues.unescapeThrowable(value);
+                }
+
+                try {
+                    T typedValue = computable.invoke();
+
+                    // Don't publish computed value till post compute is finished as it may cause a race condition
+                    // if post compute modifies value internals.
+                    runPostCompute(state, typedValue);
+
+                    return publish(typedValue);
+                }
+                catch (Throwable throwable) {
+                    Object current = value;
+                    if (ExceptionUtilsKt.isProcessCanceledException(throwable)) {
+                        if (current instanceof NotValue) {
+                            LAZY_VALUE_UPDATER.compareAndSet(this, current, NotValue.NOT_COMPUTED);
+                        }
+                        //noinspection ConstantConditions
+                        throw (RuntimeException) throwable;
+                    }
+
+                    if (!(current instanceof NotValue)) {
+                        // A value published by a lock-free computation in another thread wins over the exception
+                        return WrappedValues.unescapeThrowable(current);
+                    }
+
+                    // Store only if it's a genuine result, not something thrown through recursionDetected()
+                    if (current == NotValue.COMPUTING &&
+                        !LAZY_VALUE_UPDATER.compareAndSet(this, NotValue.COMPUTING, WrappedValues.escapeThrowable(throwable))) {
+                        return WrappedValues.unescapeThrowable(value);
+                    }
+                    throw storageManager.exceptionHandlingStrategy.handleException(throwable);
+                }
+            }
+            finally {
+                storageManager.stripes.release(state, lock);
+            }
+        }
+
+        private T computeLockFree(@NotNull ThreadState state) {
+            T typedValue;
+            state.enterLockFree(this);
+            try {
+                typedValue = computable.invoke();
+                runPostCompute(state, typedValue);
+            }
+            catch (Throwable throwable) {
+                if (ExceptionUtilsKt.isProcessCanceledException(throwable)) {
+                    //noinspection ConstantConditions
+                    throw (RuntimeException) throwable;
+                }
+                // Exceptions are not published from here: a thread computing under the stripe will record them
+                throw storageManager.exceptionHandlingStrategy.handleException(throwable);
+            }
+            finally {
+                state.exitLockFree(this);
+            }
+
+            return publish(typedValue);
+        }
+
+        /**
+         * Publishes {@code typedValue} unless another value has been published already.
+         * @return the published value, which is the one all callers of {@link #invoke()} get
+         */
+        private T publish(T typedValue) {
+            while (true) {
+                Object current = value;
+                if (!(current instanceof NotValue)) return WrappedValues.unescapeThrowable(current);
+                if (LAZY_VALUE_UPDATER.compareAndSet(this, current, typedValue)) return typedValue;
+            }
+        }
+
+        private void runPostCompute(@NotNull ThreadState state, T typedValue) {
+            if (!hasPostCompute()) return;
+
+            // The value is visible to the computing thread while post compute runs, other threads will only see it when it's published
+            if (state.postComputeValues == null) {
+                state.postComputeValues = new IdentityHashMap<Object, Object>();
+            }
+            state.postComputeValues.put(this, typedValue);
+            try {
+                postCompute(typedValue);
+            }
+            finally {
+                state.postComputeValues.remove(this);
+            }
+        }
+
+        /**
+         * @param firstTime {@code true} when recursion has been just detected, {@code false} otherwise
+         * @return a value to be returned on a recursive call or subsequent calls
+         */
+        @NotNull
+        protected RecursionDetectedResult<T> recursionDetected(boolean firstTime) {
+            return storageManager.recursionDetectedDefault();
+        }
+
+        protected boolean hasPostCompute() {
+            return false;
+        }
+
+        protected void postCompute(T value) {
+        }
+
+        @NotNull
+        public String renderDebugInformation() {
+            return getClass().getName() + ", storageManager=" + storageManager;
+        }
+    }
+
+    private static class StripedNotNullLazyValue<T> extends StripedLazyValue<T> implements NotNullLazyValue<T> {
+        public StripedNotNullLazyValue(@NotNull StripedLockStorageManager storageManager, @NotNull Function0<? extends T> computable) {
+            super(storageManager, computable);
+        }
+
+        @Override
+        @NotNull
+        public T invoke() {
+            T result = super.invoke();
+            assert result != null : "compute() returned null";
+            return result;
+        }
+    }
+
+    private static class StripedMemoizedFunction<K, V> implements MemoizedFunctionToNullable<K, V> {
+        private final StripedLockStorageManager storageManager;
+        private final ConcurrentMap<K, Object> cache;
+        private final Function1<? super K, ? extends V> compute;
+        private final int identityHash = System.identityHashCode(this);
+
+        public StripedMemoizedFunction(
+                @NotNull StripedLockStorageManager storageManager,
+                @NotNull ConcurrentMap<K, Object> map,
+                @NotNull Function1<? super K, ? extends V> compute
+        ) {
+            this.storageManager = storageManager;
+            this.cache = map;
+            this.compute = compute;
+        }
+
+        @Override
+        @Nullable
+        public V invoke(K input) {
+            Object value = cache.get(input);
+            if (value != null && value != NotValue.COMPUTING) return WrappedValues.unescapeExceptionOrNull(value);
+
+            ThreadState state = threadState(storageManager);
+            if (state.lockFreeComputations != null && state.isComputingLockFree(new LockFreeKey(this, input))) {
+                throw recursionDetected(input);
+            }
+
+            ReentrantLock lock = storageManager.stripes.acquire(state, inputHash(identityHash, input));
+            if (lock == null) {
+                return computeLockFree(state, input);
+            }
+
+            try {
+                value = cache.get(input);
+                if (value == NotValue.COMPUTING) {
+                    // Only threads holding this stripe mark the input, so it's this thread
+                    throw recursionDetected(input);
+                }
+                if (value != null) return WrappedValues.unescapeExceptionOrNull(value);
+
+                value = cache.putIfAbsent(input, NotValue.COMPUTING);
+                if (value != null) {
+                    // Published by a lock-free computation in another thread
+                    return WrappedValues.unescapeExceptionOrNull(value);
+                }
+
+                AssertionError error = null;
+                try {
+                    V typedValue = compute.invoke(input);
+
+                    // See MapBasedMemoizedFunction in LockBasedStorageManager for why the assertion is thrown this way
+                    if (!cache.replace(input, NotValue.COMPUTING, WrappedValues.escapeNull(typedValue))) {
+                        // A value published by a lock-free computation in another thread wins
+                        Object published = cache.get(input);
+                        if (published != null && published != NotValue.COMPUTING) {
+                            return WrappedValues.unescapeExceptionOrNull(published);
+                        }
+                        error = raceCondition(input, published);
+                        throw error;
+                    }
+
+                    return typedValue;
+                }
+                catch (Throwable throwable) {
+                    if (ExceptionUtilsKt.isProcessCanceledException(throwable)) {
+                        cache.remove(input, NotValue.COMPUTING);
+                        //noinspection ConstantConditions
+                        throw (RuntimeException) throwable;
+                    }
+                    if (throwable == error) {
+                        throw storageManager.exceptionHandlingStrategy.handleException(throwable);
+                    }
+
+                    if (!cache.replace(input, NotValue.COMPUTING, WrappedValues.escapeThrowable(throwable))) {
+                        Object published = cache.get(input);
+                        if (published != null && published != NotValue.COMPUTING) {
+                            return WrappedValues.unescapeExceptionOrNull(published);
+                        }
+                        throw raceCondition(input, published);
+                    }
+
+                    throw storageManager.exceptionHandlingStrategy.handleException(throwable);
+                }
+            }
+            finally {
+                storageManager.stripes.release(state, lock);
+            }
+        }
+
+        @Nullable
+        private V computeLockFree(@NotNull ThreadState state, K input) {
+            LockFreeKey key = new LockFreeKey(this, input);
+            V typedValue;
+            state.enterLockFree(key);
+            try {
+                typedValue = compute.invoke(input);
+            }
+            catch (Throwable throwable) {
+                if (ExceptionUtilsKt.isProcessCanceledException(throwable)) {
+                    //noinspection ConstantConditions
+                    throw (RuntimeException) throwable;
+                }
+                // Exceptions are not published from here: a thread computing under the stripe will record them
+                throw storageManager.exceptionHandlingStrategy.handleException(throwable);
+            }
+            finally {
+                state.exitLockFree(key);
+            }
+
+            // The value is published even if a thread holding the stripe is still computing it, that thread will drop its own result
+            Object escaped = WrappedValues.escapeNull(typedValue);
+            while (true) {
+                Object published = cache.putIfAbsent(input, escaped);
+                if (published == null) return typedValue;
+                if (published != NotValue.COMPUTING) return WrappedValues.unescapeExceptionOrNull(published);
+                if (cache.replace(input, NotValue.COMPUTING, escaped)) return typedValue;
+            }
+        }
+
+        @NotNull
+        private AssertionError recursionDetected(K input) {
+            return sanitizeStackTrace(
+                    new AssertionError("Recursion detected on input: " + input + " under " + storageManager)
+            );
+        }
+
+        @NotNull
+        private AssertionError raceCondition(K input, Object oldValue) {
+            return sanitizeStackTrace(
+                    new AssertionError("Race condition detected on input " + input + ". Old value is " + oldValue +
+                                       " under " + storageManager)
+            );
+        }
+
+        @Override
+        public boolean isComputed(K key) {
+            Object value = cache.get(key);
+            return value != null && value != NotValue.COMPUTING;
+        }
+
+        protected StripedLockStorageManager getStorageManager() {
+            return storageManager;
+        }
+    }
+
+    private static class StripedMemoizedFunctionToNotNull<K, V> extends StripedMemoizedFunction<K, V> implements MemoizedFunctionToNotNull<K, V> {
+        public StripedMemoizedFunctionToNotNull(
+                @NotNull StripedLockStorageManager storageManager, @NotNull ConcurrentMap<K, Object> map,
+                @NotNull Function1<? super K, ? extends V> compute
+        ) {
+            super(storageManager, map, compute);
+        }
+
+        @NotNull
+        @Override
+        public V invoke(K input) {
+            V result = super.invoke(input);
+            assert result != null : "compute() returned null under " + getStorageManager();
+            return result;
+        }
+    }
+
+    private static class StripedCacheWithNullableValues<K, V> extends StripedMemoizedFunction<KeyWithComputation<K, V>, V>
+            implements CacheWithNullableValues<K, V> {
+        private StripedCacheWithNullableValues(
+                @NotNull StripedLockStorageManager storageManager,
+                @NotNull ConcurrentMap<KeyWithComputation<K, V>, Object> map
+        ) {
+            super(storageManager, map, new Function1<KeyWithComputation<K, V>, V>() {
+                @Override
+                public V invoke(KeyWithComputation<K, V> computation) {
+                    return computation.computation.invoke();
+                }
+            });
+        }
+
+        @Nullable
+        @Override
+        public V computeIfAbsent(K key, @NotNull Function0<? extends V> computation) {
+            return invoke(new KeyWithComputation<K, V>(key, computation));
+        }
+    }
+
+    private static class StripedCacheWithNotNullValues<K, V> extends StripedCacheWithNullableValues<K, V>
+            implements CacheWithNotNullValues<K, V> {
+        private StripedCacheWithNotNullValues(
+                @NotNull StripedLockStorageManager storageManager,
+                @NotNull ConcurrentMap<KeyWithComputation<K, V>, Object> map
+        ) {
+            super(storageManager, map);
+        }
+
+        @NotNull
+        @Override
+        public V computeIfAbsent(K key, @NotNull Function0<? extends V> computation) {
+            V result = super.computeIfAbsent(key, computation);
+            assert result != null : "computeIfAbsent() returned null under " + getStorageManager();
+            return result;
+        }
+    }
+
+    // Identifies an input of a particular memoized function in ThreadState
+    private static final class LockFreeKey {
+        private final Object function;
+        private final Object input;
+
+        LockFreeKey(@NotNull Object function, @Nullable Object input) {
+            this.function = function;
+            this.input = input;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof LockFreeKey)) return false;
+
+            LockFreeKey that = (LockFreeKey) o;
+            return function == that.function && (input == null ? that.input == null : input.equals(that.input));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(function) + (input == null ? 0 : input.hashCode());
+        }
+    }
+}
@@ -239,6 +239,7 @@ fun CommonCompilerArguments.convertPathsToSystemIndependent() {
             kotlinHome = PathUtil.toSystemIndependentName(kotlinHome)
             friendPaths?.forEachIndexed { index, s -> friendPaths!![index] = PathUtil.toSystemIndependentName(s) }
             declarationsOutputPath = PathUtil.toSystemIndependentName(declarationsOutputPath)
+            classpathPackageIndex = PathUtil.toSystemIndependentName(classpathPackageIndex)
         }
 
         is K2JSCompilerArguments -> {
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.js.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.utils.ExceptionUtilsKt;
+
+import java.io.*;
+
+/**
+ * {@link TextOutput} which passes the text to a {@link Writer} as it is printed instead of keeping it in memory,
+ * so big programs can be written to a file directly. The writer should be buffered.
+ */
+public class WriterTextOutput extends AbstractTextOutput implements Closeable, Flushable {
+    private final Writer out;
+
+    public WriterTextOutput(@NotNull Writer out) {
+        this(out, false);
+    }
+
+    public WriterTextOutput(@NotNull Writer out, boolean compact) {
+        super(compact);
+        this.out = out;
+    }
+
+    @Override
+    protected void append(char c) {
+        try {
+            out.write(c);
+        }
+        catch (IOException e) {
+            throw ExceptionUtilsKt.rethrow(e);
+        }
+    }
+
+    @Override
+    protected void append(char[] chars) {
+        try {
+            out.write(chars);
+        }
+        catch (IOException e) {
+            throw ExceptionUtilsKt.rethrow(e);
+        }
+    }
+
+    @Override
+    protected void append(CharSequence charSequence) {
+        try {
+            out.append(charSequence);
+        }
+        catch (IOException e) {
+            throw ExceptionUtilsKt.rethrow(e);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -27,16 +27,23 @@ import org.jetbrains.kotlin.js.dce.Context.Node
 import org.jetbrains.kotlin.js.facade.SourceMapBuilderConsumer
 import org.jetbrains.kotlin.js.inline.util.collectDefinedNames
 import org.jetbrains.kotlin.js.inline.util.fixForwardNameReferences
-import org.jetbrains.kotlin.js.parser.parse
+import org.jetbrains.kotlin.js.parser.mapToJsAst
+import org.jetbrains.kotlin.js.parser.parseSyntaxTree
+import org.jetbrains.kotlin.js.parser.sourcemaps.SourceMap
 import org.jetbrains.kotlin.js.parser.sourcemaps.SourceMapError
 import org.jetbrains.kotlin.js.parser.sourcemaps.SourceMapLocationRemapper
 import org.jetbrains.kotlin.js.parser.sourcemaps.SourceMapParser
 import org.jetbrains.kotlin.js.parser.sourcemaps.SourceMapSuccess
 import org.jetbrains.kotlin.js.sourceMap.SourceFilePathResolver
 import org.jetbrains.kotlin.js.sourceMap.SourceMap3Builder
-import org.jetbrains.kotlin.js.util.TextOutputImpl
+import org.jetbrains.kotlin.js.util.WriterTextOutput
 import java.io.File
 import java.io.InputStreamReader
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.TimeUnit
 
 class DeadCodeElimination(private val logConsumer: (DCELogLevel, String) -> Unit) {
     val moduleMapping = mutableMapOf<JsBlock, String>()
@@ -72,74 +79,143 @@ class DeadCodeElimination(private val logConsumer: (DCELogLevel, String) -> Unit
     }
 
     companion object {
+        /**
+         * Eliminates unreachable declarations from [inputFiles].
+         *
+         * If [threads] is not 1, input files are read and parsed, and output files are printed and written, in [threads] parallel threads
+         * (0 means a thread per processor core). Declaring names and the reachability analysis are always performed in one thread,
+         * and messages are reported in the order of [inputFiles], so the result doesn't depend on the number of threads.
+         */
         fun run(
                 inputFiles: Collection<InputFile>,
                 rootReachableNames: Set<String>,
+                threads: Int = 1,
+                logConsumer: (DCELogLevel, String) -> Unit
+        ): DeadCodeEliminationResult {
+            val executor = if (threads != 1) ForkJoinPool(if (threads > 0) threads else Runtime.getRuntime().availableProcessors()) else null
+            try {
+                return run(inputFiles.toList(), rootReachableNames, executor, logConsumer)
+            }
+            finally {
+                executor?.shutdown()
+            }
+        }
+
+        private fun run(
+                inputFiles: List<InputFile>,
+                rootReachableNames: Set<String>,
+                executor: ExecutorService?,
                 logConsumer: (DCELogLevel, String) -> Unit
         ): DeadCodeEliminationResult {
             val program = JsProgram()
             val dce = DeadCodeElimination(logConsumer)
 
-            var hasErrors = false
-            val blocks = inputFiles.map { file ->
+            val parseStart = System.nanoTime()
+            val parsedFiles = inputFiles.mapInParallel(executor) { file -> parseFile(file) }
+            parsedFiles.forEach { it.log.replayTo(logConsumer) }
+            if (parsedFiles.any { it.syntaxTree == null }) return DeadCodeEliminationResult(emptySet(), DeadCodeEliminationStatus.FAILED)
+
+            // Names are declared in the scope of the program, which isn't thread-safe, so the syntax trees are mapped one by one
+            val blocks = inputFiles.zip(parsedFiles).map { (file, parsedFile) ->
                 val block = JsGlobalBlock()
-                val code = file.resource.reader().let { InputStreamReader(it, "UTF-8") }.use { it.readText() }
-                val statements = parse(code, Reporter(file.resource.name, logConsumer), program.scope, file.resource.name) ?: run {
-                    hasErrors = true
-                    return@map block
-                }
-                val sourceMapParse = file.sourceMapResource
-                        ?.let { SourceMapParser.parse(InputStreamReader(it.reader(), "UTF-8").readText()) }
-                when (sourceMapParse) {
-                    is SourceMapError -> {
-                        logConsumer(
-                                DCELogLevel.WARN,
-                                "Error parsing source map file ${file.sourceMapResource}: ${sourceMapParse.message}")
-                    }
-                    is SourceMapSuccess -> {
-                        val sourceMap = sourceMapParse.value
-                        val remapper = SourceMapLocationRemapper(sourceMap)
-                        statements.forEach { remapper.remap(it) }
-                    }
-                }
-                block.statements += statements
+                block.statements += mapToJsAst(parsedFile.syntaxTree!!, program.scope, file.resource.name)
                 file.moduleName?.let { dce.moduleMapping[block] = it }
                 block
             }
+            blocks.zip(parsedFiles).mapInParallel(executor) { (block, parsedFile) ->
+                parsedFile.sourceMap?.let { sourceMap ->
+                    val remapper = SourceMapLocationRemapper(sourceMap)
+                    block.statements.forEach { remapper.remap(it) }
+                }
+            }
+            val parseTime = millisSince(parseStart)
 
-            if (hasErrors) return DeadCodeEliminationResult(emptySet(), DeadCodeEliminationStatus.FAILED)
-
+            val analysisStart = System.nanoTime()
             program.globalBlock.statements += blocks
             program.globalBlock.fixForwardNameReferences()
 
             dce.reachableNames += rootReachableNames
             dce.apply(program.globalBlock)
+            val analysisTime = millisSince(analysisStart)
+
+            val outputStart = System.nanoTime()
+            inputFiles.zip(blocks).mapInParallel(executor) { (file, block) -> writeFile(file, block) }
+            val outputTime = millisSince(outputStart)
+
+            return DeadCodeEliminationResult(
+                    dce.reachableNodes, DeadCodeEliminationStatus.OK, DeadCodeEliminationTimings(parseTime, analysisTime, outputTime)
+            )
+        }
+
+        private fun parseFile(file: InputFile): ParsedFile {
+            val log = BufferedLog()
+            val code = file.resource.reader().let { InputStreamReader(it, "UTF-8") }.use { it.readText() }
+            val syntaxTree = parseSyntaxTree(code, Reporter(file.resource.name, log))
+            val sourceMapParse = file.sourceMapResource
+                    ?.let { SourceMapParser.parse(InputStreamReader(it.reader(), "UTF-8").readText()) }
+            val sourceMap = when (sourceMapParse) {
+                is SourceMapError -> {
+                    log(DCELogLevel.WARN, "Error parsing source map file ${file.sourceMapResource}: ${sourceMapParse.message}")
+                    null
+                }
+                is SourceMapSuccess -> sourceMapParse.value
+                null -> null
+            }
+            return ParsedFile(syntaxTree, sourceMap, log)
+        }
 
-            for ((file, block) in inputFiles.zip(blocks)) {
-                val sourceMapFile = File(file.outputPath + ".map")
-                val textOutput = TextOutputImpl()
-                val sourceMapBuilder = SourceMap3Builder(File(file.outputPath), textOutput, "")
+        private fun writeFile(file: InputFile, block: JsBlock) {
+            val outputFile = File(file.outputPath)
+            val sourceMapFile = File(file.outputPath + ".map")
 
-                val inputFile = File(file.resource.name)
-                val sourceBaseDir = if (inputFile.exists()) inputFile.parentFile else File(".")
+            val inputFile = File(file.resource.name)
+            val sourceBaseDir = if (inputFile.exists()) inputFile.parentFile else File(".")
 
-                val sourcePathResolver = SourceFilePathResolver(emptyList(), File(file.outputPath).parentFile)
+            outputFile.parentFile.mkdirs()
+            // The code is written to the output file as it is printed rather than collected in memory first
+            val sourceMapContent = WriterTextOutput(outputFile.bufferedWriter()).use { textOutput ->
+                val sourceMapBuilder = SourceMap3Builder(outputFile, textOutput, "")
+                val sourcePathResolver = SourceFilePathResolver(emptyList(), outputFile.parentFile)
                 val consumer = SourceMapBuilderConsumer(sourceBaseDir, sourceMapBuilder, sourcePathResolver, true, true)
                 block.accept(JsToStringGenerationVisitor(textOutput, consumer))
-                val sourceMapContent = sourceMapBuilder.build()
-                sourceMapBuilder.addLink()
-
-                with(File(file.outputPath)) {
-                    parentFile.mkdirs()
-                    writeText(textOutput.toString())
+                sourceMapBuilder.build().also {
+                    sourceMapBuilder.addLink()
                 }
+            }
+
+            if (file.sourceMapResource != null) {
+                sourceMapFile.writeText(sourceMapContent)
+            }
+        }
+
+        private fun <T, R> List<T>.mapInParallel(executor: ExecutorService?, transform: (T) -> R): List<R> {
+            if (executor == null || size < 2) return map(transform)
 
-                if (file.sourceMapResource != null) {
-                    sourceMapFile.writeText(sourceMapContent)
+            return map { executor.submit(Callable { transform(it) }) }.map { future ->
+                try {
+                    future.get()
                 }
+                catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        }
+
+        private fun millisSince(startNanos: Long): Long = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)
+
+        private class ParsedFile(val syntaxTree: com.google.gwt.dev.js.rhino.Node?, val sourceMap: SourceMap?, val log: BufferedLog)
+
+        // Messages of a file being parsed in a worker thread, reported later in the thread which runs DCE
+        private class BufferedLog : (DCELogLevel, String) -> Unit {
+            private val messages = mutableListOf<Pair<DCELogLevel, String>>()
+
+            override fun invoke(level: DCELogLevel, message: String) {
+                messages += level to message
             }
 
-            return DeadCodeEliminationResult(dce.reachableNodes, DeadCodeEliminationStatus.OK)
+            fun replayTo(logConsumer: (DCELogLevel, String) -> Unit) {
+                messages.forEach { (level, message) -> logConsumer(level, message) }
+            }
         }
 
         private class Reporter(private val fileName: String, private val logConsumer: (DCELogLevel, String) -> Unit) : ErrorReporter {
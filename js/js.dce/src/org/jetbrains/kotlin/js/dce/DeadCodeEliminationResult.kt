@@ -16,4 +16,15 @@
 
 package org.jetbrains.kotlin.js.dce
 
-class DeadCodeEliminationResult(val reachableNodes: Set<Context.Node>, val status: DeadCodeEliminationStatus)
\ No newline at end of file
+class DeadCodeEliminationResult(
+        val reachableNodes: Set<Context.Node>,
+        val status: DeadCodeEliminationStatus,
+        val timings: DeadCodeEliminationTimings = DeadCodeEliminationTimings()
+)
+
+/**
+ * Wall-clock time in milliseconds spent reading and parsing input files, analyzing reachability, and printing and writing output files
+ */
+class DeadCodeEliminationTimings(val parseTime: Long = 0, val analysisTime: Long = 0, val outputTime: Long = 0) {
+    override fun toString(): String = "parsing: $parseTime ms, analysis: $analysisTime ms, output: $outputTime ms"
+}
\ No newline at end of file
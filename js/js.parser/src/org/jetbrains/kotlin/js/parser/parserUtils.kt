@@ -23,13 +23,22 @@ import java.io.Reader
 import java.io.StringReader
 
 fun parse(code: String, reporter: ErrorReporter, scope: JsScope, fileName: String): List<JsStatement>? {
-    val insideFunction = scope is JsFunctionScope
-    val node = parse(code, CodePosition(0, 0), 0, reporter, insideFunction, Parser::parse)
-    return node?.toJsAst(scope, fileName) {
-        mapStatements(it)
-    }
+    val node = parseSyntaxTree(code, reporter, insideFunction = scope is JsFunctionScope)
+    return node?.let { mapToJsAst(it, scope, fileName) }
 }
 
+/**
+ * The first step of [parse], which doesn't declare any names, so it can be performed for several files in parallel.
+ * The result should be passed to [mapToJsAst].
+ */
+fun parseSyntaxTree(code: String, reporter: ErrorReporter, insideFunction: Boolean = false): Node? =
+        parse(code, CodePosition(0, 0), 0, reporter, insideFunction, Parser::parse)
+
+fun mapToJsAst(syntaxTree: Node, scope: JsScope, fileName: String): List<JsStatement> =
+        syntaxTree.toJsAst(scope, fileName) {
+            mapStatements(it)
+        }
+
 fun parseExpressionOrStatement(
         code: String,
         reporter: ErrorReporter, scope: JsScope,
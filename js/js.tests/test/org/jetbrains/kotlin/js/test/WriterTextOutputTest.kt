@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.js.test
+
+import com.google.gwt.dev.js.ThrowExceptionOnErrorReporter
+import org.jetbrains.kotlin.js.backend.JsToStringGenerationVisitor
+import org.jetbrains.kotlin.js.backend.SourceLocationConsumer
+import org.jetbrains.kotlin.js.backend.ast.JsBlock
+import org.jetbrains.kotlin.js.backend.ast.JsProgram
+import org.jetbrains.kotlin.js.facade.SourceMapBuilderConsumer
+import org.jetbrains.kotlin.js.parser.parse
+import org.jetbrains.kotlin.js.sourceMap.SourceFilePathResolver
+import org.jetbrains.kotlin.js.sourceMap.SourceMap3Builder
+import org.jetbrains.kotlin.js.util.TextOutput
+import org.jetbrains.kotlin.js.util.TextOutputImpl
+import org.jetbrains.kotlin.js.util.WriterTextOutput
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.io.File
+import java.io.StringWriter
+
+class WriterTextOutputTest {
+    @Test
+    fun sameTextAndSourceMapAsInMemoryOutput() {
+        check(compact = false)
+    }
+
+    @Test
+    fun sameTextAndSourceMapAsInMemoryOutputInCompactMode() {
+        check(compact = true)
+    }
+
+    private fun check(compact: Boolean) {
+        val program = parseProgram()
+
+        val expectedOutput = TextOutputImpl(compact)
+        val expected = print(program, expectedOutput)
+
+        val writer = StringWriter()
+        val actual = WriterTextOutput(writer, compact).use { print(program, it) }
+
+        assertEquals(expectedOutput.toString(), writer.toString())
+        assertEquals(expected, actual)
+    }
+
+    private fun parseProgram(): JsBlock {
+        val statements = parse(CODE, ThrowExceptionOnErrorReporter, JsProgram().scope, "test.js")!!
+        return JsBlock(statements)
+    }
+
+    private fun print(block: JsBlock, output: TextOutput): PrintResult {
+        val sourceMapBuilder = SourceMap3Builder(File("test.js"), output, "")
+        val consumer = SourceMapBuilderConsumer(File("."), sourceMapBuilder, SourceFilePathResolver(emptyList()), false, false)
+        val positions = PositionRecorder(output, consumer)
+        block.accept(JsToStringGenerationVisitor(output, positions))
+        val sourceMap = sourceMapBuilder.build()
+        sourceMapBuilder.addLink()
+        positions.record("end")
+        return PrintResult(positions.positions, sourceMap)
+    }
+
+    private data class PrintResult(val positions: List<String>, val sourceMap: String)
+
+    // Records where the output is whenever the printer reports source locations, which is what the source map relies on
+    private class PositionRecorder(private val output: TextOutput, private val delegate: SourceLocationConsumer) : SourceLocationConsumer {
+        val positions = mutableListOf<String>()
+
+        override fun newLine() {
+            record("newLine")
+            delegate.newLine()
+        }
+
+        override fun pushSourceInfo(info: Any?) {
+            record("push $info")
+            delegate.pushSourceInfo(info)
+        }
+
+        override fun popSourceInfo() {
+            record("pop")
+            delegate.popSourceInfo()
+        }
+
+        fun record(event: String) {
+            positions += "$event: position=${output.position} line=${output.line} column=${output.column}"
+        }
+    }
+
+    private companion object {
+        val CODE = """
+            var a = 1, b = 2.5, c = 'string with "quotes"';
+            function foo(x, y) {
+                if (x > y) {
+                    return x * 1e21 + y / 3;
+                } else {
+                    for (var i = 0; i < 10; i++) {
+                        y += i % 2 === 0 ? -i : i;
+                    }
+                }
+                try {
+                    throw new Error('error');
+                } catch (e) {
+                    console.log(e.message, [1, 2, 3], { key: 'value', 'other': null });
+                } finally {
+                    x = function (z) { return z; }(x);
+                }
+                return y;
+            }
+            switch (foo(a, b)) {
+                case 1:
+                    label: while (true) { break label; }
+                default:
+                    c = typeof c === 'string' ? c.length : void 0;
+            }
+        """.trimIndent()
+    }
+}
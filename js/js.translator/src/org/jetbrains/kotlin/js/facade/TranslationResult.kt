@@ -33,6 +33,7 @@ import org.jetbrains.kotlin.js.sourceMap.SourceFilePathResolver
 import org.jetbrains.kotlin.js.sourceMap.SourceMap3Builder
 import org.jetbrains.kotlin.js.util.TextOutput
 import org.jetbrains.kotlin.js.util.TextOutputImpl
+import org.jetbrains.kotlin.js.util.WriterTextOutput
 import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.resolve.BindingContext
@@ -42,6 +43,7 @@ import org.jetbrains.kotlin.serialization.js.JsSerializerProtocol
 import org.jetbrains.kotlin.serialization.js.KotlinJavascriptSerializationUtil
 import org.jetbrains.kotlin.utils.JsMetadataVersion
 import org.jetbrains.kotlin.utils.KotlinJavascriptMetadataUtils
+import java.io.ByteArrayOutputStream
 import java.io.File
 import java.util.*
 
@@ -124,7 +126,14 @@ abstract class TranslationResult protected constructor(val diagnostics: Diagnost
         }
 
         override fun getOutputFiles(outputFile: File, outputPrefixFile: File?, outputPostfixFile: File?): OutputFileCollection {
-            val output = TextOutputImpl()
+            val prefix = outputPrefixFile?.readText() ?: ""
+            val postfix = outputPostfixFile?.readText() ?: ""
+
+            // The code is encoded as it is printed, so the whole program is never kept in memory as a string
+            val codeBytes = ByteArrayOutputStream()
+            val writer = codeBytes.bufferedWriter()
+            writer.write(prefix)
+            val output = WriterTextOutput(writer)
 
             val sourceMapBuilder = SourceMap3Builder(outputFile, output, config.sourceMapPrefix)
             val sourceMapBuilderConsumer =
@@ -146,12 +155,10 @@ abstract class TranslationResult protected constructor(val diagnostics: Diagnost
             if (sourceMapBuilderConsumer != null) {
                 sourceMapBuilder.addLink()
             }
-            val code = output.toString()
+            writer.write(postfix)
+            output.close()
 
-            val prefix = outputPrefixFile?.readText() ?: ""
-            val postfix = outputPostfixFile?.readText() ?: ""
-
-            val jsFile = SimpleOutputFile(sourceFiles, outputFile.name, prefix + code + postfix)
+            val jsFile = SimpleOutputBinaryFile(sourceFiles, outputFile.name, codeBytes.toByteArray())
             val outputFiles = arrayListOf<OutputFile>(jsFile)
 
             outputFiles += metadataFiles(outputFile)
@@ -160,7 +167,6 @@ abstract class TranslationResult protected constructor(val diagnostics: Diagnost
                 sourceMapBuilder.skipLinesAtBeginning(StringUtil.getLineBreakCount(prefix))
                 val sourceMapFile = SimpleOutputFile(sourceFiles, sourceMapBuilder.outFile.name, sourceMapBuilder.build())
                 outputFiles.add(sourceMapFile)
-                sourceMapBuilder.addLink()
             }
 
             return SimpleOutputFileCollection(outputFiles)
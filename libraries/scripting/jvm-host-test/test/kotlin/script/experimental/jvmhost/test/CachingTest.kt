@@ -85,6 +85,50 @@ class CachingTest : TestCase() {
         }
     }
 
+    @Test
+    fun testJarCacheWithMemoryCache() {
+        withTempDir("scriptingTestJarCache") { cacheDir ->
+            val cache = TestCompiledScriptJarsCache(cacheDir, memoryCacheSize = 1)
+
+            checkWithCache(cache, simpleScript, simpleScriptExpectedOutput)
+
+            Assert.assertEquals(1, cache.statistics.missCount)
+            Assert.assertEquals(1, cache.statistics.storeCount)
+            Assert.assertEquals(2, cache.statistics.memoryHitCount)
+            Assert.assertEquals(0, cache.statistics.diskHitCount)
+
+            val jar = cache.baseDir.listFiles()!!.single { it.extension == "jar" }
+            val indexLine = File(cache.baseDir, CompiledScriptJarsCache.INDEX_FILE_NAME).readLines().single()
+            Assert.assertTrue(indexLine, indexLine.startsWith(jar.name + "\t"))
+        }
+    }
+
+    @Test
+    fun testJarCacheIndexPruningAndSharedClasses() {
+        withTempDir("scriptingTestJarCache") { cacheDir ->
+            checkWithCache(TestCompiledScriptJarsCache(cacheDir), simpleScript, simpleScriptExpectedOutput)
+
+            val jar = cacheDir.listFiles()!!.single { it.extension == "jar" }
+            val indexFile = File(cacheDir, CompiledScriptJarsCache.INDEX_FILE_NAME)
+            val indexLine = indexFile.readLines().single()
+            // lines of deleted jars and an overridden line
+            indexFile.appendText((0 until 100).joinToString("") { "deleted$it.jar\tDeleted$it\n" } + indexLine + "\n")
+
+            val cache = CompiledScriptJarsCache(memoryCacheSize = 1) { _, _ -> jar }
+            val first = cache.get(simpleScript.toScriptSource(), ScriptCompilationConfiguration())
+            Assert.assertEquals(listOf(indexLine), indexFile.readLines())
+
+            // every retrieved script is a separate object, but the loaded classes are shared
+            val second = cache.get(simpleScript.toScriptSource(), ScriptCompilationConfiguration())
+            Assert.assertNotSame(first, second)
+            Assert.assertEquals(1, cache.statistics.diskHitCount)
+            Assert.assertEquals(1, cache.statistics.memoryHitCount)
+            val firstClass = runBlocking { first!!.getClass(null) }.valueOrThrow()
+            val secondClass = runBlocking { second!!.getClass(null) }.valueOrThrow()
+            Assert.assertSame(firstClass.java, secondClass.java)
+        }
+    }
+
     @Test
     fun testSimpleImportWithJarCache() {
         withTempDir("scriptingTestJarCache") { cacheDir ->
@@ -252,8 +296,9 @@ private class FileBasedScriptCache(val baseDir: File) : ScriptingCacheWithCounte
         private set
 }
 
-class TestCompiledScriptJarsCache(val baseDir: File) :
+class TestCompiledScriptJarsCache(val baseDir: File, memoryCacheSize: Int = 0) :
     CompiledScriptJarsCache(
+        memoryCacheSize,
         { script, scriptCompilationConfiguration ->
             File(baseDir, uniqueScriptHash(script, scriptCompilationConfiguration) + ".jar")
         }
@@ -6,7 +6,12 @@
 package kotlin.script.experimental.jvmhost
 
 import java.io.File
+import java.io.FileWriter
 import java.net.URLClassLoader
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.jar.JarInputStream
 import kotlin.reflect.KClass
 import kotlin.script.experimental.api.*
@@ -16,21 +21,52 @@ import kotlin.script.experimental.jvm.impl.KJvmCompiledScript
 import kotlin.script.experimental.jvm.impl.createScriptFromClassLoader
 import kotlin.script.experimental.jvm.jvm
 
-open class CompiledScriptJarsCache(val scriptToFile: (SourceCode, ScriptCompilationConfiguration) -> File?) :
-    CompiledJvmScriptsCache {
+/**
+ * Cache of compiled scripts stored as jars in the files provided by [scriptToFile], which should be unique for the script source
+ * and the compilation configuration, e.g. a hash of them.
+ *
+ * Main classes of the stored jars are recorded in an index file in the directory of the jars, so retrieving a script doesn't
+ * require reading its jar. If [memoryCacheSize] is positive, up to that many recently used jars are also kept in memory
+ * together with the classes loaded from them, until they are modified. Every retrieved script is a separate object,
+ * which shares the loaded classes with the other scripts retrieved from the same jar with the same base class loader.
+ */
+open class CompiledScriptJarsCache(
+    private val memoryCacheSize: Int,
+    val scriptToFile: (SourceCode, ScriptCompilationConfiguration) -> File?
+) : CompiledJvmScriptsCache {
+
+    constructor(scriptToFile: (SourceCode, ScriptCompilationConfiguration) -> File?) : this(0, scriptToFile)
+
+    val statistics = CompiledScriptsCacheStatistics()
+
+    private val loadedJars = object : LinkedHashMap<File, CompiledScriptJar>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<File, CompiledScriptJar>?): Boolean =
+            size > memoryCacheSize
+    }
+
+    private val indices = ConcurrentHashMap<File, CompiledScriptJarsIndex>()
 
     override fun get(script: SourceCode, scriptCompilationConfiguration: ScriptCompilationConfiguration): CompiledScript? {
         val file = scriptToFile(script, scriptCompilationConfiguration)
             ?: throw IllegalArgumentException("Unable to find a mapping to a file for the script $script")
 
-        if (!file.exists()) return null
-
-        val className = file.inputStream().use { ostr ->
-            JarInputStream(ostr).use {
-                it.manifest.mainAttributes.getValue("Main-Class")
+        if (memoryCacheSize > 0) {
+            val loadedJar = synchronized(loadedJars) { loadedJars[file] }
+            if (loadedJar != null && loadedJar.isUpToDate()) {
+                statistics.memoryHits.incrementAndGet()
+                return KJvmCompiledScriptLazilyLoadedFromClasspath(loadedJar)
             }
         }
-        return KJvmCompiledScriptLazilyLoadedFromClasspath(className, listOf(file))
+
+        if (!file.exists()) {
+            statistics.misses.incrementAndGet()
+            return null
+        }
+
+        val index = indexFor(file)
+        val className = index[file] ?: readMainClass(file).also { index[file] = it }
+        statistics.diskHits.incrementAndGet()
+        return KJvmCompiledScriptLazilyLoadedFromClasspath(remember(file, CompiledScriptJar(className, file)))
     }
 
     override fun store(
@@ -45,29 +81,163 @@ open class CompiledScriptJarsCache(val scriptToFile: (SourceCode, ScriptCompilat
             ?: throw IllegalArgumentException("Unsupported script type ${compiledScript::class.java.name}")
 
         jvmScript.saveToJar(file)
+        indexFor(file)[file] = jvmScript.scriptClassFQName
+        statistics.stores.incrementAndGet()
+        remember(file, CompiledScriptJar(jvmScript.scriptClassFQName, file))
+    }
+
+    private fun remember(file: File, jar: CompiledScriptJar): CompiledScriptJar {
+        if (memoryCacheSize > 0) {
+            synchronized(loadedJars) { loadedJars[file] = jar }
+        }
+        return jar
+    }
+
+    private fun indexFor(file: File): CompiledScriptJarsIndex {
+        val dir = file.absoluteFile.parentFile
+        return indices.getOrPut(dir) { CompiledScriptJarsIndex(File(dir, INDEX_FILE_NAME)) }
+    }
+
+    private fun readMainClass(file: File): String =
+        file.inputStream().use { ostr ->
+            JarInputStream(ostr).use {
+                it.manifest.mainAttributes.getValue("Main-Class")
+            }
+        }
+
+    companion object {
+        const val INDEX_FILE_NAME = "compiled-scripts.index"
     }
 }
 
-private class KJvmCompiledScriptLazilyLoadedFromClasspath(
-    private val scriptClassFQName: String,
-    private val classPath: List<File>
-) : CompiledScript {
+class CompiledScriptsCacheStatistics {
+    internal val memoryHits = AtomicInteger()
+    internal val diskHits = AtomicInteger()
+    internal val misses = AtomicInteger()
+    internal val stores = AtomicInteger()
 
+    val memoryHitCount: Int get() = memoryHits.get()
+    val diskHitCount: Int get() = diskHits.get()
+    val missCount: Int get() = misses.get()
+    val storeCount: Int get() = stores.get()
+
+    override fun toString(): String =
+        "memory hits: $memoryHitCount, disk hits: $diskHitCount, misses: $missCount, stores: $storeCount"
+}
+
+/**
+ * Main classes of the jars in a directory, stored as lines of the form "<jar name>\t<main class>".
+ *
+ * The file is appended to, so it may be shared by several processes. Later lines override the earlier ones for the same jar,
+ * and jars missing from the index are read by the cache and added to it. Lines of deleted jars and overridden lines are pruned
+ * by rewriting the file when it is read and when most of its lines become obsolete.
+ */
+private class CompiledScriptJarsIndex(private val indexFile: File) {
+    private val mainClasses: MutableMap<String, String> by lazy { readIndex() }
+    private var lineCount = 0
+
+    operator fun get(jar: File): String? = synchronized(this) { mainClasses[jar.name] }
+
+    operator fun set(jar: File, mainClass: String) {
+        synchronized(this) {
+            if (mainClasses.put(jar.name, mainClass) == mainClass) return
+            if (lineCount >= MIN_PRUNED_LINE_COUNT && lineCount >= 2 * mainClasses.size) {
+                prune()
+                return
+            }
+            try {
+                FileWriter(indexFile, true).use { it.write("${jar.name}\t$mainClass\n") }
+                lineCount++
+            } catch (e: Exception) {
+                // the index is only an optimization, jars missing from it are read directly
+            }
+        }
+    }
+
+    private fun readIndex(): MutableMap<String, String> {
+        val result = HashMap<String, String>()
+        if (!indexFile.exists()) return result
+        try {
+            indexFile.forEachLine { line ->
+                lineCount++
+                val separator = line.indexOf('\t')
+                if (separator > 0 && separator < line.length - 1) {
+                    result[line.substring(0, separator)] = line.substring(separator + 1)
+                }
+            }
+        } catch (e: Exception) {
+            // a broken index is ignored, the jars are read directly instead
+        }
+        val dir = indexFile.parentFile
+        result.keys.removeAll { !File(dir, it).exists() }
+        if (lineCount > result.size) {
+            prune(result)
+        }
+        return result
+    }
+
+    // Jars which are stored by other processes while the index is rewritten may be lost from it, and are read directly then
+    private fun prune(entries: Map<String, String> = mainClasses) {
+        val dir = indexFile.parentFile
+        val liveEntries = entries.filterKeys { File(dir, it).exists() }
+        try {
+            val tempFile = File.createTempFile(INDEX_FILE_PREFIX, null, dir)
+            try {
+                tempFile.writeText(liveEntries.entries.joinToString("") { (jar, mainClass) -> "$jar\t$mainClass\n" })
+                Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            } finally {
+                tempFile.delete()
+            }
+            lineCount = liveEntries.size
+        } catch (e: Exception) {
+            // the index is only an optimization, it is pruned next time
+        }
+    }
+
+    companion object {
+        const val MIN_PRUNED_LINE_COUNT = 64
+        const val INDEX_FILE_PREFIX = "compiled-scripts-index"
+    }
+}
+
+/**
+ * Compiled script jar with the classes loaded from it with the last requested base class loader
+ */
+private class CompiledScriptJar(val scriptClassFQName: String, val jarFile: File) {
+    private val jarTimestamp = jarFile.lastModified()
+    private val jarLength = jarFile.length()
+
+    private var loadedScript: KJvmCompiledScript? = null
+    private var loadedWithBaseClassLoader: ClassLoader? = null
+
+    fun isUpToDate(): Boolean = jarFile.lastModified() == jarTimestamp && jarFile.length() == jarLength
+
+    @Synchronized
+    fun load(baseClassLoader: ClassLoader?): KJvmCompiledScript {
+        loadedScript?.takeIf { loadedWithBaseClassLoader == baseClassLoader }?.let { return it }
+        val classLoader = URLClassLoader(arrayOf(jarFile.toURI().toURL()), baseClassLoader)
+        return createScriptFromClassLoader(scriptClassFQName, classLoader).also {
+            loadedScript = it
+            loadedWithBaseClassLoader = baseClassLoader
+        }
+    }
+}
+
+private class KJvmCompiledScriptLazilyLoadedFromClasspath(private val jar: CompiledScriptJar) : CompiledScript {
+
+    @Volatile
     private var loadedScript: KJvmCompiledScript? = null
 
     fun getScriptOrError(): KJvmCompiledScript = loadedScript ?: throw RuntimeException("Compiled script is not loaded yet")
 
     override suspend fun getClass(scriptEvaluationConfiguration: ScriptEvaluationConfiguration?): ResultWithDiagnostics<KClass<*>> {
-        if (loadedScript == null) {
-            val actualEvaluationConfiguration = scriptEvaluationConfiguration ?: ScriptEvaluationConfiguration()
-            val baseClassLoader = actualEvaluationConfiguration[ScriptEvaluationConfiguration.jvm.baseClassLoader]
-            val classLoader = URLClassLoader(
-                classPath.map { it.toURI().toURL() }.toTypedArray(),
-                baseClassLoader
-            )
-            loadedScript = createScriptFromClassLoader(scriptClassFQName, classLoader)
+        val script = loadedScript ?: synchronized(this) {
+            loadedScript ?: run {
+                val actualEvaluationConfiguration = scriptEvaluationConfiguration ?: ScriptEvaluationConfiguration()
+                jar.load(actualEvaluationConfiguration[ScriptEvaluationConfiguration.jvm.baseClassLoader]).also { loadedScript = it }
+            }
         }
-        return getScriptOrError().getClass(scriptEvaluationConfiguration)
+        return script.getClass(scriptEvaluationConfiguration)
     }
 
     override val compilationConfiguration: ScriptCompilationConfiguration
@@ -82,4 +252,3 @@ private class KJvmCompiledScriptLazilyLoadedFromClasspath(
     override val resultField: Pair<String, KotlinType>?
         get() = getScriptOrError().resultField
 }
-
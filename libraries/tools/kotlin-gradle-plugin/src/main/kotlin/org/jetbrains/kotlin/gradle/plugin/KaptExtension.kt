@@ -37,6 +37,8 @@ open class KaptExtension {
     
     open var showProcessorTimings: Boolean = false
 
+    open var incrementalStubs: Boolean = false
+
     open var detectMemoryLeaks: String = "default"
 
     open var includeCompileClasspath: Boolean? = null
@@ -40,6 +40,7 @@ abstract class MainKtsScript(val args: Array<String>)
 const val COMPILED_SCRIPTS_CACHE_DIR_ENV_VAR = "KOTLIN_MAIN_KTS_COMPILED_SCRIPTS_CACHE_DIR"
 const val COMPILED_SCRIPTS_CACHE_DIR_PROPERTY = "kotlin.main.kts.compiled.scripts.cache.dir"
 const val COMPILED_SCRIPTS_CACHE_VERSION = 1
+const val COMPILED_SCRIPTS_MEMORY_CACHE_SIZE = 32
 
 class MainKtsScriptDefinition : ScriptCompilationConfiguration(
     {
@@ -82,7 +83,7 @@ class MainKtsHostConfiguration : ScriptingHostConfiguration(
             }?.takeIf { it.exists() && it.isDirectory }
             if (cacheBaseDir != null)
                 compilationCache(
-                    CompiledScriptJarsCache { script, scriptCompilationConfiguration ->
+                    CompiledScriptJarsCache(COMPILED_SCRIPTS_MEMORY_CACHE_SIZE) { script, scriptCompilationConfiguration ->
                         File(cacheBaseDir, compiledScriptUniqueName(script, scriptCompilationConfiguration) + ".jar")
                     }
                 )
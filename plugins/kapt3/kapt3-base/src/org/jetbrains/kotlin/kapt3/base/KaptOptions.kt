@@ -114,6 +114,7 @@ enum class KaptFlag(val description: String) {
     STRICT("Strict mode"),
     INCLUDE_COMPILE_CLASSPATH("Detect annotation processors in compile classpath"),
     INCREMENTAL_APT("Incremental annotation processing (apt mode)"),
+    INCREMENTAL_STUBS("Incremental stub generation"),
     ;
 }
 
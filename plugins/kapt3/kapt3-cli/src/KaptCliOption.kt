@@ -181,6 +181,13 @@ enum class KaptCliOption(
         cliToolOption = CliToolOption("-Kapt-show-processor-timings", FLAG)
     ),
 
+    INCREMENTAL_STUBS_OPTION(
+        "incrementalStubs",
+        "true | false",
+        "Regenerate only the stubs of changed classes and keep unchanged stub files untouched",
+        cliToolOption = CliToolOption("-Kapt-incremental-stubs", FLAG)
+    ),
+
     STRICT_MODE_OPTION(
         "strict",
         "true | false",
@@ -56,6 +56,7 @@ import org.jetbrains.kotlin.kapt3.base.util.isJava11OrLater
 import org.jetbrains.kotlin.kapt3.diagnostic.KaptError
 import org.jetbrains.kotlin.kapt3.stubs.ClassFileToSourceStubConverter
 import org.jetbrains.kotlin.kapt3.stubs.ClassFileToSourceStubConverter.KaptStub
+import org.jetbrains.kotlin.kapt3.stubs.KaptStubsCache
 import org.jetbrains.kotlin.kapt3.util.MessageCollectorBackedKaptLogger
 import org.jetbrains.kotlin.modules.TargetId
 import org.jetbrains.kotlin.psi.KtFile
@@ -289,7 +290,8 @@ abstract class AbstractKapt3Extension(
     }
 
     private fun generateKotlinSourceStubs(kaptContext: KaptContextForStubGeneration) {
-        val converter = ClassFileToSourceStubConverter(kaptContext, generateNonExistentClass = true)
+        val stubsCache = if (options[KaptFlag.INCREMENTAL_STUBS]) KaptStubsCache.load(options.stubsOutputDir, options) else null
+        val converter = ClassFileToSourceStubConverter(kaptContext, generateNonExistentClass = true, stubsCache = stubsCache)
 
         val (stubGenerationTime, kaptStubs) = measureTimeMillis {
             converter.convert()
@@ -297,8 +299,12 @@ abstract class AbstractKapt3Extension(
 
         logger.info { "Java stub generation took $stubGenerationTime ms" }
         logger.info { "Stubs for Kotlin classes: " + kaptStubs.joinToString { it.file.sourcefile.name } }
+        if (stubsCache != null) {
+            logger.info { "Up-to-date stubs for Kotlin classes: " + converter.reusedStubs.joinToString() }
+        }
 
         saveStubs(kaptContext, kaptStubs)
+        stubsCache?.save()
         saveIncrementalData(kaptContext, logger.messageCollector, converter)
     }
 
@@ -312,7 +318,15 @@ abstract class AbstractKapt3Extension(
             packageDir.mkdirs()
 
             val sourceFile = File(packageDir, "$className.java")
-            sourceFile.writeText(stub.prettyPrint(kaptContext.context))
+            val stubText = stub.prettyPrint(kaptContext.context)
+            if (options[KaptFlag.INCREMENTAL_STUBS]) {
+                // Unchanged stubs are left untouched, so that their timestamps don't trigger recompilation of Java sources
+                if (!sourceFile.exists() || sourceFile.readText() != stubText) {
+                    KaptStubsCache.writeAtomically(sourceFile) { it.write(stubText.toByteArray()) }
+                }
+            } else {
+                sourceFile.writeText(stubText)
+            }
 
             kaptStub.writeMetadataIfNeeded(forSource = sourceFile)
         }
@@ -329,9 +343,11 @@ abstract class AbstractKapt3Extension(
         kaptContext.generationState.factory.writeAll(
             incrementalDataOutputDir,
             if (!reportOutputFiles) null else fun(file: OutputFile, sources: List<File>, output: File) {
-                val stubFileObject = converter.bindings[file.relativePath.substringBeforeLast(".class", missingDelimiterValue = "")]
-                if (stubFileObject != null) {
-                    val stubFile = File(options.stubsOutputDir, stubFileObject.name)
+                val className = file.relativePath.substringBeforeLast(".class", missingDelimiterValue = "")
+                val stubFileName = converter.bindings[className]?.name
+                    ?: if (className in converter.reusedStubs) "$className.java" else null
+                if (stubFileName != null) {
+                    val stubFile = File(options.stubsOutputDir, stubFileName)
                     val lineMappingsFile = File(stubFile.parentFile, stubFile.nameWithoutExtension + KAPT_METADATA_EXTENSION)
 
                     for (outputFile in listOf(stubFile, lineMappingsFile)) {
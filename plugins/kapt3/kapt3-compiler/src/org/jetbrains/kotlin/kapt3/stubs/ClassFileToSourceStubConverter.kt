@@ -72,7 +72,15 @@ import javax.lang.model.element.ElementKind
 import kotlin.math.sign
 import com.sun.tools.javac.util.List as JavacList
 
-class ClassFileToSourceStubConverter(val kaptContext: KaptContextForStubGeneration, val generateNonExistentClass: Boolean) {
+/**
+ * If [stubsCache] is provided, top-level classes which stubs are up-to-date according to it are not converted,
+ * see [reusedStubs].
+ */
+class ClassFileToSourceStubConverter(
+    val kaptContext: KaptContextForStubGeneration,
+    val generateNonExistentClass: Boolean,
+    private val stubsCache: KaptStubsCache? = null
+) {
     private companion object {
         private const val VISIBILITY_MODIFIERS = (Opcodes.ACC_PUBLIC or Opcodes.ACC_PRIVATE or Opcodes.ACC_PROTECTED).toLong()
         private const val MODALITY_MODIFIERS = (Opcodes.ACC_FINAL or Opcodes.ACC_ABSTRACT).toLong()
@@ -113,6 +121,16 @@ class ClassFileToSourceStubConverter(val kaptContext: KaptContextForStubGenerati
     val bindings: Map<String, KaptJavaFileObject>
         get() = mutableBindings
 
+    private val mutableReusedStubs = mutableSetOf<String>()
+
+    /**
+     * Internal names of the top-level classes which were not converted because their existing stubs are up-to-date.
+     */
+    val reusedStubs: Set<String>
+        get() = mutableReusedStubs
+
+    private val classesByTopLevelName by lazy { kaptContext.compiledClasses.groupBy { it.name.substringBefore('$') } }
+
     private val typeMapper
         get() = kaptContext.generationState.typeMapper
 
@@ -178,6 +196,12 @@ class ClassFileToSourceStubConverter(val kaptContext: KaptContextForStubGenerati
         // Nested classes will be processed during the outer classes conversion
         if ((descriptor as? ClassDescriptor)?.isNested == true) return null
 
+        val fingerprint = stubsCache?.computeFingerprint(classesByTopLevelName.getValue(clazz.name.substringBefore('$')), ktFile.text)
+        if (fingerprint != null && stubsCache?.isUpToDate(clazz.name, fingerprint) == true) {
+            mutableReusedStubs += clazz.name
+            return null
+        }
+
         val lineMappings = KaptLineMappingCollector(kaptContext)
 
         val packageName = ktFile.packageFqName.asString()
@@ -206,6 +230,10 @@ class ClassFileToSourceStubConverter(val kaptContext: KaptContextForStubGenerati
 
         postProcess(topLevel)
 
+        if (fingerprint != null) {
+            stubsCache?.update(clazz.name, fingerprint)
+        }
+
         return KaptStub(topLevel, lineMappings.serialize())
     }
 
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.kapt3.stubs
+
+import org.jetbrains.kotlin.config.KotlinCompilerVersion
+import org.jetbrains.kotlin.kapt3.base.KaptFlag
+import org.jetbrains.kotlin.kapt3.base.KaptOptions
+import org.jetbrains.org.objectweb.asm.ClassWriter
+import org.jetbrains.org.objectweb.asm.tree.ClassNode
+import java.io.*
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+
+/**
+ * Fingerprints of the classes which stubs were generated from, used to skip conversion of top-level classes whose stubs would not change.
+ *
+ * A stub is considered up-to-date if its file exists and the fingerprint of the class is the same as when the stub was written.
+ * The fingerprint covers the class files of the top-level class and its nested classes, and the text of the Kotlin source file,
+ * which determines imports, KDoc comments and line mappings of the stub.
+ *
+ * Fingerprints of the classes which were neither converted nor reused in the current run (e.g. the classes of removed sources)
+ * are dropped on [save].
+ *
+ * Everything else which affects the stubs (the compiler version and the kapt options, see [header]) is stored in the header of
+ * the cache file, and all fingerprints are discarded when it changes.
+ */
+class KaptStubsCache private constructor(
+    private val stubsOutputDir: File,
+    private val header: String,
+    private val fingerprints: MutableMap<String, String>
+) {
+    private var changed = false
+
+    // Classes which stubs were reused or updated in the current run
+    private val usedClasses = HashSet<String>()
+
+    fun isUpToDate(internalName: String, fingerprint: String): Boolean {
+        val upToDate = fingerprints[internalName] == fingerprint && File(stubsOutputDir, "$internalName.java").exists()
+        if (upToDate) {
+            usedClasses += internalName
+        }
+        return upToDate
+    }
+
+    fun update(internalName: String, fingerprint: String) {
+        usedClasses += internalName
+        if (fingerprints.put(internalName, fingerprint) != fingerprint) {
+            changed = true
+        }
+    }
+
+    /**
+     * Computes the fingerprint of a top-level class from its class file, the class files of its nested [classes],
+     * and the [sourceText] of its file.
+     */
+    fun computeFingerprint(classes: List<ClassNode>, sourceText: String): String {
+        val digest = MessageDigest.getInstance("SHA-256")
+        for (clazz in classes.sortedBy { it.name }) {
+            val writer = ClassWriter(0)
+            clazz.accept(writer)
+            digest.update(writer.toByteArray())
+        }
+        digest.update(sourceText.toByteArray())
+        return digest.digest().joinToString("") { "%02x".format(it) }
+    }
+
+    fun save() {
+        if (fingerprints.keys.retainAll(usedClasses)) {
+            changed = true
+        }
+        if (!changed) return
+
+        val cacheFile = File(stubsOutputDir, CACHE_FILE_NAME)
+        writeAtomically(cacheFile) { output ->
+            DataOutputStream(output).use { stream ->
+                stream.writeInt(VERSION)
+                stream.writeUTF(header)
+                stream.writeInt(fingerprints.size)
+                for ((internalName, fingerprint) in fingerprints) {
+                    stream.writeUTF(internalName)
+                    stream.writeUTF(fingerprint)
+                }
+            }
+        }
+        changed = false
+    }
+
+    companion object {
+        private const val CACHE_FILE_NAME = "kapt-stubs.cache"
+        private const val VERSION = 2
+
+        // Options which change the stubs generated from the same class files
+        private val STUB_FLAGS = listOf(
+            KaptFlag.CORRECT_ERROR_TYPES, KaptFlag.DUMP_DEFAULT_PARAMETER_VALUES, KaptFlag.STRICT, KaptFlag.USE_LIGHT_ANALYSIS
+        )
+
+        /**
+         * Describes everything besides the classes and their sources which affects the stubs generated with [options]
+         */
+        fun header(options: KaptOptions): String = buildString {
+            append("compiler=").append(KotlinCompilerVersion.VERSION)
+            for (flag in STUB_FLAGS) {
+                append(';').append(flag.name).append('=').append(options[flag])
+            }
+            for ((key, value) in options.javacOptions.toSortedMap()) {
+                append(";javac:").append(key).append('=').append(value)
+            }
+        }
+
+        fun load(stubsOutputDir: File, options: KaptOptions): KaptStubsCache = load(stubsOutputDir, header(options))
+
+        fun load(stubsOutputDir: File, header: String): KaptStubsCache {
+            val cacheFile = File(stubsOutputDir, CACHE_FILE_NAME)
+            val fingerprints = HashMap<String, String>()
+            if (cacheFile.exists()) {
+                try {
+                    DataInputStream(cacheFile.inputStream().buffered()).use { stream ->
+                        if (stream.readInt() == VERSION && stream.readUTF() == header) {
+                            repeat(stream.readInt()) {
+                                fingerprints[stream.readUTF()] = stream.readUTF()
+                            }
+                        }
+                    }
+                } catch (e: IOException) {
+                    // all stubs are regenerated if the cache is broken
+                    fingerprints.clear()
+                }
+            }
+            return KaptStubsCache(stubsOutputDir, header, fingerprints)
+        }
+
+        /**
+         * Writes [file] through a temporary file in the same directory, so that readers never see a partially written file.
+         */
+        fun writeAtomically(file: File, write: (OutputStream) -> Unit) {
+            val tmpFile = File.createTempFile(file.name, ".tmp", file.parentFile)
+            try {
+                tmpFile.outputStream().buffered().use(write)
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            } finally {
+                tmpFile.delete()
+            }
+        }
+    }
+}
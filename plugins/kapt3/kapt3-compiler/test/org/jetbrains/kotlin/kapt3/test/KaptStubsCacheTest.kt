@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.kapt3.test
+
+import org.jetbrains.kotlin.kapt3.base.KaptFlag
+import org.jetbrains.kotlin.kapt3.base.KaptOptions
+import org.jetbrains.kotlin.kapt3.stubs.KaptStubsCache
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.nio.file.Files
+
+class KaptStubsCacheTest {
+    private lateinit var stubsDir: File
+
+    @Before
+    fun setUp() {
+        stubsDir = Files.createTempDirectory("kaptStubs").toFile()
+    }
+
+    @After
+    fun tearDown() {
+        stubsDir.deleteRecursively()
+    }
+
+    @Test
+    fun testFingerprintsArePersisted() {
+        writeStub("test/Simple")
+        KaptStubsCache.load(stubsDir, HEADER).apply {
+            assertFalse(isUpToDate("test/Simple", "1"))
+            update("test/Simple", "1")
+            save()
+        }
+
+        val cache = KaptStubsCache.load(stubsDir, HEADER)
+        assertTrue(cache.isUpToDate("test/Simple", "1"))
+        assertFalse(cache.isUpToDate("test/Simple", "2"))
+    }
+
+    @Test
+    fun testStubIsOutdatedWithoutFile() {
+        KaptStubsCache.load(stubsDir, HEADER).apply {
+            update("test/Simple", "1")
+            save()
+        }
+
+        assertFalse(KaptStubsCache.load(stubsDir, HEADER).isUpToDate("test/Simple", "1"))
+    }
+
+    @Test
+    fun testFingerprintsOfUnusedClassesAreDropped() {
+        writeStub("test/Kept")
+        writeStub("test/Reused")
+        writeStub("test/Removed")
+        KaptStubsCache.load(stubsDir, HEADER).apply {
+            update("test/Kept", "1")
+            update("test/Reused", "1")
+            update("test/Removed", "1")
+            save()
+        }
+
+        KaptStubsCache.load(stubsDir, HEADER).apply {
+            update("test/Kept", "2")
+            assertTrue(isUpToDate("test/Reused", "1"))
+            save()
+        }
+
+        // The stub file of a removed class may still exist, but its fingerprint is gone
+        val cache = KaptStubsCache.load(stubsDir, HEADER)
+        assertTrue(cache.isUpToDate("test/Kept", "2"))
+        assertTrue(cache.isUpToDate("test/Reused", "1"))
+        assertFalse(cache.isUpToDate("test/Removed", "1"))
+    }
+
+    @Test
+    fun testFingerprintsAreDiscardedWhenHeaderChanges() {
+        writeStub("test/Simple")
+        KaptStubsCache.load(stubsDir, HEADER).apply {
+            update("test/Simple", "1")
+            save()
+        }
+
+        assertFalse(KaptStubsCache.load(stubsDir, "$HEADER;changed").isUpToDate("test/Simple", "1"))
+    }
+
+    @Test
+    fun testHeaderDependsOnStubOptions() {
+        val default = KaptStubsCache.header(options {})
+        assertEquals(default, KaptStubsCache.header(options {}))
+        assertEquals(default, KaptStubsCache.header(options { flags.add(KaptFlag.VERBOSE) }))
+
+        val changed = listOf(
+            options { flags.add(KaptFlag.CORRECT_ERROR_TYPES) },
+            options { flags.add(KaptFlag.DUMP_DEFAULT_PARAMETER_VALUES) },
+            options { flags.add(KaptFlag.STRICT) },
+            options { flags.remove(KaptFlag.USE_LIGHT_ANALYSIS) },
+            options { javacOptions["-source"] = "8" },
+            options { javacOptions["-source"] = "11" }
+        ).map { KaptStubsCache.header(it) }
+        assertEquals(changed.toString(), changed.size + 1, (changed + default).toSet().size)
+    }
+
+    @Test
+    fun testWriteAtomically() {
+        val file = writeStub("test/Simple")
+        KaptStubsCache.writeAtomically(file) { it.write("class Simple {}".toByteArray()) }
+
+        assertEquals("class Simple {}", file.readText())
+        assertEquals(listOf("Simple.java"), file.parentFile.list()!!.toList())
+    }
+
+    private fun options(configure: KaptOptions.Builder.() -> Unit): KaptOptions =
+        KaptOptions.Builder().apply {
+            sourcesOutputDir = stubsDir
+            classesOutputDir = stubsDir
+            stubsOutputDir = stubsDir
+            configure()
+        }.build()
+
+    private fun writeStub(internalName: String): File =
+        File(stubsDir, "$internalName.java").apply {
+            parentFile.mkdirs()
+            writeText("class ${internalName.substringAfterLast('/')}")
+        }
+
+    private companion object {
+        const val HEADER = "header"
+    }
+}